@@ -2,8 +2,18 @@ package twoauth.backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
 
-@SpringBootApplication
+// the reactive MongoDB client is used only by spring.main.web-application-type=reactive, see ReactiveMongoConfiguration
+@SpringBootApplication(exclude = {
+		ReactiveUserDetailsServiceAutoConfiguration.class,
+		MongoReactiveAutoConfiguration.class,
+		MongoReactiveDataAutoConfiguration.class,
+		MongoReactiveRepositoriesAutoConfiguration.class
+})
 public class TwoAuthBackendApplication {
 
 	public static void main(String[] args) {
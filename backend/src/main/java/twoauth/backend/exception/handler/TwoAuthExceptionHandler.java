@@ -2,6 +2,7 @@ package twoauth.backend.exception.handler;
 
 import twoauth.backend.exception.BadRequestException;
 import twoauth.backend.exception.InvalidDbEntityException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -12,6 +13,7 @@ import twoauth.backend.exception.UserNotUpdatedException;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.concurrent.RejectedExecutionException;
 
 @ControllerAdvice
 public class TwoAuthExceptionHandler
@@ -36,4 +38,16 @@ public class TwoAuthExceptionHandler
         final HttpStatus httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
         return new ResponseEntity<>(new TwoAuthExceptionWrapper("Something went wrong.", httpStatus, ZONE), httpStatus);
     }
+
+    /**
+     * The password hashing pool is saturated, see PasswordHashingExecutor.
+     */
+    @ExceptionHandler(value = {RejectedExecutionException.class})
+    public ResponseEntity<TwoAuthExceptionWrapper> handleRejectedExecutionException(RejectedExecutionException e)
+    {
+        final HttpStatus httpStatus = HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(httpStatus)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new TwoAuthExceptionWrapper("Server busy, retry later.", httpStatus, ZONE));
+    }
 }
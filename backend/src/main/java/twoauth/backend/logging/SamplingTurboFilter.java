@@ -0,0 +1,54 @@
+package twoauth.backend.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples the log events marked with {@link #SAMPLED}: at most max-per-interval events of the same message
+ * are logged in every interval, the others are dropped before any formatting.
+ * Used on the request paths, where a failing MongoDB would otherwise log once per request.
+ * <br/>
+ * Configured in logback-spring.xml. The messages are the format strings, so the counters are a few.
+ */
+public final class SamplingTurboFilter extends TurboFilter
+{
+    public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+    private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+    // interval index (32 bits) | events in the interval (32 bits)
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private int maxPerInterval = 10;
+    private long intervalInMillis = 10_000L;
+
+    @Override
+    public FilterReply decide(final Marker marker, final Logger logger, final Level level,
+                              final String format, final Object[] params, final Throwable t)
+    {
+        if (marker == null || format == null || !marker.contains(SAMPLED) || !logger.isEnabledFor(level))
+            return FilterReply.NEUTRAL;
+
+        final long interval = (System.currentTimeMillis() / intervalInMillis) & COUNT_MASK;
+        final AtomicLong counter = counters.computeIfAbsent(format, __ -> new AtomicLong());
+        final long next = counter.updateAndGet(current -> ((current >>> 32) == interval)
+                ? Math.min(current + 1, (interval << 32) | COUNT_MASK)
+                : (interval << 32) | 1L);
+        return ((next & COUNT_MASK) <= maxPerInterval) ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setMaxPerInterval(final int maxPerInterval) {
+        this.maxPerInterval = (maxPerInterval < 1) ? 10 : maxPerInterval;
+    }
+
+    public void setIntervalInMillis(final long intervalInMillis) {
+        this.intervalInMillis = (intervalInMillis < 1) ? 10_000L : intervalInMillis;
+    }
+}
@@ -2,121 +2,317 @@ package twoauth.backend.security;
 
 import twoauth.backend.security.model.AuthRequest;
 import twoauth.backend.security.model.User;
-import org.apache.commons.validator.routines.EmailValidator;
+import org.apache.commons.validator.routines.DomainValidator;
 import org.springframework.security.core.GrantedAuthority;
 
 import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.Base64;
-import java.util.Date;
+import java.util.Collection;
 import java.util.List;
-import java.util.regex.Pattern;
-
+import java.util.Date;
+import java.util.TreeSet;
+
+/**
+ * Validation of every field received by the endpoints or read from the database.
+ * <br/>
+ * Each value is checked with a single pass over its characters, and every error
+ * message is a constant: nothing is allocated when the value is valid.
+ */
 public final class Validator
 {
+    private record NameErrors(String isNull, String isBlank, String size, String pattern, String space) {
+        static NameErrors of(final String prefix) {
+            return new NameErrors(
+                    prefix + "Name is null.",
+                    prefix + "Name is blank.",
+                    prefix + "Name size is not in range (3,40) inclusive.",
+                    prefix + "Name not matches [A-Za-z ]* pattern.",
+                    prefix + "Name has a SPACE at the start or at the end."
+            );
+        }
+    }
+
+    private record DateErrors(String isNull, String isInTheFuture, String isBeforeMin) {
+        static DateErrors of(final String prefix) {
+            return new DateErrors(
+                    prefix + "Date is null.",
+                    prefix + "Date is in the future.",
+                    prefix + "Date is before year 2024."
+            );
+        }
+    }
+
+    private static final String EMAIL_NULL = "Email is null.";
+    private static final String EMAIL_BLANK = "Email is blank.";
+    private static final String EMAIL_SIZE = "Email size is not in range (6,50) inclusive.";
+    private static final String EMAIL_PATTERN = "Email not matches [a-z0-9._@-]* pattern.";
+    private static final String EMAIL_INVALID = "Not a valid email.";
+    private static final NameErrors FIRST_NAME_ERRORS = NameErrors.of("First");
+    private static final NameErrors LAST_NAME_ERRORS = NameErrors.of("Last");
+    private static final DateErrors CREATION_DATE_ERRORS = DateErrors.of("Creation");
+    private static final DateErrors LAST_UPDATE_DATE_ERRORS = DateErrors.of("LastUpdate");
+    private static final String PERMISSIONS_NULL = "Permissions are null.";
+    private static final String PERMISSIONS_SIZE = "Permissions size is not in range (1,50) inclusive.";
+    private static final String PERMISSION_NULL = "A permission is null.";
+    private static final String PERMISSION_BLANK = "A permission is blank.";
+    private static final String PERMISSION_SIZE = "A permission size is not in range (1,50) inclusive.";
+    private static final String PASSWORD_NULL = "Password is null.";
+    private static final String PASSWORD_SIZE = "Password is not in range (8,120) inclusive.";
+    private static final String PASSWORD_LOWER_CASE = "Password has less then 2 lower case letters.";
+    private static final String PASSWORD_UPPER_CASE = "Password has less then 2 upper case letters.";
+    private static final String PASSWORD_DIGITS = "Password has less then 2 digits.";
+    private static final String PASSWORD_SPECIAL = "Password has less then 2 special characters.";
+    private static final String OT_ACTIVATION_TOKEN_NULL = "One Time Activation Token is null.";
+    private static final String OT_ACTIVATION_TOKEN_SIZE = "One Time Activation Token has an incorrect size.";
+    private static final String OT_ACTIVATION_TOKEN_BLANK = "One Time Activation Token is blank.";
     private static final String INVALID_OT_ACTIVATION_TOKEN = "One Time Activation Token is invalid.";
-    private static final Pattern EMAIL_CHARS_PATTERN;
-    private static final Pattern NAME_CHARS_PATTERN;
-    private static final Pattern MORE_THAN_ONE_SPACE_PATTERN;
-    private static final Date MIN_DATE;
+    private static final String USER_NULL = "User is null.";
+    private static final String ENABLE_TOKEN_NOT_NULL = "Enable Token is not null, but the account is already enabled.";
+    private static final String ENABLE_TOKEN_NULL = "Enable Token is null, but the account is not enabled.";
+    private static final String AUTH_REQUEST_NULL = "Authentication Request is null.";
+    private static final long MIN_DATE_IN_MILLIS;
+    /* Sorted top-level domains accepted by the Apache Commons EmailValidator,
+       searched without extracting the TLD from the email. */
+    private static final String[] TLDS;
 
     static {
-        EMAIL_CHARS_PATTERN = Pattern.compile("[a-z0-9._@-]*");
-        NAME_CHARS_PATTERN = Pattern.compile("[A-Za-z ]*");
-        MORE_THAN_ONE_SPACE_PATTERN = Pattern.compile("( )\\1");
-
         final LocalDate localDate = LocalDate.of(2024, 1, 1);
-        MIN_DATE = Date.from(localDate.atStartOfDay(java.time.ZoneOffset.UTC).toInstant());
+        MIN_DATE_IN_MILLIS = localDate.atStartOfDay(java.time.ZoneOffset.UTC).toInstant().toEpochMilli();
+
+        final DomainValidator domainValidator = DomainValidator.getInstance(false);
+        final var tlds = new TreeSet<String>();
+        for (final var type : List.of(
+                DomainValidator.ArrayType.INFRASTRUCTURE_RO,
+                DomainValidator.ArrayType.GENERIC_RO,
+                DomainValidator.ArrayType.GENERIC_PLUS,
+                DomainValidator.ArrayType.COUNTRY_CODE_RO,
+                DomainValidator.ArrayType.COUNTRY_CODE_PLUS))
+        {
+            for (final String tld : DomainValidator.getTLDEntries(type))
+                if (domainValidator.isValidTld(tld))
+                    tlds.add(tld);
+        }
+        TLDS = tlds.toArray(String[]::new);
     }
 
     private Validator() {}
 
     public static String validateEmail(final String email) {
         if (email == null)
-            return "Email is null.";
+            return EMAIL_NULL;
 
         if (email.isBlank())
-            return "Email is blank.";
+            return EMAIL_BLANK;
 
-        if (email.length() < 6 || email.length() > 50)
-            return "Email size is not in range (6,50) inclusive.";
+        final int len = email.length();
+        if (len < 6 || len > 50)
+            return EMAIL_SIZE;
 
-        if (! EMAIL_CHARS_PATTERN.matcher(email).matches())
-            return String.format("Email not matches %s pattern.", EMAIL_CHARS_PATTERN);
+        int atIndex = -1;
+        int atCount = 0;
+        for (int i = 0; i < len; ++i) {
+            final char c = email.charAt(i);
+            if (c == '@') {
+                atIndex = i;
+                ++atCount;
+            }
+            else if (! isEmailChar(c))
+                return EMAIL_PATTERN;
+        }
 
-        if (! EmailValidator.getInstance(false, true).isValid(email))
-            return "Not a valid email.";
+        if (atCount != 1 || ! isValidEmail(email, atIndex))
+            return EMAIL_INVALID;
 
         return null;
     }
 
+    // [a-z0-9._-], '@' excluded
+    private static boolean isEmailChar(final char c) {
+        return (c >= 'a' && c <= 'z') ||
+                (c >= '0' && c <= '9') ||
+                c == '.' || c == '_' || c == '-';
+    }
+
+    /*
+     * Same result as EmailValidator.getInstance(false, true).isValid(email),
+     * for an email made only of [a-z0-9._@-] with a single '@'.
+     */
+    private static boolean isValidEmail(final String email, final int atIndex) {
+        final int len = email.length();
+        if (email.charAt(len - 1) == '.')
+            return false;
+
+        // user: dot separated, non-empty words (at most 64 chars, always true here)
+        if (atIndex == 0 || email.charAt(0) == '.' || email.charAt(atIndex - 1) == '.')
+            return false;
+        for (int i = 1; i < atIndex; ++i) {
+            if (email.charAt(i) == '.' && email.charAt(i - 1) == '.')
+                return false;
+        }
+
+        // domain: a TLD alone, or dot separated labels ending with a TLD
+        final int domainStart = atIndex + 1;
+        if (domainStart == len)
+            return false;
+
+        int labelStart = domainStart;
+        for (int i = domainStart; i < len; ++i) {
+            if (email.charAt(i) == '.') {
+                if (! isValidDomainLabel(email, labelStart, i))
+                    return false;
+                labelStart = i + 1;
+            }
+        }
+        return isTld(email, labelStart, len);
+    }
+
+    // alphanumeric at the start and at the end, hyphens allowed in the middle, at most 63 chars
+    private static boolean isValidDomainLabel(final String email, final int from, final int to) {
+        final int len = to - from;
+        if (len < 1 || len > 63)
+            return false;
+
+        for (int i = from; i < to; ++i) {
+            final char c = email.charAt(i);
+            if (c == '_' || (c == '-' && (i == from || i == to - 1)))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isTld(final String email, final int from, final int to) {
+        int low = 0;
+        int high = TLDS.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareTo(TLDS[mid], email, from, to);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return true;
+        }
+        return false;
+    }
+
+    // String.compareTo of the TLD against the substring [from, to)
+    private static int compareTo(final String tld, final String email, final int from, final int to) {
+        final int len = Math.min(tld.length(), to - from);
+        for (int i = 0; i < len; ++i) {
+            final int diff = tld.charAt(i) - email.charAt(from + i);
+            if (diff != 0)
+                return diff;
+        }
+        return tld.length() - (to - from);
+    }
+
     public static String validateName(final String name, final String prefix) {
         if (name == null)
-            return String.format("%sName is null.", prefix);
+            return nameErrors(prefix).isNull();
 
         if (name.isBlank())
-            return String.format("%sName is blank.", prefix);
+            return nameErrors(prefix).isBlank();
 
-        if (name.length() < 3 || name.length() > 40)
-            return String.format("%sName size is not in range (3,40) inclusive.", prefix);
+        final int len = name.length();
+        if (len < 3 || len > 40)
+            return nameErrors(prefix).size();
 
-        if (! NAME_CHARS_PATTERN.matcher(name).matches())
-            return String.format("%sName not matches %s pattern.", prefix, NAME_CHARS_PATTERN);
+        for (int i = 0; i < len; ++i) {
+            final char c = name.charAt(i);
+            if (! ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == ' '))
+                return nameErrors(prefix).pattern();
+        }
 
         // no SPACE at the start and end of the string
-        if (! name.equals(name.trim()))
-            return String.format("%sName has a SPACE at the start or at the end.", prefix);
-
-        // no double or more repeated SPACE
-        if (MORE_THAN_ONE_SPACE_PATTERN.matcher(name).matches())
-            return String.format("%sName has double repeated SPACE chars.", prefix);
+        if (name.charAt(0) == ' ' || name.charAt(len - 1) == ' ')
+            return nameErrors(prefix).space();
 
         return null;
     }
 
+    private static NameErrors nameErrors(final String prefix) {
+        return switch (prefix) {
+            case "First" -> FIRST_NAME_ERRORS;
+            case "Last" -> LAST_NAME_ERRORS;
+            default -> NameErrors.of(prefix);
+        };
+    }
+
     public static String validateRegistrationDate(final Date date, final String prefix) {
         if (date == null)
-            return String.format("%sDate is null.", prefix);
+            return dateErrors(prefix).isNull();
 
-        if (date.after(new Date()))
-            return String.format("%sDate is in the future.", prefix);
+        final long dateInMillis = date.getTime();
+        if (dateInMillis > System.currentTimeMillis())
+            return dateErrors(prefix).isInTheFuture();
 
-        if (date.before(MIN_DATE))
-            return String.format("%sDate is before year 2024.", prefix);
+        if (dateInMillis < MIN_DATE_IN_MILLIS)
+            return dateErrors(prefix).isBeforeMin();
 
         return null;
     }
 
+    private static DateErrors dateErrors(final String prefix) {
+        return switch (prefix) {
+            case "Creation" -> CREATION_DATE_ERRORS;
+            case "LastUpdate" -> LAST_UPDATE_DATE_ERRORS;
+            default -> DateErrors.of(prefix);
+        };
+    }
+
     public static String validatePermissions(List<String> permissions) {
         if (permissions == null)
-            return "Permissions are null.";
+            return PERMISSIONS_NULL;
 
         if (permissions.isEmpty() || permissions.size() > 50) {
-            return "Permissions size is not in range (1,50) inclusive.";
+            return PERMISSIONS_SIZE;
         }
 
         for (String p : permissions) {
-            if (p == null)
-                return "A permission is null.";
+            String errorMessage;
+            if ((errorMessage = validatePermission(p)) != null)
+                return errorMessage;
+        }
 
-            if (p.isBlank())
-                return "A permission is blank.";
+        return null;
+    }
+
+    private static String validateAuthorities(final Collection<? extends GrantedAuthority> authorities) {
+        if (authorities.isEmpty() || authorities.size() > 50) {
+            return PERMISSIONS_SIZE;
+        }
 
-            if (p.length() > 50)
-                return "A permission size is not in range (1,50) inclusive.";
+        for (GrantedAuthority authority : authorities) {
+            String errorMessage;
+            if ((errorMessage = validatePermission(authority.getAuthority())) != null)
+                return errorMessage;
         }
 
         return null;
     }
 
+    private static String validatePermission(final String permission) {
+        if (permission == null)
+            return PERMISSION_NULL;
+
+        if (permission.isBlank())
+            return PERMISSION_BLANK;
+
+        if (permission.length() > 50)
+            return PERMISSION_SIZE;
+
+        return null;
+    }
+
     /* Minimum acceptable password: a2R_a2R_ */
     public static String validatePassword(final char[] password) {
         if (password == null)
-            return "Password is null.";
+            return PASSWORD_NULL;
 
         final int len = password.length;
         if (len < 8 || len > 120)
-            return clearPassword(password, "Password is not in range (8,120) inclusive.");
+            return clearPassword(password, PASSWORD_SIZE);
 
         int upperCaseCount = 0;
         int digitCount = 0;
@@ -131,20 +327,55 @@ public final class Validator
                 ++specialCount;
         }
 
+        return clearPassword(password, passwordError(len, upperCaseCount, digitCount, specialCount));
+    }
+
+    /*
+     * Same checks of validatePassword(char[]), without copying the password in a char[] to clear.
+     * The password is never null here, as the callers used to call toCharArray() on it.
+     */
+    private static String validatePassword(final String password) {
+        final int len = password.length();
+        if (len < 8 || len > 120)
+            return PASSWORD_SIZE;
+
+        int upperCaseCount = 0;
+        int digitCount = 0;
+        int specialCount = 0;
+
+        for (int i = 0; i < len; ++i) {
+            final char c = password.charAt(i);
+            if (Character.isDigit(c))
+                ++digitCount;
+            else if (Character.isUpperCase(c))
+                ++upperCaseCount;
+            else if (! Character.isLetterOrDigit(c))
+                ++specialCount;
+        }
+
+        return passwordError(len, upperCaseCount, digitCount, specialCount);
+    }
+
+    private static String passwordError(
+            final int len,
+            final int upperCaseCount,
+            final int digitCount,
+            final int specialCount
+    ) {
         int lowerCaseCount = len - (upperCaseCount + digitCount + specialCount);
         if (lowerCaseCount < 2)
-            return clearPassword(password, "Password has less then 2 lower case letters.");
+            return PASSWORD_LOWER_CASE;
 
         if (upperCaseCount < 2)
-            return clearPassword(password, "Password has less then 2 upper case letters.");
+            return PASSWORD_UPPER_CASE;
 
         if (digitCount < 2)
-            return clearPassword(password, "Password has less then 2 digits.");
+            return PASSWORD_DIGITS;
 
         if (specialCount < 2)
-            return clearPassword(password, "Password has less then 2 special characters.");
+            return PASSWORD_SPECIAL;
 
-        return clearPassword(password, null);
+        return null;
     }
 
     // Check if character is allowed in standard Base64
@@ -157,29 +388,33 @@ public final class Validator
 
     public static String validateBase64OTActivationToken(final String base64OTActivationToken) {
         if (base64OTActivationToken == null)
-            return "One Time Activation Token is null.";
+            return OT_ACTIVATION_TOKEN_NULL;
 
         // Must be multiple of 4
-        if (base64OTActivationToken.length() > 128 || (base64OTActivationToken.length() % 4 != 0)) {
-            return "One Time Activation Token has an incorrect size.";
+        final int strSize = base64OTActivationToken.length();
+        if (strSize > 128 || (strSize % 4 != 0)) {
+            return OT_ACTIVATION_TOKEN_SIZE;
         }
 
         if (base64OTActivationToken.isBlank())
-            return "One Time Activation Token is blank.";
+            return OT_ACTIVATION_TOKEN_BLANK;
 
         // Fast manual character validation
-        final int strSize = base64OTActivationToken.length();
+        int firstPadding = -1;
         for (int i = 0; i < strSize; i++) {
-            if (! isBase64Char(base64OTActivationToken.charAt(i)))
+            final char c = base64OTActivationToken.charAt(i);
+            if (! isBase64Char(c))
                 return INVALID_OT_ACTIVATION_TOKEN;
+            if (c == '=' && firstPadding == -1)
+                firstPadding = i;
         }
 
-        try {
-            Base64.getDecoder().decode(base64OTActivationToken);
-        }
-        catch (IllegalArgumentException e) {
+        /* What Base64.getDecoder().decode() accepts, without decoding:
+           padding only as the last char ("xxx=") or the last two chars ("xx=="). */
+        if (firstPadding != -1
+                && firstPadding != strSize - 1
+                && ! (firstPadding == strSize - 2 && base64OTActivationToken.charAt(strSize - 1) == '='))
             return INVALID_OT_ACTIVATION_TOKEN;
-        }
 
         return null;
     }
@@ -191,7 +426,7 @@ public final class Validator
 
     public static String validateUserRegistrationDto(User.RegistrationDto user) {
         if (user == null)
-            return "User is null.";
+            return USER_NULL;
 
         String errorMessage;
         if ((errorMessage = validateEmail(user.getEmail())) != null)
@@ -206,7 +441,7 @@ public final class Validator
         if ((errorMessage = validatePermissions(user.getPermissions())) != null)
             return errorMessage;
 
-        if ((errorMessage = validatePassword(user.getPassword().toCharArray())) != null)
+        if ((errorMessage = validatePassword(user.getPassword())) != null)
             return errorMessage;
 
         return null;
@@ -214,7 +449,7 @@ public final class Validator
 
     public static String validateUserSecureDto(User.SecureDto user) {
         if (user == null)
-            return "User is null.";
+            return USER_NULL;
 
         String errorMessage;
         if ((errorMessage = validateEmail(user.email())) != null)
@@ -240,7 +475,7 @@ public final class Validator
 
     public static String validateUser(User user) {
         if (user == null)
-            return "User is null.";
+            return USER_NULL;
 
         String errorMessage;
         if ((errorMessage = validateEmail(user.getUsername())) != null)
@@ -260,21 +495,19 @@ public final class Validator
 
         var authorities = user.getAuthorities();
         if (authorities == null)
-            return "Permissions are null.";
+            return PERMISSIONS_NULL;
 
-        if ((errorMessage = validatePermissions(user.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
-                .toList())) != null)
+        if ((errorMessage = validateAuthorities(authorities)) != null)
             return errorMessage;
 
         if (user.isActive() && user.getActivationToken() != null) {
-            return "Enable Token is not null, but the account is already enabled.";
+            return ENABLE_TOKEN_NOT_NULL;
         }
         else if (! user.isActive() && user.getActivationToken() == null) {
-            return "Enable Token is null, but the account is not enabled.";
+            return ENABLE_TOKEN_NULL;
         }
 
-        if ((errorMessage = validatePassword(user.getPassword().toCharArray())) != null)
+        if ((errorMessage = validatePassword(user.getPassword())) != null)
             return errorMessage;
 
         return null;
@@ -282,13 +515,13 @@ public final class Validator
 
     public static String validateAuthRequest(AuthRequest request) {
         if (request == null)
-            return "Authentication Request is null.";
+            return AUTH_REQUEST_NULL;
 
         String errorMessage;
         if ((errorMessage = validateEmail(request.getEmail())) != null)
             return errorMessage;
 
-        if ((errorMessage = validatePassword(request.getPassword().toCharArray())) != null)
+        if ((errorMessage = validatePassword(request.getPassword())) != null)
             return errorMessage;
 
         String oneTimeActivationToken;
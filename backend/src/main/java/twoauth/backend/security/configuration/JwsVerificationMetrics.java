@@ -0,0 +1,44 @@
+package twoauth.backend.security.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Counts the JWS verified by the {@link JwtAuthenticationFilter} and its reactive version, by result:
+ * {@code twoauth.jws.verifications{result}}.
+ * <br/>
+ * The counters are registered once, an increment is an array access.
+ */
+@Component
+class JwsVerificationMetrics
+{
+    enum Result {
+        VALID,
+        EXPIRED,
+        INVALID_SIGNATURE,
+        MALFORMED,
+        INVALID_CLAIMS,
+        REVOKED,
+        OLD_TOKEN_VERSION
+    }
+
+    private final Counter[] counters;
+
+    JwsVerificationMetrics(final MeterRegistry meterRegistry)
+    {
+        final Result[] results = Result.values();
+        this.counters = new Counter[results.length];
+        for (final Result result : results)
+            counters[result.ordinal()] = Counter.builder("twoauth.jws.verifications")
+                    .description("JWS verified on the requests, by result")
+                    .tag("result", result.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+    }
+
+    void increment(final Result result) {
+        counters[result.ordinal()].increment();
+    }
+}
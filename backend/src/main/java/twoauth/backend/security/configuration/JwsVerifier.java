@@ -0,0 +1,205 @@
+package twoauth.backend.security.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import twoauth.backend.security.model.StdJwtClaims;
+import twoauth.backend.security.service.JwtKeyRotationEvent;
+import twoauth.backend.security.service.JwtKeyStore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies a JWS and remembers the result, so that the same JWS, relayed by the
+ * API Gateway on every proxied request, skips the signature check and the payload parsing.
+ * <br/>
+ * The cache is keyed by the SHA-256 digest of the JWS (the raw token is never retained),
+ * each entry expires together with its JWS and the whole cache is dropped on key rotation.
+ */
+@Component
+class JwsVerifier
+{
+    private static final MessageDigest SHA_256;
+
+    static {
+        try {
+            SHA_256 = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final JwtKeyStore keyStore;
+    private final JwsVerificationMetrics metrics;
+    private final Cache<String, VerifiedJws> cache;
+
+    public JwsVerifier(
+            @Value("${2Auth.jwt.verified-cache-maximum-size:10000}") long maximumSize,
+            final JwtKeyStore keyStore,
+            final JwsVerificationMetrics metrics,
+            final MeterRegistry meterRegistry
+    ) {
+        this.keyStore = keyStore;
+        this.metrics = metrics;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize((maximumSize < 0) ? 10_000L : maximumSize)
+                .expireAfter(new ExpireWithJws())
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}: the JWS verified without the signature check
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jws.verified");
+    }
+
+    /**
+     * @return the verified content of the JWS, or null if the JWS must not be trusted.
+     */
+    @Nullable
+    VerifiedJws verify(final String jws)
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final String digest = digest(jws);
+
+        VerifiedJws verifiedJws = cache.getIfPresent(digest);
+        if (verifiedJws != null) {
+            if (! verifiedJws.isExpired(nowInMillis))
+                return verifiedJws;
+            metrics.increment(JwsVerificationMetrics.Result.EXPIRED);
+            return null;
+        }
+
+        if ((verifiedJws = parse(jws, nowInMillis)) != null)
+            cache.put(digest, verifiedJws);
+
+        return verifiedJws;
+    }
+
+    @EventListener
+    void onKeyRotation(final JwtKeyRotationEvent event) {
+        cache.invalidateAll();
+    }
+
+    @Nullable
+    VerifiedJws parse(final String jws, final long nowInMillis)
+    {
+        Claims payload;
+        try {
+            payload = keyStore.getParser()
+                    .parseSignedClaims(jws)
+                    .getPayload();
+        }
+        catch (ExpiredJwtException e) {
+            metrics.increment(JwsVerificationMetrics.Result.EXPIRED);
+            return null;
+        }
+        catch (SecurityException e) {
+            metrics.increment(JwsVerificationMetrics.Result.INVALID_SIGNATURE);
+            return null;
+        }
+        catch (JwtException e) {
+            metrics.increment(JwsVerificationMetrics.Result.MALFORMED);
+            return null;
+        }
+
+        final Date expiration = payload.getExpiration();
+        if (expiration == null || nowInMillis >= expiration.getTime()) {
+            metrics.increment((expiration == null)
+                    ? JwsVerificationMetrics.Result.INVALID_CLAIMS
+                    : JwsVerificationMetrics.Result.EXPIRED);
+            return null;
+        }
+
+        String subject;
+        List<GrantedAuthority> permissions;
+        Long tokenVersion;
+        if ((subject = safeGetSubject(payload)) == null
+                || (permissions = safeGetPermissions(payload)) == null
+                || (tokenVersion = safeGetTokenVersion(payload)) == null) {
+            metrics.increment(JwsVerificationMetrics.Result.INVALID_CLAIMS);
+            return null;
+        }
+
+        return new VerifiedJws(payload.getId(), subject, permissions, tokenVersion, expiration.getTime());
+    }
+
+    private static final class ExpireWithJws implements Expiry<String, VerifiedJws>
+    {
+        @Override
+        public long expireAfterCreate(String digest, VerifiedJws jws, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, jws.expirationInMillis() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, VerifiedJws jws, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, jws, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String digest, VerifiedJws jws, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static String digest(final String jws) {
+        try {
+            final var sha256 = (MessageDigest) SHA_256.clone();
+            return new String(sha256.digest(jws.getBytes(StandardCharsets.US_ASCII)), StandardCharsets.ISO_8859_1);
+        }
+        catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String safeGetSubject(final Claims payload) {
+        final String subject = payload.getSubject();
+        if (subject == null || subject.isBlank()) {
+            return null;
+        }
+        return subject;
+    }
+
+    private static List<GrantedAuthority> safeGetPermissions(final Claims payload) {
+        if (payload.get(StdJwtClaims.PERMISSIONS) instanceof ArrayList<?> arrayPermissions) {
+            final List<GrantedAuthority> grantedAuthorities = new ArrayList<>(arrayPermissions.size());
+            for (Object permission : arrayPermissions) {
+                if (permission instanceof String strPermission) {
+                    grantedAuthorities.add(new SimpleGrantedAuthority(strPermission));
+                }
+                else return null;
+            }
+            return Collections.unmodifiableList(grantedAuthorities);
+        }
+        else return null;
+    }
+
+    /**
+     * @return 0 for a JWS issued before the token versions.
+     */
+    private static Long safeGetTokenVersion(final Claims payload) {
+        final Object tokenVersion = payload.get(StdJwtClaims.TOKEN_VERSION);
+        if (tokenVersion == null)
+            return 0L;
+        if (tokenVersion instanceof Integer || tokenVersion instanceof Long)
+            return ((Number) tokenVersion).longValue();
+        return null;
+    }
+}
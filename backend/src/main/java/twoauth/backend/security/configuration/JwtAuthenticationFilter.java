@@ -1,34 +1,33 @@
 package twoauth.backend.security.configuration;
 
-import twoauth.backend.security.model.StdJwtClaims;
-import twoauth.backend.security.service.JwtKeyStore;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.JwtException;
-import io.jsonwebtoken.Jwts;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.lang.Nullable;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.UserTokenVersions;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter
 {
-    private static final List<String> EXCLUSION_URIS = List.of("/login", "/registration");
-    private final JwtKeyStore keyStore;
+    static final List<String> EXCLUSION_URIS = List.of("/login", "/registration");
+    private final JwsVerifier jwsVerifier;
+    private final JwsRevocationList revocationList;
+    private final UserTokenVersions tokenVersions;
+    private final JwsVerificationMetrics verificationMetrics;
 
     @Override
     protected boolean shouldNotFilter(final HttpServletRequest request) {
@@ -43,83 +42,57 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter
     ) throws ServletException, IOException
     {
         String jws;
-        if ((jws = getJwsFromRequest(request)) == null) {
+        if ((jws = getJwsFromAuthorizationHeader(request.getHeader("Authorization"))) == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        Claims payload;
-        try {
-            payload = Jwts.parser()
-                    .verifyWith(keyStore.getKey())
-                    .build()
-                    .parseSignedClaims(jws)
-                    .getPayload();
-        }
-        catch (JwtException e) {
-            // don't trust the JWT!
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        if (isJwsExpired(payload.getExpiration())) {
-            // don't trust the JWT!
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        String subject;
-        if ((subject = safeGetSubject(payload)) == null) {
-            // don't trust the JWT!
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        List<GrantedAuthority> permissions;
-        if ((permissions = safeGetPermissions(payload)) == null) {
+        VerifiedJws verifiedJws;
+        if ((verifiedJws = jwsVerifier.verify(jws)) == null
+                || ! isValid(verifiedJws, revocationList, tokenVersions, verificationMetrics)) {
             // don't trust the JWT!
             filterChain.doFilter(request, response);
             return;
         }
 
-        final var authToken = new UsernamePasswordAuthenticationToken(subject, null, permissions);
+        final var authToken = new UsernamePasswordAuthenticationToken(
+                verifiedJws.subject(), verifiedJws, verifiedJws.permissions());
         authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
         SecurityContextHolder.getContext().setAuthentication(authToken);
 
         filterChain.doFilter(request, response);
     }
 
-    private static String getJwsFromRequest(final HttpServletRequest request) {
-        final String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || authHeader.length() < 83 || !authHeader.startsWith("Bearer ")) {
-            return null;
-        }
-        return authHeader.substring(7);
-    }
+    /**
+     * Shared with the {@link ReactiveJwtAuthenticationFilter}, may read MongoDB. Counts the result.
+     * @return false if the verified JWS was revoked, or if its user invalidated it with a new token version.
+     */
+    static boolean isValid(
+            final VerifiedJws verifiedJws,
+            final JwsRevocationList revocationList,
+            final UserTokenVersions tokenVersions,
+            final JwsVerificationMetrics verificationMetrics
+    ) {
+        final JwsVerificationMetrics.Result result;
+        if (revocationList.isRevoked(verifiedJws.id()))
+            result = JwsVerificationMetrics.Result.REVOKED;
+        else if (! tokenVersions.isCurrent(verifiedJws.subject(), verifiedJws.tokenVersion()))
+            result = JwsVerificationMetrics.Result.OLD_TOKEN_VERSION;
+        else
+            result = JwsVerificationMetrics.Result.VALID;
 
-    private static boolean isJwsExpired(Date expiration) {
-        return (expiration == null) || (new Date().compareTo(expiration) >= 0);
+        verificationMetrics.increment(result);
+        return result == JwsVerificationMetrics.Result.VALID;
     }
 
-    private static String safeGetSubject(final Claims payload) {
-        final String subject = payload.getSubject();
-        if (subject == null || subject.isBlank()) {
+    /**
+     * Shared with the {@link ReactiveJwtAuthenticationFilter}.
+     */
+    @Nullable
+    static String getJwsFromAuthorizationHeader(@Nullable final String authHeader) {
+        if (authHeader == null || authHeader.length() < 83 || !authHeader.startsWith("Bearer ")) {
             return null;
         }
-        return subject;
-    }
-
-    private static List<GrantedAuthority> safeGetPermissions(final Claims payload) {
-        if (payload.get(StdJwtClaims.PERMISSIONS) instanceof ArrayList<?> arrayPermissions) {
-            final List<GrantedAuthority> grantedAuthorities = new ArrayList<>(arrayPermissions.size());
-            for (Object permission : arrayPermissions) {
-                if (permission instanceof String strPermission) {
-                    grantedAuthorities.add(new SimpleGrantedAuthority(strPermission));
-                }
-                else return null;
-            }
-            return grantedAuthorities;
-        }
-        else return null;
+        return authHeader.substring(7);
     }
 }
@@ -0,0 +1,76 @@
+package twoauth.backend.security.configuration;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+
+/**
+ * Builds a {@link DelegatingPasswordEncoder} that encodes with the configured algorithm and cost,
+ * prefixing every hash with the algorithm id (e.g. {bcrypt}), and matches every supported algorithm.
+ * <br/>
+ * A hash encoded with another algorithm, or with another cost, needs an upgrade: it is
+ * re-encoded with the current settings on the next successful login.
+ * Hashes without an id were created before the prefix was introduced, and are BCrypt hashes.
+ */
+public final class PasswordEncoderFactory
+{
+    private static final String BCRYPT_ID = "bcrypt";
+    private static final String ARGON2_ID = "argon2";
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+
+    private PasswordEncoderFactory() {}
+
+    public static PasswordEncoder newPasswordEncoder(
+            final PasswordEncoderType type,
+            final int bcryptStrength,
+            final int argon2MemoryInKiB,
+            final int argon2Iterations,
+            final int argon2Parallelism
+    ) {
+        final var bcrypt = new ExactCostBCryptPasswordEncoder(bcryptStrength);
+        final var argon2 = new Argon2PasswordEncoder(
+                ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, argon2Parallelism, argon2MemoryInKiB, argon2Iterations);
+
+        final String idForEncode = switch (type) {
+            case BCRYPT -> BCRYPT_ID;
+            case ARGON2 -> ARGON2_ID;
+        };
+
+        final var encoder = new DelegatingPasswordEncoder(idForEncode, Map.of(BCRYPT_ID, bcrypt, ARGON2_ID, argon2));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
+    /**
+     * BCrypt needs an upgrade when its cost differs from the configured one,
+     * not only when it is lower: lowering the cost is a legit way to lower the login CPU cost.
+     */
+    private static final class ExactCostBCryptPasswordEncoder extends BCryptPasswordEncoder
+    {
+        private final int strength;
+
+        private ExactCostBCryptPasswordEncoder(final int strength) {
+            super(strength);
+            this.strength = strength;
+        }
+
+        @Override
+        public boolean upgradeEncoding(final String encodedPassword)
+        {
+            // $2a$12$...
+            if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(6) != '$')
+                return super.upgradeEncoding(encodedPassword);
+
+            try {
+                return Integer.parseInt(encodedPassword, 4, 6, 10) != strength;
+            }
+            catch (NumberFormatException e) {
+                return super.upgradeEncoding(encodedPassword);
+            }
+        }
+    }
+}
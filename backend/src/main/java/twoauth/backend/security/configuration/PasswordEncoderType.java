@@ -0,0 +1,6 @@
+package twoauth.backend.security.configuration;
+
+public enum PasswordEncoderType {
+    BCRYPT,
+    ARGON2
+}
@@ -0,0 +1,38 @@
+package twoauth.backend.security.configuration;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import twoauth.backend.security.service.PasswordHashingExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs only the hashing of the DaoAuthenticationProvider on the {@link PasswordHashingExecutor}: the user lookup
+ * and the password upgrade stay on the caller thread, so that MongoDB latency never holds a hashing thread.
+ * <br/>
+ * {@link #matches} and {@link #encode} throw a {@link RejectedExecutionException} if the pool is saturated.
+ */
+final class PooledPasswordEncoder implements PasswordEncoder
+{
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    PooledPasswordEncoder(final PasswordEncoder passwordEncoder, final PasswordHashingExecutor passwordHashingExecutor) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    @Override
+    public String encode(final CharSequence rawPassword) {
+        return passwordHashingExecutor.call(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+        return passwordHashingExecutor.call(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(final String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,80 @@
+package twoauth.backend.security.configuration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.UserTokenVersions;
+
+/**
+ * {@link JwtAuthenticationFilter} of the reactive mode.
+ * <br/>
+ * Not a bean: a WebFilter bean would also be added to the WebHandler, outside the security filter chain.
+ */
+class ReactiveJwtAuthenticationFilter implements WebFilter
+{
+    private final JwsVerifier jwsVerifier;
+    private final JwsRevocationList revocationList;
+    private final UserTokenVersions tokenVersions;
+    private final JwsVerificationMetrics verificationMetrics;
+
+    ReactiveJwtAuthenticationFilter(
+            final JwsVerifier jwsVerifier,
+            final JwsRevocationList revocationList,
+            final UserTokenVersions tokenVersions,
+            final JwsVerificationMetrics verificationMetrics
+    ) {
+        this.jwsVerifier = jwsVerifier;
+        this.revocationList = revocationList;
+        this.tokenVersions = tokenVersions;
+        this.verificationMetrics = verificationMetrics;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull final ServerWebExchange exchange, @NonNull final WebFilterChain chain)
+    {
+        if (JwtAuthenticationFilter.EXCLUSION_URIS.contains(exchange.getRequest().getPath().value()))
+            return chain.filter(exchange);
+
+        String jws;
+        if ((jws = JwtAuthenticationFilter.getJwsFromAuthorizationHeader(
+                exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))) == null)
+            return chain.filter(exchange);
+
+        VerifiedJws verifiedJws;
+        if ((verifiedJws = jwsVerifier.verify(jws)) == null) {
+            // don't trust the JWT!
+            return chain.filter(exchange);
+        }
+
+        if (! revocationList.mightBeRevoked(verifiedJws.id()) && tokenVersions.isCached(verifiedJws.subject())) {
+            return JwtAuthenticationFilter.isValid(verifiedJws, revocationList, tokenVersions, verificationMetrics)
+                    ? authenticate(exchange, chain, verifiedJws)
+                    : chain.filter(exchange);
+        }
+
+        // a positive hit of the revocation filter, or a token version not cached, reads MongoDB
+        return Mono.fromCallable(() ->
+                        JwtAuthenticationFilter.isValid(verifiedJws, revocationList, tokenVersions, verificationMetrics))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(isValid -> isValid ? authenticate(exchange, chain, verifiedJws) : chain.filter(exchange));
+    }
+
+    private static Mono<Void> authenticate(
+            final ServerWebExchange exchange,
+            final WebFilterChain chain,
+            final VerifiedJws verifiedJws
+    ) {
+        final var authToken = new UsernamePasswordAuthenticationToken(
+                verifiedJws.subject(), verifiedJws, verifiedJws.permissions());
+        return chain.filter(exchange)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authToken));
+    }
+}
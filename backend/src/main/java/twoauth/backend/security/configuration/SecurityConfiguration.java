@@ -1,88 +1,225 @@
 package twoauth.backend.security.configuration;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.header.writers.StaticHeadersWriter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.header.StaticServerHttpHeadersWriter;
+import twoauth.backend.security.controller.AuthenticationController;
+import twoauth.backend.security.controller.JwksController;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.PasswordHashingExecutor;
+import twoauth.backend.security.service.UserTokenVersions;
+import twoauth.backend.security.service.registration.EmailOutboxDispatcher;
 
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Beans shared by the two web stacks, selected with {@code spring.main.web-application-type}:
+ * <ul>
+ *     <li>servlet (default): Spring MVC on Tomcat, a thread per request;</li>
+ *     <li>reactive: Spring WebFlux on the non-blocking adapter of Tomcat, MongoDB is read and updated without blocking a thread.</li>
+ * </ul>
+ */
 @Configuration
-@EnableWebSecurity
-@RequiredArgsConstructor
 public class SecurityConfiguration
 {
-    @Value("${server.error.path:/error}")
-    private String serverErrorPath;
+    @Configuration
+    @EnableWebSecurity
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class Servlet
+    {
+        @Value("${server.error.path:/error}")
+        private String serverErrorPath;
 
-    @Bean
-    public SecurityFilterChain filterChain(
-            final HttpSecurity http,
-            final JwtAuthenticationFilter jwtAuthFilter
-    ) throws Exception
+        @Bean
+        SecurityFilterChain filterChain(
+                final HttpSecurity http,
+                final JwtAuthenticationFilter jwtAuthFilter
+        ) throws Exception
+        {
+            http
+                .headers(secHeaders -> secHeaders
+                        .addHeaderWriter(new StaticHeadersWriter("Content-Security-Policy","default-src 'none'"))
+                        .addHeaderWriter(new StaticHeadersWriter("X-Permitted-Cross-Domain-Policies","none"))
+                        .addHeaderWriter(new StaticHeadersWriter("Cache-Control","no-store, max-age=0"))
+                        .addHeaderWriter(new StaticHeadersWriter("Pragma","no-cache"))
+                        .addHeaderWriter(new StaticHeadersWriter("Expires","0"))
+                        .addHeaderWriter(new StaticHeadersWriter("Permissions-Policy","geolocation=(), microphone=(), camera=()"))
+                )
+                .csrf(AbstractHttpConfigurer::disable)
+                .httpBasic(AbstractHttpConfigurer::disable)
+                .formLogin(AbstractHttpConfigurer::disable)
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers(HttpMethod.POST, "/login").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/registration").permitAll()
+                        .requestMatchers(HttpMethod.POST, AuthenticationController.REFRESH_PATH).permitAll()
+                        .requestMatchers(HttpMethod.GET, JwksController.JWKS_PATH).permitAll()
+                        .requestMatchers(serverErrorPath).permitAll()
+                        // only on the management port, see management.server.port
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
+                        .anyRequest().authenticated()
+                )
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .logout(AbstractHttpConfigurer::disable);
+
+            return http.build();
+        }
+    }
+
+    @Configuration
+    @EnableWebFluxSecurity
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class Reactive
     {
-        http
-            .headers(secHeaders -> secHeaders
-                    .addHeaderWriter(new StaticHeadersWriter("Content-Security-Policy","default-src 'none'"))
-                    .addHeaderWriter(new StaticHeadersWriter("X-Permitted-Cross-Domain-Policies","none"))
-                    .addHeaderWriter(new StaticHeadersWriter("Cache-Control","no-store, max-age=0"))
-                    .addHeaderWriter(new StaticHeadersWriter("Pragma","no-cache"))
-                    .addHeaderWriter(new StaticHeadersWriter("Expires","0"))
-                    .addHeaderWriter(new StaticHeadersWriter("Permissions-Policy","geolocation=(), microphone=(), camera=()"))
-            )
-            .csrf(AbstractHttpConfigurer::disable)
-            .httpBasic(AbstractHttpConfigurer::disable)
-            .formLogin(AbstractHttpConfigurer::disable)
-            .authorizeHttpRequests(authorize -> authorize
-                    .requestMatchers(HttpMethod.POST, "/login").permitAll()
-                    .requestMatchers(HttpMethod.POST, "/registration").permitAll()
-                    .requestMatchers(serverErrorPath).permitAll()
-                    .anyRequest().authenticated()
-            )
-            .sessionManagement(session -> session
-                    .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
-            )
-            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
-            .logout(AbstractHttpConfigurer::disable);
+        @Bean
+        SecurityWebFilterChain securityWebFilterChain(
+                final ServerHttpSecurity http,
+                final JwsVerifier jwsVerifier,
+                final JwsRevocationList revocationList,
+                final UserTokenVersions tokenVersions,
+                final JwsVerificationMetrics verificationMetrics
+        ) {
+            http
+                .headers(secHeaders -> secHeaders
+                        .writer(StaticServerHttpHeadersWriter.builder()
+                                .header("Content-Security-Policy","default-src 'none'")
+                                .header("X-Permitted-Cross-Domain-Policies","none")
+                                .header("Cache-Control","no-store, max-age=0")
+                                .header("Pragma","no-cache")
+                                .header("Expires","0")
+                                .header("Permissions-Policy","geolocation=(), microphone=(), camera=()")
+                                .build())
+                )
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .authorizeExchange(authorize -> authorize
+                        .pathMatchers(HttpMethod.POST, "/login").permitAll()
+                        .pathMatchers(HttpMethod.POST, "/registration").permitAll()
+                        .pathMatchers(HttpMethod.POST, AuthenticationController.REFRESH_PATH).permitAll()
+                        .pathMatchers(HttpMethod.GET, JwksController.JWKS_PATH).permitAll()
+                        // only on the management port, see management.server.port
+                        .matchers(org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest
+                                .to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
+                        .anyExchange().authenticated()
+                )
+                // stateless, as the servlet SessionCreationPolicy.STATELESS
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                // 403 without credentials, as the servlet filter chain
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.FORBIDDEN))
+                )
+                .addFilterAt(new ReactiveJwtAuthenticationFilter(
+                                jwsVerifier, revocationList, tokenVersions, verificationMetrics),
+                        SecurityWebFiltersOrder.AUTHENTICATION)
+                .logout(ServerHttpSecurity.LogoutSpec::disable);
 
-        return http.build();
+            return http.build();
+        }
     }
 
     @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    PasswordEncoder passwordEncoder(
+            @Value("${2Auth.password-encoder.algorithm:BCRYPT}") String algorithm,
+            @Value("${2Auth.password-encoder.bcrypt-strength:12}") int bcryptStrength,
+            @Value("${2Auth.password-encoder.argon2-memory-in-kib:19456}") int argon2MemoryInKiB,
+            @Value("${2Auth.password-encoder.argon2-iterations:2}") int argon2Iterations,
+            @Value("${2Auth.password-encoder.argon2-parallelism:1}") int argon2Parallelism,
+            final MeterRegistry meterRegistry
+    ) {
+        return new TimedPasswordEncoder(
+                PasswordEncoderFactory.newPasswordEncoder(
+                        PasswordEncoderType.valueOf(algorithm),
+                        bcryptStrength,
+                        argon2MemoryInKiB,
+                        argon2Iterations,
+                        argon2Parallelism
+                ),
+                meterRegistry
+        );
     }
 
     @Bean
     AuthenticationManager authenticationManager(
             final UserDetailsService userDetailsService,
-            final PasswordEncoder passwordEncoder
+            final UserDetailsPasswordService userDetailsPasswordService,
+            final PasswordEncoder passwordEncoder,
+            final PasswordHashingExecutor passwordHashingExecutor
     ) {
         final var authenticationProvider = new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(userDetailsService);
-        authenticationProvider.setPasswordEncoder(passwordEncoder);
+        authenticationProvider.setPasswordEncoder(new PooledPasswordEncoder(passwordEncoder, passwordHashingExecutor));
+        // re-encodes the password hash, after a successful login, if it was encoded with other settings
+        authenticationProvider.setUserDetailsPasswordService(userDetailsPasswordService);
 
         return new ProviderManager(authenticationProvider);
     }
 
+    /**
+     * Single thread running the key rotation and the refreshes of the revocations and token versions: a virtual thread
+     * when spring.threads.virtual.enabled is true (Java 21), so that waiting for MongoDB does not hold a carrier thread.
+     */
+    @Bean
+    @Primary
+    TaskScheduler taskScheduler(
+            @Value("${spring.threads.virtual.enabled:false}") boolean isVirtualThreadsEnabled
+    ) {
+        return newSingleThreadScheduler(isVirtualThreadsEnabled, "scheduler-");
+    }
+
+    /**
+     * Single thread sending the email outbox: a slow mail server never delays the key rotation.
+     */
     @Bean
-    TaskScheduler taskScheduler() {
-        return new ConcurrentTaskScheduler(Executors.newSingleThreadScheduledExecutor());
+    @ConditionalOnExpression(EmailOutboxDispatcher.IS_EMAIL_CONFIRMATION)
+    TaskScheduler emailOutboxScheduler(
+            @Value("${spring.threads.virtual.enabled:false}") boolean isVirtualThreadsEnabled
+    ) {
+        return newSingleThreadScheduler(isVirtualThreadsEnabled, "email-outbox-");
+    }
+
+    private static TaskScheduler newSingleThreadScheduler(final boolean isVirtualThreadsEnabled,
+                                                          final String threadNamePrefix)
+    {
+        final ThreadFactory threadFactory = isVirtualThreadsEnabled
+                ? new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory()
+                : new CustomizableThreadFactory(threadNamePrefix);
+        return new ConcurrentTaskScheduler(Executors.newSingleThreadScheduledExecutor(threadFactory));
     }
 }
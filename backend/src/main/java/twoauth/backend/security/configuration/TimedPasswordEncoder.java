@@ -0,0 +1,46 @@
+package twoauth.backend.security.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the password verifications of the logins, the BCrypt (or Argon2) part of their latency:
+ * {@code twoauth.login.phase{phase=password_verification}}.
+ */
+final class TimedPasswordEncoder implements PasswordEncoder
+{
+    private final PasswordEncoder passwordEncoder;
+    private final Timer verificationTimer;
+
+    TimedPasswordEncoder(final PasswordEncoder passwordEncoder, final MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.verificationTimer = Timer.builder("twoauth.login.phase")
+                .description("Time spent by a login in each phase")
+                .tag("phase", "password_verification")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(final CharSequence rawPassword) {
+        return passwordEncoder.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+        final long startInNanos = System.nanoTime();
+        try {
+            return passwordEncoder.matches(rawPassword, encodedPassword);
+        }
+        finally {
+            verificationTimer.record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(final String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+}
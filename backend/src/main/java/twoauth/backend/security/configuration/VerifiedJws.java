@@ -0,0 +1,24 @@
+package twoauth.backend.security.configuration;
+
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+
+/**
+ * The trusted content of a JWS whose signature has already been verified,
+ * set as the credentials of the Authentication by the JWT filters.
+ *
+ * @param id the "jti" claim, null for a JWS issued before the JwsRevocationList.
+ * @param subject the user email.
+ * @param permissions unmodifiable list of the user permissions.
+ * @param tokenVersion the "tokenVersion" claim, 0 for a JWS issued before the UserTokenVersions.
+ * @param expirationInMillis the JWS expiration time.
+ */
+public record VerifiedJws(@Nullable String id, String subject, List<GrantedAuthority> permissions,
+                          long tokenVersion, long expirationInMillis)
+{
+    public boolean isExpired(final long nowInMillis) {
+        return nowInMillis >= expirationInMillis;
+    }
+}
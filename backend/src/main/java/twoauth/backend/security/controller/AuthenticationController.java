@@ -4,21 +4,33 @@ import twoauth.backend.exception.BadRequestException;
 import twoauth.backend.security.Validator;
 import twoauth.backend.security.model.AuthRequest;
 import twoauth.backend.security.model.JwtResponse;
+import twoauth.backend.security.model.RefreshRequest;
 import twoauth.backend.security.model.User;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import twoauth.backend.security.configuration.VerifiedJws;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.LoginRateLimiter;
 import twoauth.backend.security.service.LoginService;
 import twoauth.backend.security.service.registration.RegistrationService;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class AuthenticationController
 {
+    public static final String REFRESH_PATH = "/token/refresh";
+
     private final RegistrationService registrationService;
     private final LoginService loginService;
+    private final LoginRateLimiter loginRateLimiter;
+    private final JwsRevocationList revocationList;
 
     @PostMapping("/registration")
     public Object registration(@RequestBody final User.RegistrationDto user)
@@ -34,12 +46,44 @@ public class AuthenticationController
     }
 
     @PostMapping("/login")
-    public ResponseEntity<JwtResponse> login(@RequestBody final AuthRequest request)
-    {
+    public ResponseEntity<JwtResponse> login(
+            @RequestBody final AuthRequest request,
+            final HttpServletRequest httpRequest
+    ) {
         String errorMessage;
         if ((errorMessage = Validator.validateAuthRequest(request)) != null)
             throw new BadRequestException(errorMessage);
 
-        return loginService.login(request);
+        return loginService.login(request, loginRateLimiter.getClientAddress(
+                httpRequest.getHeader(LoginRateLimiter.FORWARDED_FOR_HEADER), httpRequest.getRemoteAddr()));
+    }
+
+    /**
+     * Exchanges a refresh token for a new JWS, without the password:
+     * the API Gateway calls it before the JWS of a session expires.
+     */
+    @PostMapping(REFRESH_PATH)
+    public ResponseEntity<JwtResponse> refresh(@RequestBody final RefreshRequest request)
+    {
+        if (request == null || request.refreshToken() == null || request.refreshToken().isBlank())
+            throw new BadRequestException("Refresh token is null or blank.");
+
+        return loginService.refresh(request.refreshToken());
+    }
+
+    /**
+     * Revokes the JWS of the request, until it expires.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(final Authentication authentication)
+    {
+        VerifiedJws verifiedJws;
+        if ((verifiedJws = CallerJws.getRevocable(authentication)) == null)
+            throw new BadRequestException("JWT cannot be revoked.");
+
+        if (! revocationList.revoke(verifiedJws.id(), verifiedJws.expirationInMillis()))
+            throw new BadRequestException("JWT not revoked.");
+
+        return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,22 @@
+package twoauth.backend.security.controller;
+
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.Authentication;
+import twoauth.backend.security.configuration.VerifiedJws;
+
+final class CallerJws
+{
+    private CallerJws() {}
+
+    /**
+     * @return the JWS that authenticated the request, or null if it has no "jti" and cannot be revoked.
+     */
+    @Nullable
+    static VerifiedJws getRevocable(@Nullable final Authentication authentication)
+    {
+        if (authentication != null && authentication.getCredentials() instanceof VerifiedJws verifiedJws
+                && verifiedJws.id() != null)
+            return verifiedJws;
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package twoauth.backend.security.controller;
+
+import io.jsonwebtoken.security.Jwks;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import twoauth.backend.security.service.JwtKeyStore;
+
+import java.util.StringJoiner;
+
+/**
+ * Publishes the public keys that verify the JWS as a JWK Set, so that the API Gateway can verify them too.
+ * The set is empty with HS512, whose keys are secret. Used by both the servlet and the reactive mode.
+ */
+@RestController
+@RequiredArgsConstructor
+public class JwksController
+{
+    public static final String JWKS_PATH = "/.well-known/jwks.json";
+    private static final MediaType JWK_SET = MediaType.parseMediaType("application/jwk-set+json");
+
+    private final JwtKeyStore keyStore;
+
+    @GetMapping(JWKS_PATH)
+    public ResponseEntity<String> jwks()
+    {
+        final var keys = new StringJoiner(",", "{\"keys\":[", "]}");
+        keyStore.getPublicKeys().forEach((id, publicKey) ->
+                keys.add(Jwks.json(Jwks.builder().key(publicKey).id(id).build())));
+
+        return ResponseEntity.ok()
+                .contentType(JWK_SET)
+                .body(keys.toString());
+    }
+}
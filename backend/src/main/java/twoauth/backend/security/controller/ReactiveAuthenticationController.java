@@ -0,0 +1,104 @@
+package twoauth.backend.security.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import twoauth.backend.exception.BadRequestException;
+import twoauth.backend.security.Validator;
+import twoauth.backend.security.configuration.VerifiedJws;
+import twoauth.backend.security.model.AuthRequest;
+import twoauth.backend.security.model.JwtResponse;
+import twoauth.backend.security.model.RefreshRequest;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.LoginRateLimiter;
+import twoauth.backend.security.service.ReactiveLoginService;
+import twoauth.backend.security.service.registration.RegistrationService;
+
+import java.net.InetSocketAddress;
+
+/**
+ * {@link AuthenticationController} of the reactive mode.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveAuthenticationController
+{
+    private final RegistrationService registrationService;
+    private final ReactiveLoginService loginService;
+    private final LoginRateLimiter loginRateLimiter;
+    private final JwsRevocationList revocationList;
+
+    /**
+     * The registration waits for the password hashing and writes with the blocking MongoTemplate:
+     * it runs on the bounded elastic Scheduler, never on a Netty thread.
+     */
+    @PostMapping("/registration")
+    public Mono<ResponseEntity<Void>> registration(@RequestBody final User.RegistrationDto user)
+    {
+        String errorMessage;
+        if ((errorMessage = Validator.validateUserRegistrationDto(user)) != null)
+            throw new BadRequestException(errorMessage);
+
+        return Mono.fromCallable(() -> registrationService.registration(user))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(isRegistered -> {
+                    if (! isRegistered)
+                        throw new BadRequestException("User not registered.");
+
+                    return ResponseEntity.ok().build();
+                });
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<JwtResponse>> login(
+            @RequestBody final AuthRequest request,
+            final ServerWebExchange exchange
+    ) {
+        String errorMessage;
+        if ((errorMessage = Validator.validateAuthRequest(request)) != null)
+            throw new BadRequestException(errorMessage);
+
+        final InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        return loginService.login(request, loginRateLimiter.getClientAddress(
+                exchange.getRequest().getHeaders().getFirst(LoginRateLimiter.FORWARDED_FOR_HEADER),
+                (remoteAddress == null) ? null : remoteAddress.getHostString()));
+    }
+
+    @PostMapping(AuthenticationController.REFRESH_PATH)
+    public Mono<ResponseEntity<JwtResponse>> refresh(@RequestBody final RefreshRequest request)
+    {
+        if (request == null || request.refreshToken() == null || request.refreshToken().isBlank())
+            throw new BadRequestException("Refresh token is null or blank.");
+
+        return loginService.refresh(request.refreshToken());
+    }
+
+    /**
+     * Revokes the JWS of the request, until it expires.
+     */
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout(final Authentication authentication)
+    {
+        VerifiedJws verifiedJws;
+        if ((verifiedJws = CallerJws.getRevocable(authentication)) == null)
+            throw new BadRequestException("JWT cannot be revoked.");
+
+        return Mono.fromCallable(() -> revocationList.revoke(verifiedJws.id(), verifiedJws.expirationInMillis()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(isRevoked -> {
+                    if (! isRevoked)
+                        throw new BadRequestException("JWT not revoked.");
+
+                    return ResponseEntity.ok().build();
+                });
+    }
+}
@@ -0,0 +1,101 @@
+package twoauth.backend.security.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import twoauth.backend.exception.BadRequestException;
+import twoauth.backend.exception.UserNotFoundException;
+import twoauth.backend.security.Validator;
+import twoauth.backend.security.configuration.VerifiedJws;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.ReactiveUserService;
+import twoauth.backend.security.service.UserTokenVersions;
+
+/**
+ * {@link UserController} of the reactive mode.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/users")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveUserController
+{
+    private final ReactiveUserService userService;
+    private final JwsRevocationList revocationList;
+    private final UserTokenVersions tokenVersions;
+
+    @GetMapping(value = "/{email}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<User.SecureDto> getById(@PathVariable final String email)
+    {
+        String errorMessage;
+        if ((errorMessage = Validator.validateEmail(email)) != null)
+            throw new BadRequestException(errorMessage);
+
+        return userService.safeGetById(email);
+    }
+
+    @PutMapping
+    public Mono<Void> update(@RequestBody final User.SecureDto user)
+    {
+        String errorMessage;
+        if ((errorMessage = Validator.validateUserSecureDto(user)) != null)
+            throw new BadRequestException(errorMessage);
+
+        return userService.update(user);
+    }
+
+    /**
+     * Increments the token version of the user: every JWS issued to the user is rejected, on every device.
+     * Only the user itself can do it, 403 FORBIDDEN for any other caller.
+     */
+    @PostMapping("/{email}/token-version")
+    public Mono<ResponseEntity<Void>> incrementTokenVersion(@PathVariable final String email,
+                                                            final Authentication authentication)
+    {
+        String errorMessage;
+        if ((errorMessage = Validator.validateEmail(email)) != null)
+            throw new BadRequestException(errorMessage);
+
+        if (! email.equals(authentication.getName()))
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+
+        return Mono.fromCallable(() -> tokenVersions.increment(email))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(newVersion -> newVersion.isEmpty()
+                        ? Mono.error(new UserNotFoundException(email))
+                        : Mono.just(ResponseEntity.ok().build()));
+    }
+
+    /**
+     * A user deleting its own account also revokes the JWS of the request.
+     */
+    @DeleteMapping("/{email}")
+    public Mono<Void> delete(@PathVariable final String email, final Authentication authentication)
+    {
+        String errorMessage;
+        if ((errorMessage = Validator.validateEmail(email)) != null)
+            throw new BadRequestException(errorMessage);
+
+        final VerifiedJws verifiedJws = email.equals(authentication.getName())
+                ? CallerJws.getRevocable(authentication)
+                : null;
+        if (verifiedJws == null)
+            return userService.delete(email);
+
+        return userService.delete(email)
+                .then(Mono.fromRunnable(() -> {
+                    if (! revocationList.revoke(verifiedJws.id(), verifiedJws.expirationInMillis()))
+                        log.warn("JWT of the deleted User {} not revoked.", email);
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .then();
+    }
+}
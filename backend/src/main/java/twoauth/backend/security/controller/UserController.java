@@ -1,22 +1,34 @@
 package twoauth.backend.security.controller;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import twoauth.backend.security.configuration.VerifiedJws;
 import twoauth.backend.exception.BadRequestException;
 import twoauth.backend.exception.UserNotDeletedException;
 import twoauth.backend.exception.UserNotFoundException;
 import twoauth.backend.exception.UserNotUpdatedException;
 import twoauth.backend.security.*;
 import twoauth.backend.security.model.User;
+import twoauth.backend.security.service.JwsRevocationList;
 import twoauth.backend.security.service.UserService;
+import twoauth.backend.security.service.UserTokenVersions;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/users")
 @RequiredArgsConstructor
+@Slf4j
 public class UserController
 {
     private final UserService userService;
+    private final JwsRevocationList revocationList;
+    private final UserTokenVersions tokenVersions;
 
     @GetMapping(value = "/{email}", produces = MediaType.APPLICATION_JSON_VALUE)
     public User.SecureDto getById(@PathVariable final String email) throws UserNotFoundException
@@ -38,13 +50,42 @@ public class UserController
         userService.update(user);
     }
 
+    /**
+     * Increments the token version of the user: every JWS issued to the user is rejected, on every device.
+     * Only the user itself can do it, 403 FORBIDDEN for any other caller.
+     */
+    @PostMapping("/{email}/token-version")
+    public ResponseEntity<Void> incrementTokenVersion(@PathVariable final String email, final Authentication authentication)
+            throws UserNotFoundException
+    {
+        String errorMessage;
+        if ((errorMessage = Validator.validateEmail(email)) != null)
+            throw new BadRequestException(errorMessage);
+
+        if (! email.equals(authentication.getName()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+
+        if (tokenVersions.increment(email).isEmpty())
+            throw new UserNotFoundException(email);
+
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * A user deleting its own account also revokes the JWS of the request.
+     */
     @DeleteMapping("/{email}")
-    public void delete(@PathVariable final String email) throws UserNotDeletedException
+    public void delete(@PathVariable final String email, final Authentication authentication) throws UserNotDeletedException
     {
         String errorMessage;
         if ((errorMessage = Validator.validateEmail(email)) != null)
             throw new BadRequestException(errorMessage);
 
         userService.delete(email);
+
+        VerifiedJws verifiedJws;
+        if (email.equals(authentication.getName()) && (verifiedJws = CallerJws.getRevocable(authentication)) != null
+                && ! revocationList.revoke(verifiedJws.id(), verifiedJws.expirationInMillis()))
+            log.warn("JWT of the deleted User {} not revoked.", email);
     }
 }
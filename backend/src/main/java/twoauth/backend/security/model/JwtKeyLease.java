@@ -0,0 +1,16 @@
+package twoauth.backend.security.model;
+
+import org.springframework.data.annotation.Id;
+
+import java.util.Date;
+
+/**
+ * The lease of the Backend instance that rotates the shared signing keys, renewed until {@code expireAt}.
+ * An expired lease can be taken by any instance.
+ */
+public record JwtKeyLease(
+        @Id
+        String id,
+        String owner,
+        Date expireAt
+) {}
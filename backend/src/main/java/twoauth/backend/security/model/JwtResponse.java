@@ -1,3 +1,9 @@
 package twoauth.backend.security.model;
 
-public record JwtResponse(String jwt) {}
+import org.springframework.lang.Nullable;
+
+/**
+ * @param refreshToken null if it was not saved: the JWS cannot be refreshed, or for a refresh the used token
+ *                     can be used again.
+ */
+public record JwtResponse(String jwt, @Nullable String refreshToken) {}
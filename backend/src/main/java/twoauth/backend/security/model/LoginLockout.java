@@ -0,0 +1,21 @@
+package twoauth.backend.security.model;
+
+import org.springframework.data.annotation.Id;
+
+import java.util.Date;
+
+/**
+ * An email locked out of the login after too many wrong passwords.
+ * <br/>
+ * MongoDB deletes it at {@code expireAt}, when the lockout ends.
+ */
+public record LoginLockout(
+        @Id
+        String email,
+        Date lockedAt,
+        Date expireAt
+) {
+    public static LoginLockout of(final String email, final long lockedUntilInMillis) {
+        return new LoginLockout(email, new Date(), new Date(lockedUntilInMillis));
+    }
+}
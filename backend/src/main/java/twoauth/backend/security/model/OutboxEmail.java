@@ -0,0 +1,41 @@
+package twoauth.backend.security.model;
+
+import org.springframework.data.annotation.Id;
+
+import java.util.Date;
+
+/**
+ * An email waiting in the outbox to be sent.
+ * <br/>
+ * {@code nextAttempt} is both the time of the next retry and the lease of a dispatcher
+ * that claimed the email: it is moved forward when the email is claimed.
+ * <br/>
+ * {@code text} holds the activation link with its one-time token in plaintext, until the email is sent
+ * and deleted (or discarded): the outbox collection must be readable only by the Backend.
+ */
+public record OutboxEmail(
+        @Id
+        String id,
+        String to,
+        String subject,
+        String text,
+        int attempts,
+        Date creation,
+        Date nextAttempt
+) {
+    public static OutboxEmail of(final String to, final String subject, final String text) {
+        final var now = new Date();
+        return new OutboxEmail(null, to, subject, text, 0, now, now);
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEmail{" +
+                "id='" + id + '\'' +
+                ", to='" + to + '\'' +
+                ", subject='" + subject + '\'' +
+                ", attempts=" + attempts +
+                ", nextAttempt=" + nextAttempt +
+                '}';
+    }
+}
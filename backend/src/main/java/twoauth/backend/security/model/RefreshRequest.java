@@ -0,0 +1,3 @@
+package twoauth.backend.security.model;
+
+public record RefreshRequest(String refreshToken) {}
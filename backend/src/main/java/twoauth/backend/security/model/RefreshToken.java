@@ -0,0 +1,43 @@
+package twoauth.backend.security.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.lang.Nullable;
+
+import java.util.Date;
+
+/**
+ * A refresh token, saved only as the SHA-256 hash of the opaque value given at the login.
+ * <br/>
+ * Every use replaces it with a new token of the same family: a token used twice was stolen, and its whole family
+ * is deleted. MongoDB deletes it at {@code expireAt}, the end of the session time validity.
+ * <br/>
+ * The token that replaces it is derived from the opaque value and {@code successorSalt}: every use inside
+ * the reuse interval gets the same one, and reading MongoDB is not enough to derive it.
+ *
+ * @param id the Base64URL SHA-256 hash of the token.
+ * @param tokenVersion the token version of the user at the login.
+ * @param usedAt the first use, null if the token was never used.
+ * @param successorSalt random value set with the first use.
+ */
+public record RefreshToken(
+        @Id
+        String id,
+        String familyId,
+        String email,
+        long tokenVersion,
+        @Nullable
+        Date usedAt,
+        @Nullable
+        String successorSalt,
+        Date expireAt
+) {
+    @Override
+    public String toString() {
+        return "RefreshToken{" +
+                "familyId='" + familyId + '\'' +
+                ", email='" + email + '\'' +
+                ", usedAt=" + usedAt +
+                ", expireAt=" + expireAt +
+                '}';
+    }
+}
@@ -0,0 +1,21 @@
+package twoauth.backend.security.model;
+
+import org.springframework.data.annotation.Id;
+
+import java.util.Date;
+
+/**
+ * A JWS revoked before its expiration, identified by its "jti" claim.
+ * <br/>
+ * MongoDB deletes it at {@code expireAt}, when the JWS is rejected anyway.
+ */
+public record RevokedJws(
+        @Id
+        String id,
+        Date revokedAt,
+        Date expireAt
+) {
+    public static RevokedJws of(final String id, final long expirationInMillis) {
+        return new RevokedJws(id, new Date(), new Date(expirationInMillis));
+    }
+}
@@ -3,6 +3,7 @@ package twoauth.backend.security.model;
 public class StdJwtClaims
 {
     public static final String PERMISSIONS = "permissions";
+    public static final String TOKEN_VERSION = "tokenVersion";
 
     private StdJwtClaims() {}
 }
@@ -0,0 +1,41 @@
+package twoauth.backend.security.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.lang.Nullable;
+
+import java.util.Date;
+
+/**
+ * A signing key shared by every Backend instance through MongoDB.
+ * It becomes the current key at {@code activeFrom}, and it verifies the JWS it signed until {@code expireAt},
+ * when MongoDB deletes it.
+ * <br/>
+ * For HS512 the secret is the HMAC key, otherwise it is the PKCS #8 private key and the public key is saved too.
+ * A key saved without algorithm is HS512.
+ * <br/>
+ * In MongoDB the secret is sealed with AES-GCM ({@code isSealed}): the keys saved before in clear are accepted
+ * and sealed again only during the migration of the unsealed keys.
+ */
+public record StoredJwtKey(
+        @Id
+        String id,
+        @Nullable
+        String algorithm,
+        byte[] secret,
+        @Nullable
+        byte[] publicKey,
+        Date activeFrom,
+        Date expireAt,
+        boolean isSealed
+) {
+    @Override
+    public String toString() {
+        return "StoredJwtKey{" +
+                "id='" + id + '\'' +
+                ", algorithm='" + algorithm + '\'' +
+                ", activeFrom=" + activeFrom +
+                ", expireAt=" + expireAt +
+                ", isSealed=" + isSealed +
+                '}';
+    }
+}
@@ -61,6 +61,8 @@ public final class User implements UserDetails, CredentialsContainer
     @JsonIgnore
     @ToString.Exclude
     private transient String activationToken;
+    // written in the JWS, incremented to invalidate every JWS of the user (0 if missing)
+    private long tokenVersion;
 
     private User() {}
 
@@ -81,6 +83,26 @@ public final class User implements UserDetails, CredentialsContainer
         this.activationToken = activationToken;
     }
 
+    private User(final User user) {
+        this.email = user.email;
+        this.password = user.password;
+        this.firstName = user.firstName;
+        this.lastName = user.lastName;
+        this.creation = user.getCreation();
+        this.lastUpdate = user.getLastUpdate();
+        this.permissions = user.permissions;
+        this.isActive = user.isActive;
+        this.activationToken = user.activationToken;
+        this.tokenVersion = user.tokenVersion;
+    }
+
+    /**
+     * @return a copy of this User, whose credentials can be erased without affecting this User.
+     */
+    public User copy() {
+        return new User(this);
+    }
+
     @Override
     public void eraseCredentials() {
         this.password = null;
@@ -0,0 +1,146 @@
+package twoauth.backend.security.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Repository;
+import twoauth.backend.security.model.User;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Read-through cache in front of {@link UserRepositoryImpl}: hot accounts are read
+ * (and validated) from MongoDB once per time-to-live, instead of on every login and lookup.
+ * <br/>
+ * Every write invalidates the cached user; the time-to-live bounds the staleness
+ * of a user modified by another backend instance.
+ */
+@Primary
+@Repository
+public class CachingUserRepository implements UserRepository, UserSecurityRepository
+{
+    private final UserRepositoryImpl userRepository;
+    private final Cache<String, User> users;
+    private final Cache<String, User.SecureDto> secureUsers;
+
+    public CachingUserRepository(
+            @Value("${2Auth.user-cache.maximum-size:10000}") long maximumSize,
+            @Value("${2Auth.user-cache.time-to-live-in-millis:60000}") long timeToLiveInMillis,
+            final UserRepositoryImpl userRepository,
+            final MeterRegistry meterRegistry
+    ) {
+        this.userRepository = userRepository;
+        this.users = newCache(maximumSize, timeToLiveInMillis);
+        this.secureUsers = newCache(maximumSize, timeToLiveInMillis);
+        // cache.gets{result=hit|miss}, cache.evictions, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users.details");
+        CaffeineCacheMetrics.monitor(meterRegistry, secureUsers, "users.secure");
+    }
+
+    private static <V> Cache<String, V> newCache(final long maximumSize, final long timeToLiveInMillis) {
+        return Caffeine.newBuilder()
+                .maximumSize((maximumSize < 0) ? 10_000L : maximumSize)
+                .expireAfterWrite(Duration.ofMillis((timeToLiveInMillis < 1) ? 60_000L : timeToLiveInMillis))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Optional<UserDetails> findUserDetailsById(final String email)
+    {
+        final User user = users.get(email, id -> userRepository.findUserDetailsById(id)
+                .filter(User.class::isInstance)
+                .map(User.class::cast)
+                .orElse(null));
+
+        // the cached User must never be returned: its credentials are erased after the login
+        return Optional.ofNullable(user).map(User::copy);
+    }
+
+    @Override
+    public Optional<User.SecureDto> findById(final String email) {
+        return Optional.ofNullable(secureUsers.get(email, id -> userRepository.findById(id).orElse(null)));
+    }
+
+    @Override
+    public boolean save(final User user) {
+        try {
+            return userRepository.save(user);
+        }
+        finally {
+            invalidate(user.getEmail());
+        }
+    }
+
+    @Override
+    public boolean optimisticLockEnableUserAccount(final User user) {
+        try {
+            return userRepository.optimisticLockEnableUserAccount(user);
+        }
+        finally {
+            invalidate(user.getEmail());
+        }
+    }
+
+    @Override
+    public boolean optimisticLockUpdatePassword(final User user, final String newPassword) {
+        try {
+            return userRepository.optimisticLockUpdatePassword(user, newPassword);
+        }
+        finally {
+            invalidate(user.getEmail());
+        }
+    }
+
+    @Override
+    public OptionalLong findTokenVersionById(final String email) {
+        // cached by the UserTokenVersions
+        return userRepository.findTokenVersionById(email);
+    }
+
+    @Override
+    public OptionalLong incrementTokenVersion(final String email) {
+        try {
+            return userRepository.incrementTokenVersion(email);
+        }
+        finally {
+            invalidate(email);
+        }
+    }
+
+    @Override
+    public boolean optimisticLockUpdate(final User.SecureDto user) {
+        try {
+            return userRepository.optimisticLockUpdate(user);
+        }
+        finally {
+            invalidate(user.email());
+        }
+    }
+
+    @Override
+    public boolean delete(final String email) {
+        try {
+            return userRepository.delete(email);
+        }
+        finally {
+            invalidate(email);
+        }
+    }
+
+    private void invalidate(final String email) {
+        users.invalidate(email);
+        secureUsers.invalidate(email);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingUserRepository{}";
+    }
+}
@@ -0,0 +1,30 @@
+package twoauth.backend.security.repository;
+
+import org.springframework.lang.Nullable;
+import twoauth.backend.security.model.OutboxEmail;
+
+import java.util.Collection;
+import java.util.Date;
+
+public interface EmailOutboxRepository
+{
+    String TABLE = "email_outbox";
+
+    /**
+     * Creates the index of the due emails, read by every claim.
+     */
+    void ensureIndexes();
+
+    boolean enqueue(OutboxEmail email);
+
+    /**
+     * Atomically claims the next email whose attempt is due, postponing its next attempt
+     * to {@code leaseUntil}, so that no other dispatcher sends it in the meantime.
+     * @return the claimed email, or null if there is no email to send.
+     */
+    @Nullable
+    OutboxEmail claimNext(Date now, Date leaseUntil);
+
+    void deleteAll(Collection<String> ids);
+    void retryLater(String id, int attempts, Date nextAttempt);
+}
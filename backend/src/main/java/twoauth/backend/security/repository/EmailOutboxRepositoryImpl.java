@@ -0,0 +1,76 @@
+package twoauth.backend.security.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import twoauth.backend.security.model.OutboxEmail;
+
+import java.util.Collection;
+import java.util.Date;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+class EmailOutboxRepositoryImpl implements EmailOutboxRepository
+{
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(EmailOutboxRepository.TABLE)
+                .ensureIndex(new Index().on("nextAttempt", Sort.Direction.ASC));
+    }
+
+    @Override
+    public boolean enqueue(final OutboxEmail email)
+    {
+        try {
+            return null != mongoTemplate.insert(email, EmailOutboxRepository.TABLE);
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Email not queued: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public OutboxEmail claimNext(final Date now, final Date leaseUntil)
+    {
+        final var query = new Query(Criteria.where("nextAttempt").lte(now))
+                .with(Sort.by(Sort.Direction.ASC, "nextAttempt"));
+
+        final var options = new FindAndModifyOptions().returnNew(true).upsert(false);
+
+        final var update = new Update();
+        update.set("nextAttempt", leaseUntil);
+
+        return mongoTemplate.findAndModify(query, update, options, OutboxEmail.class, EmailOutboxRepository.TABLE);
+    }
+
+    @Override
+    public void deleteAll(final Collection<String> ids)
+    {
+        if (ids.isEmpty())
+            return;
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), EmailOutboxRepository.TABLE);
+    }
+
+    @Override
+    public void retryLater(final String id, final int attempts, final Date nextAttempt)
+    {
+        final var update = new Update();
+        update.set("attempts", attempts);
+        update.set("nextAttempt", nextAttempt);
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)), update, EmailOutboxRepository.TABLE);
+    }
+}
@@ -0,0 +1,36 @@
+package twoauth.backend.security.repository;
+
+import twoauth.backend.security.model.StoredJwtKey;
+
+import java.util.Date;
+import java.util.List;
+
+public interface JwtKeyRepository
+{
+    String TABLE = "jwt_keys";
+    String LEASE_TABLE = "jwt_key_leases";
+
+    /**
+     * Creates the TTL indexes that delete the expired keys and leases.
+     */
+    void ensureIndexes();
+
+    boolean insert(StoredJwtKey key);
+
+    /**
+     * @return the keys not expired at {@code now}, ordered by activation.
+     */
+    List<StoredJwtKey> findActive(Date now);
+
+    /**
+     * Replaces the secret of a key saved in clear with the sealed one.
+     * @return false if the key is not found or was already sealed.
+     */
+    boolean replaceUnsealed(StoredJwtKey sealedKey);
+
+    /**
+     * Takes the lease if it is free or expired, or renews it if the owner already holds it.
+     * @return false if another owner holds the lease.
+     */
+    boolean tryAcquireLease(String leaseId, String owner, Date now, Date expireAt);
+}
@@ -0,0 +1,85 @@
+package twoauth.backend.security.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import twoauth.backend.security.model.JwtKeyLease;
+import twoauth.backend.security.model.StoredJwtKey;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+class JwtKeyRepositoryImpl implements JwtKeyRepository
+{
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(JwtKeyRepository.TABLE)
+                .ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+        mongoTemplate.indexOps(JwtKeyRepository.LEASE_TABLE)
+                .ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+    }
+
+    @Override
+    public boolean insert(final StoredJwtKey key)
+    {
+        try {
+            return null != mongoTemplate.insert(key, JwtKeyRepository.TABLE);
+        }
+        catch (Exception e) {
+            log.warn("Key {} not saved: {}", key.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public List<StoredJwtKey> findActive(final Date now) {
+        return mongoTemplate.find(
+                new Query(Criteria.where("expireAt").gt(now)).with(Sort.by(Sort.Direction.ASC, "activeFrom")),
+                StoredJwtKey.class,
+                JwtKeyRepository.TABLE
+        );
+    }
+
+    @Override
+    public boolean replaceUnsealed(final StoredJwtKey sealedKey)
+    {
+        final var query = new Query(Criteria.where("_id").is(sealedKey.id()).and("isSealed").ne(true));
+        final var update = new Update()
+                .set("secret", sealedKey.secret())
+                .set("isSealed", true);
+        return mongoTemplate.updateFirst(query, update, StoredJwtKey.class, JwtKeyRepository.TABLE)
+                .getModifiedCount() > 0;
+    }
+
+    @Override
+    public boolean tryAcquireLease(final String leaseId, final String owner, final Date now, final Date expireAt)
+    {
+        final var query = new Query(Criteria.where("_id").is(leaseId)
+                .orOperator(Criteria.where("owner").is(owner), Criteria.where("expireAt").lte(now)));
+        final var update = new Update()
+                .set("owner", owner)
+                .set("expireAt", expireAt);
+        try {
+            return null != mongoTemplate.findAndModify(query, update,
+                    new FindAndModifyOptions().returnNew(true).upsert(true), JwtKeyLease.class, JwtKeyRepository.LEASE_TABLE);
+        }
+        catch (DuplicateKeyException e) {
+            // the lease exists and another owner holds it: the upsert tried to insert it again
+            return false;
+        }
+    }
+}
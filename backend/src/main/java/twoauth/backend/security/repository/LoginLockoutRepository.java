@@ -0,0 +1,23 @@
+package twoauth.backend.security.repository;
+
+import twoauth.backend.security.model.LoginLockout;
+
+import java.util.Date;
+import java.util.List;
+
+public interface LoginLockoutRepository
+{
+    String TABLE = "login_lockouts";
+
+    /**
+     * Creates the TTL index that deletes the ended lockouts.
+     */
+    void ensureIndexes();
+
+    boolean save(LoginLockout lockout);
+
+    /**
+     * @return the lockouts not ended at {@code now}.
+     */
+    List<LoginLockout> findActive(Date now);
+}
@@ -0,0 +1,51 @@
+package twoauth.backend.security.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import twoauth.backend.security.model.LoginLockout;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+class LoginLockoutRepositoryImpl implements LoginLockoutRepository
+{
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(LoginLockoutRepository.TABLE)
+                .ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+    }
+
+    @Override
+    public boolean save(final LoginLockout lockout)
+    {
+        try {
+            // a new lockout of the same email replaces the old one
+            mongoTemplate.save(lockout, LoginLockoutRepository.TABLE);
+            return true;
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Lockout not saved: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public List<LoginLockout> findActive(final Date now) {
+        return mongoTemplate.find(new Query(Criteria.where("expireAt").gt(now)), LoginLockout.class,
+                LoginLockoutRepository.TABLE);
+    }
+}
@@ -0,0 +1,20 @@
+package twoauth.backend.security.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Reactive MongoDB client and ReactiveMongoTemplate, created only in reactive mode, next to the blocking ones.
+ * <br/>
+ * Their auto-configurations are excluded from the application, and an excluded auto-configuration
+ * is also filtered out of {@code @ImportAutoConfiguration}: they are imported as plain configurations.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Import({ MongoReactiveAutoConfiguration.class, MongoReactiveDataAutoConfiguration.class })
+class ReactiveMongoConfiguration
+{
+}
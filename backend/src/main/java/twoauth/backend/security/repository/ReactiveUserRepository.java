@@ -0,0 +1,16 @@
+package twoauth.backend.security.repository;
+
+import reactor.core.publisher.Mono;
+import twoauth.backend.security.model.User;
+
+/**
+ * Non-blocking {@link UserRepository}, used in reactive mode.
+ */
+public interface ReactiveUserRepository
+{
+    String TABLE = UserRepository.TABLE;
+
+    Mono<User.SecureDto> findById(String email);
+    Mono<Boolean> optimisticLockUpdate(User.SecureDto user);
+    Mono<Boolean> delete(String email);
+}
@@ -0,0 +1,124 @@
+package twoauth.backend.security.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import twoauth.backend.exception.InvalidDbEntityException;
+import twoauth.backend.security.Validator;
+import twoauth.backend.security.model.User;
+
+import java.util.Date;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+/**
+ * Same queries of {@link UserRepositoryImpl}, on the reactive MongoDB driver.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveUserRepositoryImpl implements ReactiveUserRepository, ReactiveUserSecurityRepository
+{
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<User> findUserById(final String email)
+    {
+        return mongoTemplate.findById(email, User.class, ReactiveUserSecurityRepository.TABLE)
+                .map(user -> {
+                    String errorMessage;
+                    if ((errorMessage = Validator.validateUser(user)) != null)
+                        throw new InvalidDbEntityException(errorMessage);
+
+                    return user;
+                });
+    }
+
+    @Override
+    public Mono<User.SecureDto> findById(final String email)
+    {
+        return mongoTemplate.findById(email, User.SecureDto.class, ReactiveUserRepository.TABLE)
+                .map(user -> {
+                    String errorMessage;
+                    if ((errorMessage = Validator.validateUserSecureDto(user)) != null)
+                        throw new InvalidDbEntityException(errorMessage);
+
+                    return user;
+                });
+    }
+
+    @Override
+    public Mono<Boolean> optimisticLockEnableUserAccount(final User user)
+    {
+        final var query = new Query(Criteria.where("_id").is(user.getEmail())
+                .and("lastUpdate").is(user.getLastUpdate())
+                .and("isActive").is(false)
+                .and("activationToken").is(user.getActivationToken()));
+
+        final var options = new FindAndModifyOptions().returnNew(false).upsert(false);
+
+        final var update = new Update();
+        update.set("isActive", true);
+        update.set("activationToken", null);
+        update.set("lastUpdate", new Date());
+
+        return mongoTemplate.findAndModify(query, update, options, User.class, ReactiveUserSecurityRepository.TABLE)
+                .hasElement()
+                .onErrorResume(ReactiveUserRepositoryImpl::logAndGetFalse);
+    }
+
+    @Override
+    public Mono<Boolean> optimisticLockUpdatePassword(final User user, final String newPassword)
+    {
+        // the old hash is the lock; lastUpdate is left untouched because
+        // the same login may still need it to enable the user account
+        final var query = new Query(Criteria.where("_id").is(user.getEmail())
+                .and("password").is(user.getPassword()));
+
+        final var update = new Update();
+        update.set("password", newPassword);
+
+        return mongoTemplate.updateFirst(query, update, User.class, ReactiveUserSecurityRepository.TABLE)
+                .map(result -> result.getModifiedCount() == 1)
+                .onErrorResume(ReactiveUserRepositoryImpl::logAndGetFalse);
+    }
+
+    @Override
+    public Mono<Boolean> optimisticLockUpdate(final User.SecureDto user)
+    {
+        final var query = new Query(Criteria.where("_id").is(user.email())
+                .and("lastUpdate").is(user.lastUpdate()));
+
+        final var options = new FindAndModifyOptions().returnNew(false).upsert(false);
+
+        final var update = new Update();
+        update.set("firstName", user.firstName());
+        update.set("lastName", user.lastName());
+        update.set("lastUpdate", new Date());
+
+        return mongoTemplate.findAndModify(query, update, options, User.class, ReactiveUserRepository.TABLE)
+                .hasElement()
+                .onErrorResume(ReactiveUserRepositoryImpl::logAndGetFalse);
+    }
+
+    @Override
+    public Mono<Boolean> delete(final String email)
+    {
+        final var query = new Query(Criteria.where("_id").is(email));
+        return mongoTemplate.remove(query, User.class, ReactiveUserRepository.TABLE)
+                .map(dr -> dr.getDeletedCount() == 1);
+    }
+
+    private static Mono<Boolean> logAndGetFalse(final Throwable e) {
+        log.warn(SAMPLED, "User not updated: {}", e.getMessage());
+        return Mono.just(false);
+    }
+}
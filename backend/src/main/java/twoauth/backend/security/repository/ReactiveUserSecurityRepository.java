@@ -0,0 +1,16 @@
+package twoauth.backend.security.repository;
+
+import reactor.core.publisher.Mono;
+import twoauth.backend.security.model.User;
+
+/**
+ * Non-blocking {@link UserSecurityRepository}, used in reactive mode.
+ */
+public interface ReactiveUserSecurityRepository
+{
+    String TABLE = UserSecurityRepository.TABLE;
+
+    Mono<User> findUserById(String email);
+    Mono<Boolean> optimisticLockEnableUserAccount(User user);
+    Mono<Boolean> optimisticLockUpdatePassword(User user, String newPassword);
+}
@@ -0,0 +1,36 @@
+package twoauth.backend.security.repository;
+
+import org.springframework.lang.Nullable;
+import twoauth.backend.security.model.RefreshToken;
+
+import java.util.Date;
+
+public interface RefreshTokenRepository
+{
+    String TABLE = "refresh_tokens";
+
+    /**
+     * Creates the TTL index that deletes the expired tokens, and the index of the families.
+     */
+    void ensureIndexes();
+
+    boolean insert(RefreshToken token);
+
+    /**
+     * Sets the first use of the token and the salt of its successor, atomically:
+     * of two concurrent uses only one finds it unused.
+     * @return the token before the update, or null if it does not exist.
+     */
+    @Nullable
+    RefreshToken findAndMarkUsed(String id, Date now, String successorSalt);
+
+    /**
+     * Forgets the first use of the token, when its successor was not saved: it can be used again.
+     */
+    void markUnused(String id);
+
+    /**
+     * @return the number of deleted tokens.
+     */
+    long deleteFamily(String familyId);
+}
@@ -0,0 +1,74 @@
+package twoauth.backend.security.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import twoauth.backend.security.model.RefreshToken;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+class RefreshTokenRepositoryImpl implements RefreshTokenRepository
+{
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void ensureIndexes()
+    {
+        final var indexOperations = mongoTemplate.indexOps(RefreshTokenRepository.TABLE);
+        indexOperations.ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+        indexOperations.ensureIndex(new Index().on("familyId", Sort.Direction.ASC));
+    }
+
+    @Override
+    public boolean insert(final RefreshToken token)
+    {
+        try {
+            return null != mongoTemplate.insert(token, RefreshTokenRepository.TABLE);
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Refresh token of family {} not saved: {}", token.familyId(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Nullable
+    @Override
+    public RefreshToken findAndMarkUsed(final String id, final Date now, final String successorSalt)
+    {
+        final RefreshToken unused = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id).and("usedAt").is(null)),
+                new Update().set("usedAt", now).set("successorSalt", successorSalt),
+                new FindAndModifyOptions().returnNew(false), RefreshToken.class, RefreshTokenRepository.TABLE);
+        // already used, or unknown
+        return (unused != null)
+                ? unused
+                : mongoTemplate.findById(id, RefreshToken.class, RefreshTokenRepository.TABLE);
+    }
+
+    @Override
+    public void markUnused(final String id) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)),
+                new Update().unset("usedAt").unset("successorSalt"), RefreshToken.class, RefreshTokenRepository.TABLE);
+    }
+
+    @Override
+    public long deleteFamily(final String familyId)
+    {
+        return mongoTemplate.remove(new Query(Criteria.where("familyId").is(familyId)), RefreshTokenRepository.TABLE)
+                .getDeletedCount();
+    }
+}
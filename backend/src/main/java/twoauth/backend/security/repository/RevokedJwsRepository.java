@@ -0,0 +1,24 @@
+package twoauth.backend.security.repository;
+
+import twoauth.backend.security.model.RevokedJws;
+
+import java.util.Date;
+import java.util.List;
+
+public interface RevokedJwsRepository
+{
+    String TABLE = "revoked_jws";
+
+    /**
+     * Creates the TTL index that deletes the expired revocations, and the index of the revocation time.
+     */
+    void ensureIndexes();
+
+    boolean save(RevokedJws revokedJws);
+    boolean existsById(String id);
+
+    /**
+     * @return the identifiers of the JWS revoked since {@code since}, that are not expired at {@code now}.
+     */
+    List<String> findIdsRevokedSince(Date since, Date now);
+}
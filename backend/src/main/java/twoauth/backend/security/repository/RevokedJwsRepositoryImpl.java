@@ -0,0 +1,66 @@
+package twoauth.backend.security.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import twoauth.backend.security.model.RevokedJws;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+class RevokedJwsRepositoryImpl implements RevokedJwsRepository
+{
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void ensureIndexes()
+    {
+        final var indexOperations = mongoTemplate.indexOps(RevokedJwsRepository.TABLE);
+        indexOperations.ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+        indexOperations.ensureIndex(new Index().on("revokedAt", Sort.Direction.ASC));
+    }
+
+    @Override
+    public boolean save(final RevokedJws revokedJws)
+    {
+        try {
+            // saved again if the same JWS is revoked twice
+            mongoTemplate.save(revokedJws, RevokedJwsRepository.TABLE);
+            return true;
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Revocation of JWS {} not saved: {}", revokedJws.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean existsById(final String id)
+    {
+        return mongoTemplate.exists(new Query(Criteria.where("_id").is(id)), RevokedJwsRepository.TABLE);
+    }
+
+    @Override
+    public List<String> findIdsRevokedSince(final Date since, final Date now)
+    {
+        final var query = new Query(Criteria.where("revokedAt").gte(since)
+                .and("expireAt").gt(now));
+        query.fields().include("_id");
+
+        return mongoTemplate.find(query, RevokedJws.class, RevokedJwsRepository.TABLE)
+                .stream()
+                .map(RevokedJws::id)
+                .toList();
+    }
+}
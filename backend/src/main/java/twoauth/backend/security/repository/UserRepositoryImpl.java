@@ -4,7 +4,9 @@ import twoauth.backend.exception.InvalidDbEntityException;
 import twoauth.backend.security.Validator;
 import twoauth.backend.security.model.User;
 import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -15,11 +17,17 @@ import org.springframework.stereotype.Repository;
 
 import java.util.Date;
 import java.util.Optional;
+import java.util.OptionalLong;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
 
 @Repository
 @RequiredArgsConstructor
+@Slf4j
 public class UserRepositoryImpl implements UserRepository, UserSecurityRepository
 {
+    private static final String TOKEN_VERSION = "tokenVersion";
+
     private final MongoTemplate mongoTemplate;
 
     @Override
@@ -57,7 +65,7 @@ public class UserRepositoryImpl implements UserRepository, UserSecurityRepositor
             return null != mongoTemplate.insert(user, UserSecurityRepository.TABLE);
         }
         catch (Exception e) {
-            System.err.println(e.getMessage());
+            log.warn(SAMPLED, "User not saved: {}", e.getMessage());
             return false;
         }
     }
@@ -81,11 +89,61 @@ public class UserRepositoryImpl implements UserRepository, UserSecurityRepositor
             return null != mongoTemplate.findAndModify(query, update, options, User.class, UserSecurityRepository.TABLE);
         }
         catch (Exception e) {
-            System.err.println(e.getMessage());
+            log.warn(SAMPLED, "User account not enabled: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean optimisticLockUpdatePassword(final User user, final String newPassword)
+    {
+        // the old hash is the lock; lastUpdate is left untouched because
+        // the same login may still need it to enable the user account
+        final var query = new Query(Criteria.where("_id").is(user.getEmail())
+                .and("password").is(user.getPassword()));
+
+        final var update = new Update();
+        update.set("password", newPassword);
+
+        try {
+            return mongoTemplate.updateFirst(query, update, User.class, UserSecurityRepository.TABLE)
+                    .getModifiedCount() == 1;
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Password not updated: {}", e.getMessage());
             return false;
         }
     }
 
+    @Override
+    public OptionalLong findTokenVersionById(final String email)
+    {
+        final var query = new Query(Criteria.where("_id").is(email));
+        query.fields().include(TOKEN_VERSION);
+
+        final Document user = mongoTemplate.findOne(query, Document.class, UserSecurityRepository.TABLE);
+        return (user == null) ? OptionalLong.empty() : OptionalLong.of(getTokenVersion(user));
+    }
+
+    @Override
+    public OptionalLong incrementTokenVersion(final String email)
+    {
+        final var query = new Query(Criteria.where("_id").is(email));
+        query.fields().include(TOKEN_VERSION);
+
+        final var options = new FindAndModifyOptions().returnNew(true).upsert(false);
+
+        final var update = new Update();
+        update.inc(TOKEN_VERSION, 1L);
+
+        final Document user = mongoTemplate.findAndModify(query, update, options, Document.class, UserSecurityRepository.TABLE);
+        return (user == null) ? OptionalLong.empty() : OptionalLong.of(getTokenVersion(user));
+    }
+
+    private static long getTokenVersion(final Document user) {
+        return (user.get(TOKEN_VERSION) instanceof Number tokenVersion) ? tokenVersion.longValue() : 0L;
+    }
+
     @Override
     public boolean optimisticLockUpdate(final User.SecureDto user)
     {
@@ -103,7 +161,7 @@ public class UserRepositoryImpl implements UserRepository, UserSecurityRepositor
             return null != mongoTemplate.findAndModify(query, update, options, User.class, UserRepository.TABLE);
         }
         catch (Exception e) {
-            System.err.println(e.getMessage());
+            log.warn(SAMPLED, "User not updated: {}", e.getMessage());
             return false;
         }
     }
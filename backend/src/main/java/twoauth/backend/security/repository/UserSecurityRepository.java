@@ -4,6 +4,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import twoauth.backend.security.model.User;
 
 import java.util.Optional;
+import java.util.OptionalLong;
 
 public interface UserSecurityRepository
 {
@@ -12,4 +13,16 @@ public interface UserSecurityRepository
     Optional<UserDetails> findUserDetailsById(String email);
     boolean save(User user);
     boolean optimisticLockEnableUserAccount(User user);
+    boolean optimisticLockUpdatePassword(User user, String newPassword);
+
+    /**
+     * @return the version written in the JWS of the user (0 if never incremented), or empty if the user does not exist.
+     */
+    OptionalLong findTokenVersionById(String email);
+
+    /**
+     * Invalidates every JWS issued to the user.
+     * @return the incremented version, or empty if the user does not exist.
+     */
+    OptionalLong incrementTokenVersion(String email);
 }
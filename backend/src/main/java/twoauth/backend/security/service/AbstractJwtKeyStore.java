@@ -0,0 +1,122 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.LocatorAdapter;
+import twoauth.backend.security.model.StoredJwtKey;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base of the key stores backed by a {@link JwtKeyRing}.
+ * The parser is built only once: it resolves the verification key
+ * from the "kid" header against the last published ring.
+ */
+abstract class AbstractJwtKeyStore implements JwtKeyStore
+{
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final JwtSignatureAlgorithm algorithm;
+    private final AtomicReference<JwtKeyRing> ring;
+    private final JwtParser parser;
+
+    protected AbstractJwtKeyStore(final JwtSignatureAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        this.ring = new AtomicReference<>(null);
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        return ring.getAcquire().verificationKey(header.getKeyId(), System.currentTimeMillis());
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public JwtSigningKey getSigningKey() {
+        return ring.getAcquire().current();
+    }
+
+    @Override
+    public JwtParser getParser() {
+        return parser;
+    }
+
+    @Override
+    public Map<String, PublicKey> getPublicKeys()
+    {
+        final var publicKeys = new HashMap<String, PublicKey>();
+        for (final var entry : ring.getAcquire().verificationKeys(System.currentTimeMillis()).entrySet()) {
+            if (entry.getValue() instanceof PublicKey publicKey)
+                publicKeys.put(entry.getKey(), publicKey);
+        }
+        return publicKeys;
+    }
+
+    protected JwtKeyRing getRing() {
+        return ring.getAcquire();
+    }
+
+    protected void publish(final JwtKeyRing newRing) {
+        ring.setRelease(newRing);
+    }
+
+    /**
+     * @param keys not empty, ordered by activation: the current key is the last one already active,
+     * the others are accepted for verification until they expire.
+     */
+    protected static JwtKeyRing toRing(final List<StoredJwtKey> keys, final long nowInMillis)
+    {
+        StoredJwtKey current = keys.get(0);
+        for (final StoredJwtKey key : keys) {
+            if (key.activeFrom().getTime() <= nowInMillis)
+                current = key;
+        }
+
+        JwtKeyRing ring = JwtKeyRing.of(toSigningKey(current));
+        for (final StoredJwtKey key : keys) {
+            if (key != current)
+                ring = ring.with(toSigningKey(key), key.expireAt().getTime());
+        }
+        return ring;
+    }
+
+    protected static JwtSigningKey toSigningKey(final StoredJwtKey key)
+    {
+        final JwtSignatureAlgorithm keyAlgorithm = (key.algorithm() == null)
+                ? JwtSignatureAlgorithm.HS512
+                : JwtSignatureAlgorithm.valueOf(key.algorithm());
+        try {
+            return keyAlgorithm.decode(key.id(), key.secret(), key.publicKey());
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Key " + key.id() + " not decoded", e);
+        }
+    }
+
+    protected static StoredJwtKey toStoredKey(final JwtSigningKey key, final Date activeFrom, final Date expireAt) {
+        return new StoredJwtKey(key.id(), key.algorithm().name(), key.key().getEncoded(),
+                key.algorithm().isAsymmetric() ? key.verificationKey().getEncoded() : null,
+                activeFrom, expireAt, false);
+    }
+
+    /**
+     * @return a new key of the configured algorithm.
+     */
+    protected JwtSigningKey generateNewKey() {
+        final byte[] id = new byte[9];
+        RANDOM.nextBytes(id);
+        return algorithm.newKey(Base64.getUrlEncoder().withoutPadding().encodeToString(id));
+    }
+}
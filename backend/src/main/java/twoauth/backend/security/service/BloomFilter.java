@@ -0,0 +1,108 @@
+package twoauth.backend.security.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of strings: {@link #mightContain} never gives a false negative, and gives a false positive
+ * with the configured probability, until more than the expected insertions are put.
+ * <br/>
+ * The k bit indexes are derived from one 64 bits hash with double hashing (Kirsch and Mitzenmacher).
+ */
+final class BloomFilter
+{
+    private static final double LN_2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long numberOfBits;
+    private final int numberOfHashes;
+    private final int expectedInsertions;
+    private final AtomicInteger insertions = new AtomicInteger();
+
+    private BloomFilter(final int expectedInsertions, final long numberOfBits, final int numberOfHashes) {
+        this.bits = new AtomicLongArray((int) ((numberOfBits + 63) >>> 6));
+        this.numberOfBits = numberOfBits;
+        this.numberOfHashes = numberOfHashes;
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * 10000 expected insertions with 1% of false positives take 12 KB.
+     */
+    static BloomFilter of(int expectedInsertions, double falsePositiveProbability)
+    {
+        if (expectedInsertions < 1)
+            expectedInsertions = 1;
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1)
+            falsePositiveProbability = 0.01;
+
+        final long numberOfBits = Math.max(64L,
+                (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (LN_2 * LN_2)));
+        final int numberOfHashes = Math.max(1, (int) Math.round((double) numberOfBits / expectedInsertions * LN_2));
+        return new BloomFilter(expectedInsertions, numberOfBits, numberOfHashes);
+    }
+
+    void put(final String value)
+    {
+        final long hash1 = hash(value);
+        final long hash2 = mix(hash1) | 1L;
+        for (int i = 0; i < numberOfHashes; ++i) {
+            final long index = Math.floorMod(hash1 + i * hash2, numberOfBits);
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+        insertions.incrementAndGet();
+    }
+
+    boolean mightContain(final String value)
+    {
+        final long hash1 = hash(value);
+        final long hash2 = mix(hash1) | 1L;
+        for (int i = 0; i < numberOfHashes; ++i) {
+            final long index = Math.floorMod(hash1 + i * hash2, numberOfBits);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if more values than the expected insertions were put, and the false positives grow.
+     */
+    boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    long getSizeInBytes() {
+        return (long) bits.length() * Long.BYTES;
+    }
+
+    /**
+     * FNV-1a over the chars, finalized by {@link #mix} so that the low and high bits are both uniform.
+     */
+    private static long hash(final String value)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); ++i) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of SplitMix64.
+     */
+    private static long mix(long hash)
+    {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
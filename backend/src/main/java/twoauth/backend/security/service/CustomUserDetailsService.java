@@ -1,28 +1,48 @@
 package twoauth.backend.security.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import twoauth.backend.security.model.User;
 import twoauth.backend.security.repository.UserSecurityRepository;
 
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
 
 @Service
 @RequiredArgsConstructor
-class CustomUserDetailsService implements UserDetailsService
+@Slf4j
+class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService
 {
     private final UserSecurityRepository userRepository;
+    private final LoginMetrics loginMetrics;
 
     @Override
     public UserDetails loadUserByUsername(final String email) throws UsernameNotFoundException
     {
-        System.out.println("UserDetailsService called");
-
-        return userRepository.findUserDetailsById(email)
+        return loginMetrics.getUserLookupTimer()
+                .record(() -> userRepository.findUserDetailsById(email))
                 .orElseThrow(() -> {
-                    System.err.printf("User %s not found.%n", email);
+                    log.debug("User {} not found.", email);
                     return new UsernameNotFoundException("User not found.");
                 });
     }
+
+    /**
+     * Called after a successful login, when the password hash was encoded with
+     * other settings than the current ones. If the update fails the old hash is kept,
+     * and it will be upgraded on a next login.
+     */
+    @Override
+    public UserDetails updatePassword(final UserDetails user, final String newPassword)
+    {
+        if (! (user instanceof User dbUser) || ! userRepository.optimisticLockUpdatePassword(dbUser, newPassword))
+            log.warn(SAMPLED, "Password hash of User {} not upgraded.", user.getUsername());
+
+        return user;
+    }
 }
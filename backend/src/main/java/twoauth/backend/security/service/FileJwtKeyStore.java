@@ -0,0 +1,160 @@
+package twoauth.backend.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import twoauth.backend.security.model.StoredJwtKey;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Signing keys kept in memory and sealed in a local file, loaded again when the Backend restarts:
+ * the JWS signed before a restart or a deploy are still verified. Selected with {@code 2Auth.jwt.key-store=FILE}.
+ * <br/>
+ * The file is sealed with a master key derived from the key entry of an SSL bundle, so it is useless without the key store.
+ * The keys are rotated as by {@link InMemoryJwtKeyStore}, and the rotation is not delayed by a restart.
+ * If the file cannot be read, new keys are generated and the file is written again.
+ */
+@Service
+@ConditionalOnProperty(prefix = "2Auth.jwt", name = "key-store", havingValue = "FILE")
+@Slf4j
+class FileJwtKeyStore extends AbstractJwtKeyStore
+{
+    @JsonIgnore
+    private final SealedJwtKeyFile keyFile;
+    @JsonIgnore
+    private final ApplicationEventPublisher eventPublisher;
+    private final long keyTimeValidityInMillis;
+    private final long gracePeriodInMillis;
+    // written only by the constructor and by the scheduled rotation
+    private List<StoredJwtKey> keys;
+
+    public FileJwtKeyStore(
+            @Value("${2Auth.jwt.key-time-validity-in-millis:86400000}") long keyTVM,
+            @Value("${2Auth.jwt.time-validity-in-millis:28800000}") long jwtTVM,
+            @Value("${2Auth.jwt.signature-algorithm:HS512}") String signatureAlgorithm,
+            @Value("${2Auth.jwt.file-key-store.path:jwt-keys.sealed}") String path,
+            @Value("${2Auth.jwt.file-key-store.ssl-bundle:jwt-keys}") String sslBundle,
+            final SslBundles sslBundles,
+            final TaskScheduler taskScheduler,
+            final ApplicationEventPublisher eventPublisher
+    ) {
+        super(JwtSignatureAlgorithm.valueOf(signatureAlgorithm));
+        this.eventPublisher = eventPublisher;
+        this.keyTimeValidityInMillis = (keyTVM < 1) ? 86_400_000L : keyTVM;
+        // a retired key must verify every JWS it signed, until the longest one expires
+        this.gracePeriodInMillis = (jwtTVM < 1) ? 28_800_000L : jwtTVM;
+        try {
+            this.keyFile = new SealedJwtKeyFile(Path.of(path),
+                    SealedJwtKeyFile.deriveMasterKey(sslBundles.getBundle(sslBundle)));
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Master key not derived from the SSL bundle " + sslBundle, e);
+        }
+
+        final long nowInMillis = System.currentTimeMillis();
+        this.keys = load(nowInMillis);
+        if (keys.isEmpty()) {
+            keys.add(newKey(nowInMillis));
+            save();
+        }
+        publish(toRing(keys));
+        log.info("Current Key: {}", getSigningKey().id());
+
+        // the current key lasts the key time validity since its activation, even across a restart
+        final long nextRotationInMillis = Math.max(nowInMillis,
+                keys.get(keys.size() - 1).activeFrom().getTime() + keyTimeValidityInMillis);
+        taskScheduler.scheduleAtFixedRate(
+                this::rotate,
+                Instant.ofEpochMilli(nextRotationInMillis),
+                Duration.ofMillis(keyTimeValidityInMillis)
+        );
+    }
+
+    void rotate()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final StoredJwtKey current = keys.get(keys.size() - 1);
+        final List<StoredJwtKey> newKeys = new ArrayList<>(keys.size() + 1);
+        for (final StoredJwtKey key : keys) {
+            if (key == current)
+                newKeys.add(new StoredJwtKey(key.id(), key.algorithm(), key.secret(), key.publicKey(),
+                        key.activeFrom(), new Date(nowInMillis + gracePeriodInMillis), false));
+            else if (key.expireAt().getTime() > nowInMillis)
+                newKeys.add(key);
+        }
+        final StoredJwtKey newKey = newKey(nowInMillis);
+        newKeys.add(newKey);
+
+        keys = newKeys;
+        publish(toRing(newKeys));
+        log.info("New Key generated: {}", newKey.id());
+        // the new key is used even if not saved: only a restart before the next rotation invalidates its JWS
+        save();
+        eventPublisher.publishEvent(new JwtKeyRotationEvent(newKey.id()));
+    }
+
+    /**
+     * @return the keys not expired, ordered by activation, or an empty list.
+     */
+    private List<StoredJwtKey> load(final long nowInMillis)
+    {
+        final List<StoredJwtKey> loadedKeys = new ArrayList<>();
+        try {
+            keyFile.read().ifPresent(storedKeys -> {
+                for (final StoredJwtKey key : storedKeys) {
+                    // a key that cannot be decoded fails the whole file
+                    toSigningKey(key);
+                    if (key.expireAt().getTime() > nowInMillis)
+                        loadedKeys.add(key);
+                }
+            });
+        }
+        catch (Exception e) {
+            log.warn("Keys not loaded from {}, new keys are generated: {}", keyFile.getPath(), e.toString());
+            return new ArrayList<>();
+        }
+        loadedKeys.sort(Comparator.comparing(StoredJwtKey::activeFrom));
+        return loadedKeys;
+    }
+
+    /**
+     * The last key is the current one, even if activated in the future because the clock was moved back.
+     */
+    private static JwtKeyRing toRing(final List<StoredJwtKey> keys) {
+        return toRing(keys, keys.get(keys.size() - 1).activeFrom().getTime());
+    }
+
+    private void save()
+    {
+        try {
+            keyFile.write(keys);
+        }
+        catch (Exception e) {
+            log.warn("Keys not saved to {}: {}", keyFile.getPath(), e.toString());
+        }
+    }
+
+    private StoredJwtKey newKey(final long nowInMillis)
+    {
+        final JwtSigningKey newKey = generateNewKey();
+        return toStoredKey(newKey, new Date(nowInMillis),
+                new Date(nowInMillis + keyTimeValidityInMillis + gracePeriodInMillis));
+    }
+
+    @Override
+    public String toString() {
+        return "FileJwtKeyStore{path='" + keyFile.getPath() + "'}";
+    }
+}
@@ -1,47 +1,63 @@
 package twoauth.backend.security.service;
 
+import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import io.jsonwebtoken.Jwts;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
 import java.time.Duration;
-import java.util.concurrent.atomic.AtomicReference;
+import java.time.Instant;
 
+/**
+ * Signing keys generated and kept in memory: a JWS is verified only by the instance that signed it,
+ * and not anymore after a restart. Selected with {@code 2Auth.jwt.key-store=IN_MEMORY} (default).
+ */
 @Service
-class InMemoryJwtKeyStore implements JwtKeyStore
+@ConditionalOnProperty(prefix = "2Auth.jwt", name = "key-store", havingValue = "IN_MEMORY", matchIfMissing = true)
+@Slf4j
+class InMemoryJwtKeyStore extends AbstractJwtKeyStore
 {
-    @JsonIgnore
-    private final AtomicReference<SecretKey> key;
     @JsonIgnore
     private final TaskScheduler taskScheduler;
+    @JsonIgnore
+    private final ApplicationEventPublisher eventPublisher;
+    private final long gracePeriodInMillis;
 
     public InMemoryJwtKeyStore(
             @Value("${2Auth.jwt.key-time-validity-in-millis:86400000}") long keyTVM,
-            TaskScheduler taskScheduler
+            @Value("${2Auth.jwt.time-validity-in-millis:28800000}") long jwtTVM,
+            @Value("${2Auth.jwt.signature-algorithm:HS512}") String signatureAlgorithm,
+            TaskScheduler taskScheduler,
+            ApplicationEventPublisher eventPublisher
     ) {
+        super(JwtSignatureAlgorithm.valueOf(signatureAlgorithm));
         final long keyTimeValidityInMillis = (keyTVM < 1) ? 86_400_000L : keyTVM;
-        this.key = new AtomicReference<>(null);
+        final Duration keyTimeValidity = Duration.ofMillis(keyTimeValidityInMillis);
+        // a retired key must verify every JWS it signed, until the longest one expires
+        this.gracePeriodInMillis = (jwtTVM < 1) ? 28_800_000L : jwtTVM;
+        publish(JwtKeyRing.of(generateNewKey()));
+        log.info("New Key generated: {}", getSigningKey().id());
+
+        this.eventPublisher = eventPublisher;
         this.taskScheduler = taskScheduler;
         this.taskScheduler.scheduleAtFixedRate(
                 /* there is no need to use a mutex or a CAS operation because
-                   this is the only write operation on the key and is executed
+                   this is the only write operation on the ring and is executed
                    only one time, by only one thread, at a fixed rate. */
-                () -> this.key.setRelease(generateNewKey()),
-                Duration.ofMillis(keyTimeValidityInMillis)
+                this::rotate,
+                Instant.now().plus(keyTimeValidity),
+                keyTimeValidity
         );
     }
 
-    @Override
-    public SecretKey getKey() {
-        return key.getAcquire();
-    }
-
-    private SecretKey generateNewKey() {
-        System.out.println("New Key generated.");
-        return Jwts.SIG.HS512.key().build();
+    private void rotate() {
+        final JwtSigningKey newKey = generateNewKey();
+        publish(getRing().rotate(newKey, System.currentTimeMillis(), gracePeriodInMillis));
+        log.info("New Key generated: {}", newKey.id());
+        eventPublisher.publishEvent(new JwtKeyRotationEvent(newKey.id()));
     }
 
     @Override
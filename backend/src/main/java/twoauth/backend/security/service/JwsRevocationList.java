@@ -0,0 +1,206 @@
+package twoauth.backend.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import twoauth.backend.security.model.RevokedJws;
+import twoauth.backend.security.repository.RevokedJwsRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+/**
+ * The JWS revoked before their expiration, identified by their "jti" claim.
+ * <br/>
+ * MongoDB is the source of truth, mirrored in a {@link BloomFilter}: a JWS that is not revoked is almost always
+ * answered by the filter alone, and only a positive hit reads MongoDB. The exact answers are remembered until the JWS expires.
+ * <br/>
+ * The revocations of the other instances are read every poll interval, and the filter is rebuilt
+ * every rebuild interval (to forget the expired revocations) or when it holds more than the expected revocations.
+ */
+@Component
+@Slf4j
+public class JwsRevocationList
+{
+    // overlap of two reads of the new revocations, for the clock skew between the instances
+    private static final long CLOCK_SKEW_IN_MILLIS = 60_000L;
+
+    private final RevokedJwsRepository revokedJwsRepository;
+    private final int expectedRevocations;
+    private final double falsePositiveProbability;
+    private final long rebuildIntervalInMillis;
+    private final Cache<String, Boolean> exactAnswers;
+    private final Counter falsePositiveCounter;
+    private final Counter revokedCounter;
+    private volatile BloomFilter filter;
+    private volatile boolean isLoaded = false;
+    // read and written only by the scheduled refresh
+    private long lastReadInMillis;
+    private long lastRebuildInMillis;
+
+    public JwsRevocationList(
+            @Value("${2Auth.jwt.revocation.expected-revocations:10000}") int expectedRevocations,
+            @Value("${2Auth.jwt.revocation.false-positive-probability:0.01}") double falsePositiveProbability,
+            @Value("${2Auth.jwt.revocation.poll-interval-in-millis:5000}") long pollInterval,
+            @Value("${2Auth.jwt.revocation.rebuild-interval-in-millis:3600000}") long rebuildInterval,
+            @Value("${2Auth.jwt.time-validity-in-millis:28800000}") long jwtTVM,
+            final RevokedJwsRepository revokedJwsRepository,
+            final TaskScheduler taskScheduler,
+            final MeterRegistry meterRegistry
+    ) {
+        this.revokedJwsRepository = revokedJwsRepository;
+        this.expectedRevocations = (expectedRevocations < 1) ? 10_000 : expectedRevocations;
+        this.falsePositiveProbability = (falsePositiveProbability <= 0 || falsePositiveProbability >= 1)
+                ? 0.01 : falsePositiveProbability;
+        this.rebuildIntervalInMillis = (rebuildInterval < 1) ? 3_600_000L : rebuildInterval;
+        this.filter = BloomFilter.of(this.expectedRevocations, this.falsePositiveProbability);
+        this.exactAnswers = Caffeine.newBuilder()
+                .maximumSize(this.expectedRevocations)
+                .expireAfterWrite(Duration.ofMillis((jwtTVM < 1) ? 28_800_000L : jwtTVM))
+                .build();
+        this.falsePositiveCounter = Counter.builder("twoauth.jws.revocation.checks")
+                .description("Positive hits of the revocation filter, checked on MongoDB")
+                .tag("result", "false_positive")
+                .register(meterRegistry);
+        this.revokedCounter = Counter.builder("twoauth.jws.revocation.checks")
+                .description("Positive hits of the revocation filter, checked on MongoDB")
+                .tag("result", "revoked")
+                .register(meterRegistry);
+        Gauge.builder("twoauth.jws.revocation.filter.size", this, JwsRevocationList::getFilterSizeInBytes)
+                .description("Memory taken by the revocation filter")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+
+        // the first refresh loads the filter, meanwhile every JWS is checked on MongoDB
+        taskScheduler.scheduleWithFixedDelay(
+                this::refresh,
+                Instant.now(),
+                Duration.ofMillis((pollInterval < 1) ? 5000L : pollInterval)
+        );
+    }
+
+    /**
+     * Never blocks.
+     * @return false if the JWS is certainly not revoked, true if {@link #isRevoked} must be called.
+     */
+    public boolean mightBeRevoked(@Nullable final String jti)
+    {
+        if (jti == null || (isLoaded && !filter.mightContain(jti)))
+            return false;
+        return !Boolean.FALSE.equals(exactAnswers.getIfPresent(jti));
+    }
+
+    /**
+     * Reads MongoDB on a positive hit of the filter that was never checked.
+     * If MongoDB cannot be read, the JWS is considered revoked.
+     */
+    public boolean isRevoked(@Nullable final String jti)
+    {
+        if (! mightBeRevoked(jti))
+            return false;
+
+        Boolean isRevoked;
+        if ((isRevoked = exactAnswers.getIfPresent(jti)) != null)
+            return isRevoked;
+
+        try {
+            isRevoked = revokedJwsRepository.existsById(jti);
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Revocation of JWS {} not read: {}", jti, e.getMessage());
+            return true;
+        }
+        exactAnswers.put(jti, isRevoked);
+        (isRevoked ? revokedCounter : falsePositiveCounter).increment();
+        return isRevoked;
+    }
+
+    /**
+     * @param expirationInMillis the revocation is kept until the JWS expires.
+     * @return false if the revocation was not saved.
+     */
+    public boolean revoke(final String jti, final long expirationInMillis)
+    {
+        if (! revokedJwsRepository.save(RevokedJws.of(jti, expirationInMillis)))
+            return false;
+
+        // the exact answer first: a rebuild swapping the filter now adds it to the new filter
+        exactAnswers.put(jti, true);
+        add(filter, jti);
+        return true;
+    }
+
+    long getFilterSizeInBytes() {
+        return filter.getSizeInBytes();
+    }
+
+    void refresh()
+    {
+        try {
+            final long nowInMillis = System.currentTimeMillis();
+            if (!isLoaded || filter.isSaturated() || nowInMillis - lastRebuildInMillis >= rebuildIntervalInMillis) {
+                rebuild(nowInMillis);
+                return;
+            }
+
+            final BloomFilter currentFilter = filter;
+            for (final String jti : revokedJwsRepository.findIdsRevokedSince(
+                    new Date(lastReadInMillis - CLOCK_SKEW_IN_MILLIS), new Date(nowInMillis)))
+                addRevoked(currentFilter, jti);
+            lastReadInMillis = nowInMillis;
+        }
+        catch (Exception e) {
+            // never let an exception cancel the scheduled task
+            log.warn("Revocations not refreshed: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild(final long nowInMillis)
+    {
+        if (! isLoaded)
+            revokedJwsRepository.ensureIndexes();
+
+        final List<String> revoked = revokedJwsRepository.findIdsRevokedSince(new Date(0), new Date(nowInMillis));
+        final BloomFilter newFilter = BloomFilter.of(
+                Math.max(expectedRevocations, 2 * revoked.size()), falsePositiveProbability);
+        for (final String jti : revoked)
+            addRevoked(newFilter, jti);
+
+        filter = newFilter;
+        // the revocations of this instance saved after MongoDB was read were added to the old filter
+        exactAnswers.asMap().forEach((jti, isRevoked) -> {
+            if (isRevoked)
+                add(newFilter, jti);
+        });
+        isLoaded = true;
+        lastReadInMillis = lastRebuildInMillis = nowInMillis;
+    }
+
+    private void addRevoked(final BloomFilter bloomFilter, final String jti)
+    {
+        add(bloomFilter, jti);
+        // a false positive checked before the revocation
+        if (Boolean.FALSE.equals(exactAnswers.getIfPresent(jti)))
+            exactAnswers.put(jti, true);
+    }
+
+    /**
+     * The same revocation is read more than once: it is counted once, to not saturate the filter.
+     */
+    private static void add(final BloomFilter bloomFilter, final String jti) {
+        if (! bloomFilter.mightContain(jti))
+            bloomFilter.put(jti);
+    }
+}
@@ -0,0 +1,95 @@
+package twoauth.backend.security.service;
+
+import org.springframework.lang.Nullable;
+
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the signing keys: the current key, used to sign new JWS,
+ * and the retired keys, still accepted for verification until their grace period ends.
+ */
+final class JwtKeyRing
+{
+    private record Entry(Key key, long notAfterInMillis) {}
+
+    private final JwtSigningKey current;
+    private final Map<String, Entry> keys;
+
+    private JwtKeyRing(final JwtSigningKey current, final Map<String, Entry> keys) {
+        this.current = current;
+        this.keys = keys;
+    }
+
+    static JwtKeyRing of(final JwtSigningKey current) {
+        return new JwtKeyRing(current, Map.of(current.id(), new Entry(current.verificationKey(), Long.MAX_VALUE)));
+    }
+
+    /**
+     * @param next the new current key.
+     * @param nowInMillis rotation time.
+     * @param gracePeriodInMillis how long the retired current key is still accepted for verification.
+     * @return a new ring with the retired keys whose grace period is over removed.
+     */
+    JwtKeyRing rotate(final JwtSigningKey next, final long nowInMillis, final long gracePeriodInMillis)
+    {
+        final var nextKeys = new HashMap<String, Entry>(keys.size() + 1);
+        for (var entry : keys.entrySet()) {
+            if (entry.getValue().notAfterInMillis() > nowInMillis)
+                nextKeys.put(entry.getKey(), entry.getValue());
+        }
+        nextKeys.put(current.id(), new Entry(current.verificationKey(), nowInMillis + gracePeriodInMillis));
+        nextKeys.put(next.id(), new Entry(next.verificationKey(), Long.MAX_VALUE));
+
+        return new JwtKeyRing(next, Map.copyOf(nextKeys));
+    }
+
+    /**
+     * @return a new ring that also accepts {@code key} for verification, until {@code notAfterInMillis}.
+     */
+    JwtKeyRing with(final JwtSigningKey key, final long notAfterInMillis)
+    {
+        final var nextKeys = new HashMap<>(keys);
+        nextKeys.putIfAbsent(key.id(), new Entry(key.verificationKey(), notAfterInMillis));
+        return new JwtKeyRing(current, Map.copyOf(nextKeys));
+    }
+
+    JwtSigningKey current() {
+        return current;
+    }
+
+    /**
+     * @return the verification key with the given identifier, or null if it is unknown
+     * or its grace period is over.
+     */
+    @Nullable
+    Key verificationKey(@Nullable final String keyId, final long nowInMillis)
+    {
+        if (keyId == null)
+            return null;
+
+        final Entry entry = keys.get(keyId);
+        if (entry == null || entry.notAfterInMillis() <= nowInMillis)
+            return null;
+
+        return entry.key();
+    }
+
+    /**
+     * @return the verification keys whose grace period is not over, by identifier.
+     */
+    Map<String, Key> verificationKeys(final long nowInMillis)
+    {
+        final var verificationKeys = new HashMap<String, Key>(keys.size());
+        for (var entry : keys.entrySet()) {
+            if (entry.getValue().notAfterInMillis() > nowInMillis)
+                verificationKeys.put(entry.getKey(), entry.getValue().key());
+        }
+        return verificationKeys;
+    }
+
+    int size() {
+        return keys.size();
+    }
+}
@@ -0,0 +1,6 @@
+package twoauth.backend.security.service;
+
+/**
+ * Published by a {@link JwtKeyStore} every time a new signing key becomes the current one.
+ */
+public record JwtKeyRotationEvent(String keyId) {}
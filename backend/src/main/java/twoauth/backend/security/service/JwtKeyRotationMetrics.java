@@ -0,0 +1,26 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the rotations of the JWT signing key, whatever the key store: {@code twoauth.jwt.key.rotations}.
+ */
+@Component
+class JwtKeyRotationMetrics
+{
+    private final Counter rotationCounter;
+
+    JwtKeyRotationMetrics(final MeterRegistry meterRegistry) {
+        this.rotationCounter = Counter.builder("twoauth.jwt.key.rotations")
+                .description("Rotations of the key signing the JWTs")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    void onKeyRotation(final JwtKeyRotationEvent event) {
+        rotationCounter.increment();
+    }
+}
@@ -0,0 +1,91 @@
+package twoauth.backend.security.service;
+
+import org.springframework.boot.ssl.SslBundle;
+import twoauth.backend.security.model.StoredJwtKey;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Seals the secret of the signing keys saved in MongoDB with AES-GCM, with a master key derived as by
+ * {@link SealedJwtKeyFile} from the key entry of an SSL bundle: reading MongoDB is not enough to sign a JWS.
+ * <br/>
+ * Sealed secret: IV (12 bytes), then the ciphertext and the tag. Every other saved field (id, algorithm,
+ * public key, activation and expiration) is authenticated too: a sealed secret cannot be moved to another key,
+ * and the fields saved with it cannot be modified.
+ */
+final class JwtKeySealer
+{
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_IN_BITS = 128;
+    private static final byte[] HKDF_INFO = "2Auth JWT keys in MongoDB".getBytes(UTF_8);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKey masterKey;
+
+    JwtKeySealer(final SecretKey masterKey) {
+        this.masterKey = masterKey;
+    }
+
+    static JwtKeySealer of(final SslBundle bundle) throws GeneralSecurityException {
+        return new JwtKeySealer(SealedJwtKeyFile.deriveMasterKey(bundle, HKDF_INFO));
+    }
+
+    StoredJwtKey seal(final StoredJwtKey key) throws GeneralSecurityException
+    {
+        final byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(TAG_LENGTH_IN_BITS, iv));
+        cipher.updateAAD(associatedData(key));
+        final byte[] ciphertext = cipher.doFinal(key.secret());
+
+        final byte[] sealed = Arrays.copyOf(iv, IV_LENGTH + ciphertext.length);
+        System.arraycopy(ciphertext, 0, sealed, IV_LENGTH, ciphertext.length);
+        return new StoredJwtKey(key.id(), key.algorithm(), sealed, key.publicKey(), key.activeFrom(), key.expireAt(), true);
+    }
+
+    /**
+     * @throws GeneralSecurityException if the key is not sealed, or was sealed with another master key,
+     * or any of its fields was modified.
+     */
+    StoredJwtKey unseal(final StoredJwtKey key) throws GeneralSecurityException
+    {
+        if (! key.isSealed())
+            throw new GeneralSecurityException("Key " + key.id() + " not sealed");
+
+        final byte[] sealed = key.secret();
+        if (sealed.length <= IV_LENGTH)
+            throw new GeneralSecurityException("Sealed secret of Key " + key.id() + " too short");
+
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_LENGTH_IN_BITS, sealed, 0, IV_LENGTH));
+        cipher.updateAAD(associatedData(key));
+        final byte[] secret = cipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH);
+        return new StoredJwtKey(key.id(), key.algorithm(), secret, key.publicKey(), key.activeFrom(), key.expireAt(), false);
+    }
+
+    /**
+     * Every field but the secret, each variable length field prefixed by its length.
+     */
+    private static byte[] associatedData(final StoredJwtKey key)
+    {
+        final byte[] id = key.id().getBytes(UTF_8);
+        final byte[] algorithm = (key.algorithm() == null) ? new byte[0] : key.algorithm().getBytes(UTF_8);
+        final byte[] publicKey = (key.publicKey() == null) ? new byte[0] : key.publicKey();
+        return ByteBuffer.allocate(3 * Integer.BYTES + id.length + algorithm.length + publicKey.length + 2 * Long.BYTES)
+                .putInt(id.length).put(id)
+                .putInt(algorithm.length).put(algorithm)
+                .putInt(publicKey.length).put(publicKey)
+                .putLong(key.activeFrom().getTime())
+                .putLong(key.expireAt().getTime())
+                .array();
+    }
+}
@@ -1,8 +1,28 @@
 package twoauth.backend.security.service;
 
-import javax.crypto.SecretKey;
+import io.jsonwebtoken.JwtParser;
+
+import java.security.PublicKey;
+import java.util.Map;
 
 public interface JwtKeyStore
 {
-    SecretKey getKey();
+    /**
+     * @return the key to sign new JWS with, and the identifier to write in their "kid" header.
+     */
+    JwtSigningKey getSigningKey();
+
+    /**
+     * @return a thread-safe parser that resolves the verification key from the "kid" header.
+     * It must be reused across requests.
+     */
+    JwtParser getParser();
+
+    /**
+     * @return the public keys that verify the JWS not yet expired, by identifier.
+     * It is empty for HS512, whose keys are secret.
+     */
+    default Map<String, PublicKey> getPublicKeys() {
+        return Map.of();
+    }
 }
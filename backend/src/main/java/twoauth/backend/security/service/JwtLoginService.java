@@ -1,7 +1,9 @@
 package twoauth.backend.security.service;
 
+import lombok.extern.slf4j.Slf4j;
 import io.jsonwebtoken.Jwts;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
@@ -14,34 +16,141 @@ import org.springframework.stereotype.Service;
 import twoauth.backend.exception.BadRequestException;
 import twoauth.backend.security.model.AuthRequest;
 import twoauth.backend.security.model.JwtResponse;
+import twoauth.backend.security.model.RefreshToken;
 import twoauth.backend.security.model.StdJwtClaims;
 import twoauth.backend.security.model.User;
 import twoauth.backend.security.repository.UserSecurityRepository;
 
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
 
 @Service
+@Slf4j
 class JwtLoginService implements LoginService
 {
     private final long jwtTimeValidityInMillis;
     private final AuthenticationManager authenticationManager;
     private final JwtKeyStore keyStore;
+    private final RefreshTokenService refreshTokenService;
     private final UserSecurityRepository userRepository;
+    private final LoginRateLimiter loginRateLimiter;
+    private final LoginMetrics loginMetrics;
 
     public JwtLoginService(
             @Value("${2Auth.jwt.time-validity-in-millis:28800000}") long jwtTVM,
             final AuthenticationManager authenticationManager,
             final JwtKeyStore keyStore,
-            final UserSecurityRepository userRepository
+            final RefreshTokenService refreshTokenService,
+            final UserSecurityRepository userRepository,
+            final LoginRateLimiter loginRateLimiter,
+            final LoginMetrics loginMetrics
     ) {
         this.jwtTimeValidityInMillis = (jwtTVM < 1) ? 28_800_000L : jwtTVM;
         this.authenticationManager = authenticationManager;
         this.keyStore = keyStore;
+        this.refreshTokenService = refreshTokenService;
         this.userRepository = userRepository;
+        this.loginRateLimiter = loginRateLimiter;
+        this.loginMetrics = loginMetrics;
     }
 
     @Override
-    public final ResponseEntity<JwtResponse> login(final AuthRequest request)
+    public final ResponseEntity<JwtResponse> login(
+            final AuthRequest request,
+            @Nullable final String clientAddress
+    ) {
+        final long startInNanos = System.nanoTime();
+        ResponseEntity<JwtResponse> response = null;
+        RuntimeException error = null;
+        try {
+            response = tryLogin(request, clientAddress);
+            return response;
+        }
+        catch (RuntimeException e) {
+            error = e;
+            throw e;
+        }
+        finally {
+            loginMetrics.recordLogin(startInNanos, response, error);
+        }
+    }
+
+    /**
+     * Reads the user from the user cache or MongoDB, no password hashing.
+     */
+    @Override
+    public ResponseEntity<JwtResponse> refresh(final String refreshToken)
+    {
+        final long startInNanos = System.nanoTime();
+        final long nowInMillis = System.currentTimeMillis();
+        ResponseEntity<JwtResponse> response = null;
+        try {
+            final RefreshToken used = refreshTokenService.use(refreshToken, nowInMillis);
+            response = (used == null)
+                    ? getUnauthorized()
+                    : signRefreshed(userRepository.findUserDetailsById(used.email())
+                            .map(JwtLoginService::safeCastUser)
+                            .orElse(null), used, refreshToken, nowInMillis);
+            return response;
+        }
+        finally {
+            loginMetrics.recordRefresh(startInNanos, response);
+        }
+    }
+
+    /**
+     * A user not found, not active or that invalidated its JWS with a new token version (maybe not yet seen by a
+     * cached user) is not refreshed, and its used token is not replaced.
+     * The old JWS is not revoked: the requests already relayed with it must not fail.
+     * <br/>
+     * Only the first use saves a new token: a token used again inside the reuse interval gets the same one,
+     * so that the family never forks.
+     * @param refreshToken the opaque value of the used token.
+     */
+    ResponseEntity<JwtResponse> signRefreshed(@Nullable final User userFromDB, final RefreshToken used,
+                                              final String refreshToken, final long nowInMillis)
+    {
+        if (userFromDB == null || ! userFromDB.isActive() || userFromDB.getTokenVersion() != used.tokenVersion())
+            return getUnauthorized();
+
+        return ResponseEntity.ok(new JwtResponse(newJws(userFromDB, nowInMillis),
+                refreshTokenService.rotate(used, refreshToken)));
+    }
+
+    private ResponseEntity<JwtResponse> tryLogin(
+            final AuthRequest request,
+            @Nullable final String clientAddress
+    ) {
+        final long retryAfterInSeconds;
+        if ((retryAfterInSeconds = loginRateLimiter.tryAcquire(request.getEmail(), clientAddress)) > 0) {
+            request.eraseCredentials();
+            return getTooManyRequests(retryAfterInSeconds);
+        }
+
+        try {
+            return authenticateAndSign(request);
+        }
+        catch (RejectedExecutionException e) {
+            request.eraseCredentials();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+        catch (RuntimeException e) {
+            request.eraseCredentials();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs on the caller thread: only the password hashing of the AuthenticationManager is submitted
+     * to the PasswordHashingExecutor, the user lookup and the MongoDB writes never hold a hashing thread.
+     * @throws RejectedExecutionException if the password hashing pool is saturated.
+     */
+    private ResponseEntity<JwtResponse> authenticateAndSign(final AuthRequest request)
     {
         Authentication authentication;
         try {
@@ -49,12 +158,14 @@ class JwtLoginService implements LoginService
                     new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
         }
         catch (AuthenticationException e) {
+            loginRateLimiter.onFailure(request.getEmail());
             return eraseCredentialsAndGetUnauthorized(request);
         }
+        loginRateLimiter.onSuccess(request.getEmail());
 
         final User userFromDB = safeCastUser(authentication.getPrincipal());
         if (userFromDB == null) {
-            System.err.println("User from Database is deserialized with an incorrect class.");
+            log.error("User from Database is deserialized with an incorrect class.");
             return eraseCredentialsAndGetUnauthorized(request);
         }
 
@@ -67,31 +178,49 @@ class JwtLoginService implements LoginService
 
         request.eraseCredentials();
 
-        final long nowInMillis = System.currentTimeMillis();
-        final String jws = Jwts.builder()
-                .subject(userFromDB.getUsername())
+        return ResponseEntity.ok(newJwtResponse(userFromDB, System.currentTimeMillis()));
+    }
+
+    /**
+     * Writes the refresh token on MongoDB.
+     */
+    JwtResponse newJwtResponse(final User user, final long nowInMillis) {
+        return new JwtResponse(newJws(user, nowInMillis), refreshTokenService.issue(user, nowInMillis));
+    }
+
+    String newJws(final User user, final long nowInMillis) {
+        return loginMetrics.recordJwsSigning(() -> sign(user, nowInMillis));
+    }
+
+    private String sign(final User user, final long nowInMillis)
+    {
+        final JwtSigningKey signingKey = keyStore.getSigningKey();
+        return Jwts.builder()
+                .header().keyId(signingKey.id()).and()
+                // identifies the JWS in the JwsRevocationList
+                .id(UUID.randomUUID().toString())
+                .subject(user.getUsername())
                 .issuedAt(new Date(nowInMillis))
                 .expiration(new Date(nowInMillis + jwtTimeValidityInMillis))
-                .claim(StdJwtClaims.PERMISSIONS, userFromDB.getAuthorities()
+                .claim(StdJwtClaims.PERMISSIONS, user.getAuthorities()
                         .stream()
                         .map(GrantedAuthority::getAuthority)
                         .toList())
-                .signWith(keyStore.getKey())
+                .claim(StdJwtClaims.TOKEN_VERSION, user.getTokenVersion())
+                .signWith(signingKey.key())
                 .compact();
-
-        return ResponseEntity.ok(new JwtResponse(jws));
     }
 
     private boolean tryAccountActivation(final AuthRequest request, final User userFromDB)
     {
         final String base64OTActivationToken = request.getBase64OTActivationToken();
         if (base64OTActivationToken == null) {
-            System.err.println("Not enabled User tried login without an OT Activation Token.");
+            log.debug("Not enabled User {} tried login without an OT Activation Token.", userFromDB.getUsername());
             return false;
         }
 
         if (! base64OTActivationToken.equals(userFromDB.getActivationToken())) {
-            System.err.println("Not enabled User tried login with an invalid OT Activation Token.");
+            log.info(SAMPLED, "Not enabled User {} tried login with an invalid OT Activation Token.", userFromDB.getUsername());
             return false;
         }
 
@@ -103,8 +232,18 @@ class JwtLoginService implements LoginService
         return (obj instanceof User user) ? user : null;
     }
 
+    static ResponseEntity<JwtResponse> getTooManyRequests(final long retryAfterInSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterInSeconds))
+                .build();
+    }
+
+    static ResponseEntity<JwtResponse> getUnauthorized() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED.value()).build();
+    }
+
     private static ResponseEntity<JwtResponse> eraseCredentialsAndGetUnauthorized(final AuthRequest request) {
         request.eraseCredentials();
-        return ResponseEntity.status(HttpStatus.UNAUTHORIZED.value()).build();
+        return getUnauthorized();
     }
 }
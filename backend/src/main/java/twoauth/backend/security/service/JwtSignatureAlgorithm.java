@@ -0,0 +1,64 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.lang.Nullable;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Algorithm of the keys that sign the JWS. HS512 keys can only be verified by the Backend,
+ * ED25519 (EdDSA) and ES256 (ECDSA P-256) public keys are published, so the API Gateway can verify the JWS too.
+ */
+public enum JwtSignatureAlgorithm
+{
+    HS512(null),
+    ED25519("Ed25519"),
+    ES256("EC");
+
+    @Nullable
+    private final String keyFactoryAlgorithm;
+
+    JwtSignatureAlgorithm(@Nullable final String keyFactoryAlgorithm) {
+        this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+    }
+
+    public boolean isAsymmetric() {
+        return keyFactoryAlgorithm != null;
+    }
+
+    JwtSigningKey newKey(final String id)
+    {
+        final KeyPair keyPair = switch (this) {
+            case HS512 -> null;
+            case ED25519 -> Jwks.CRV.Ed25519.keyPair().build();
+            case ES256 -> Jwts.SIG.ES256.keyPair().build();
+        };
+        return (keyPair == null)
+                ? new JwtSigningKey(id, Jwts.SIG.HS512.key().build())
+                : new JwtSigningKey(id, this, keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    /**
+     * @param secret the HMAC secret, or the PKCS #8 encoding of the private key.
+     * @param publicKey the X.509 encoding of the public key, null for HS512.
+     */
+    JwtSigningKey decode(final String id, final byte[] secret, @Nullable final byte[] publicKey)
+            throws GeneralSecurityException
+    {
+        if (keyFactoryAlgorithm == null)
+            return new JwtSigningKey(id, Keys.hmacShaKeyFor(secret));
+        if (publicKey == null)
+            throw new GeneralSecurityException("Public key of " + id + " not found");
+
+        final KeyFactory keyFactory = KeyFactory.getInstance(keyFactoryAlgorithm);
+        return new JwtSigningKey(id, this,
+                keyFactory.generatePrivate(new PKCS8EncodedKeySpec(secret)),
+                keyFactory.generatePublic(new X509EncodedKeySpec(publicKey)));
+    }
+}
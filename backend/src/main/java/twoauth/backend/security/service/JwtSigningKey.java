@@ -0,0 +1,23 @@
+package twoauth.backend.security.service;
+
+import javax.crypto.SecretKey;
+import java.security.Key;
+
+/**
+ * A JWS signing key together with its identifier, written in the "kid" header.
+ * For HS512 the verification key is the signing key itself, otherwise it is the public key.
+ */
+public record JwtSigningKey(String id, JwtSignatureAlgorithm algorithm, Key key, Key verificationKey)
+{
+    public JwtSigningKey(final String id, final SecretKey key) {
+        this(id, JwtSignatureAlgorithm.HS512, key, key);
+    }
+
+    @Override
+    public String toString() {
+        return "JwtSigningKey{" +
+                "id='" + id + '\'' +
+                ", algorithm=" + algorithm +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import twoauth.backend.exception.BadRequestException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Latency of the logins by outcome, {@code twoauth.login{outcome}}, and of their phases, {@code twoauth.login.phase{phase}}:
+ * user_lookup (MongoDB or the user cache), password_verification (see TimedPasswordEncoder) and jws_signing.
+ * The JWS refreshes without a password are timed apart, {@code twoauth.jws.refresh{outcome}}.
+ */
+@Component
+class LoginMetrics
+{
+    private final Meter.MeterProvider<Timer> loginTimers;
+    private final Meter.MeterProvider<Timer> refreshTimers;
+    private final Timer userLookupTimer;
+    private final Timer jwsSigningTimer;
+
+    LoginMetrics(final MeterRegistry meterRegistry)
+    {
+        this.loginTimers = Timer.builder("twoauth.login")
+                .description("Time spent by a login, by outcome")
+                .withRegistry(meterRegistry);
+        this.refreshTimers = Timer.builder("twoauth.jws.refresh")
+                .description("Time spent by a JWS refresh, by outcome")
+                .withRegistry(meterRegistry);
+        this.userLookupTimer = newPhaseTimer(meterRegistry, "user_lookup");
+        this.jwsSigningTimer = newPhaseTimer(meterRegistry, "jws_signing");
+    }
+
+    void recordLogin(final long startInNanos, @Nullable final ResponseEntity<?> response, @Nullable Throwable error)
+    {
+        final String outcome;
+        if (response != null)
+            outcome = getOutcome(response);
+        else {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+            outcome = (error instanceof BadRequestException) ? "bad_request" : "error";
+        }
+        loginTimers.withTag("outcome", outcome).record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordRefresh(final long startInNanos, @Nullable final ResponseEntity<?> response) {
+        refreshTimers.withTag("outcome", (response == null) ? "error" : getOutcome(response))
+                .record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    Timer getUserLookupTimer() {
+        return userLookupTimer;
+    }
+
+    <T> T recordJwsSigning(final Supplier<T> signing) {
+        return jwsSigningTimer.record(signing);
+    }
+
+    private static String getOutcome(final ResponseEntity<?> response) {
+        return switch (response.getStatusCode().value()) {
+            case 200 -> "success";
+            case 401 -> "unauthorized";
+            case 429 -> "too_many_requests";
+            case 503 -> "unavailable";
+            default -> "error";
+        };
+    }
+
+    private static Timer newPhaseTimer(final MeterRegistry meterRegistry, final String phase) {
+        return Timer.builder("twoauth.login.phase")
+                .description("Time spent by a login in each phase")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+}
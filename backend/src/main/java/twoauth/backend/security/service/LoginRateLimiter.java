@@ -0,0 +1,199 @@
+package twoauth.backend.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import twoauth.backend.security.model.LoginLockout;
+import twoauth.backend.security.repository.LoginLockoutRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rejects a login before its password is hashed, when the client address made too many attempts
+ * or the email had too many wrong passwords in the sliding window: the email is then locked out for the lockout time.
+ * <br/>
+ * The counters are {@link SlidingWindowCounter}s kept in bounded caches, the least recently used are evicted.
+ * The lockouts can be saved in MongoDB, to be loaded again when the Backend restarts.
+ */
+@Component
+@Slf4j
+public class LoginRateLimiter
+{
+    public static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final boolean isEnabled;
+    private final long windowInMillis;
+    private final int maxFailuresPerEmail;
+    private final int maxAttemptsPerAddress;
+    private final long lockoutInMillis;
+    private final Set<String> trustedProxies;
+    private final LoginLockoutRepository lockoutRepository;
+    private final boolean isPersistent;
+    private final Cache<String, SlidingWindowCounter> emailFailures;
+    private final Cache<String, SlidingWindowCounter> addressAttempts;
+    private final Cache<String, Long> lockouts;
+    private final Counter allowedCounter;
+    private final Counter rejectedEmailCounter;
+    private final Counter rejectedAddressCounter;
+    private final Counter lockoutCounter;
+
+    public LoginRateLimiter(
+            @Value("${2Auth.login-rate-limit.enabled:true}") boolean isEnabled,
+            @Value("${2Auth.login-rate-limit.window-in-millis:900000}") long windowInMillis,
+            @Value("${2Auth.login-rate-limit.max-failures-per-email:10}") int maxFailuresPerEmail,
+            @Value("${2Auth.login-rate-limit.max-attempts-per-address:100}") int maxAttemptsPerAddress,
+            @Value("${2Auth.login-rate-limit.lockout-in-millis:900000}") long lockoutInMillis,
+            @Value("${2Auth.login-rate-limit.maximum-size:100000}") long maximumSize,
+            @Value("${2Auth.login-rate-limit.trusted-proxies:}") List<String> trustedProxies,
+            @Value("${2Auth.login-rate-limit.persist-lockouts:false}") boolean isPersistent,
+            final LoginLockoutRepository lockoutRepository,
+            final TaskScheduler taskScheduler,
+            final MeterRegistry meterRegistry
+    ) {
+        this.isEnabled = isEnabled;
+        this.windowInMillis = (windowInMillis < 1) ? 900_000L : windowInMillis;
+        this.maxFailuresPerEmail = (maxFailuresPerEmail < 1) ? 10 : maxFailuresPerEmail;
+        this.maxAttemptsPerAddress = (maxAttemptsPerAddress < 1) ? 100 : maxAttemptsPerAddress;
+        this.lockoutInMillis = (lockoutInMillis < 1) ? 900_000L : lockoutInMillis;
+        this.trustedProxies = trustedProxies.stream()
+                .map(String::strip)
+                .filter(address -> ! address.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.lockoutRepository = lockoutRepository;
+        this.isPersistent = isPersistent;
+
+        final long cacheSize = (maximumSize < 1) ? 100_000L : maximumSize;
+        // a counter not incremented for two windows counts nothing
+        this.emailFailures = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofMillis(2 * this.windowInMillis))
+                .build();
+        this.addressAttempts = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofMillis(2 * this.windowInMillis))
+                .build();
+        this.lockouts = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMillis(this.lockoutInMillis))
+                .build();
+
+        this.allowedCounter = newAttemptsCounter(meterRegistry, "allowed");
+        this.rejectedEmailCounter = newAttemptsCounter(meterRegistry, "rejected_email");
+        this.rejectedAddressCounter = newAttemptsCounter(meterRegistry, "rejected_address");
+        this.lockoutCounter = Counter.builder("twoauth.login.lockouts")
+                .description("Emails locked out after too many wrong passwords")
+                .register(meterRegistry);
+
+        if (isEnabled && isPersistent)
+            taskScheduler.schedule(this::loadLockouts, Instant.now());
+    }
+
+    /**
+     * @param forwardedFor the X-Forwarded-For header, the last address is the one seen by the API Gateway.
+     * It is ignored unless the connection comes from a trusted proxy: anyone else could send a new one every time.
+     * @return the address of the client, or null if unknown.
+     */
+    @Nullable
+    public String getClientAddress(@Nullable final String forwardedFor, @Nullable final String remoteAddress)
+    {
+        if (forwardedFor != null && remoteAddress != null && trustedProxies.contains(remoteAddress)) {
+            final String address = forwardedFor.substring(forwardedFor.lastIndexOf(',') + 1).strip();
+            if (! address.isEmpty())
+                return address;
+        }
+        return remoteAddress;
+    }
+
+    /**
+     * Never blocks. The attempt is counted for the client address.
+     * @return 0 if the password can be verified, otherwise the seconds before trying again.
+     */
+    public long tryAcquire(final String email, @Nullable final String clientAddress)
+    {
+        if (! isEnabled)
+            return 0;
+
+        final long nowInMillis = System.currentTimeMillis();
+        final Long lockedUntilInMillis;
+        if ((lockedUntilInMillis = lockouts.getIfPresent(email)) != null && lockedUntilInMillis > nowInMillis) {
+            rejectedEmailCounter.increment();
+            return toRetryAfterInSeconds(lockedUntilInMillis - nowInMillis);
+        }
+
+        // the rejected attempts are counted too, the address is allowed again only when it slows down
+        if (clientAddress != null && addressAttempts.get(clientAddress, __ -> new SlidingWindowCounter(windowInMillis))
+                .incrementAndGet(nowInMillis) > maxAttemptsPerAddress) {
+            rejectedAddressCounter.increment();
+            return toRetryAfterInSeconds(windowInMillis / maxAttemptsPerAddress);
+        }
+
+        allowedCounter.increment();
+        return 0;
+    }
+
+    /**
+     * Locks the email out when the wrong passwords reach the maximum,
+     * the lockout is saved in MongoDB if the lockouts are persistent.
+     */
+    public void onFailure(final String email)
+    {
+        if (! isEnabled)
+            return;
+
+        final long nowInMillis = System.currentTimeMillis();
+        if (emailFailures.get(email, __ -> new SlidingWindowCounter(windowInMillis))
+                .incrementAndGet(nowInMillis) < maxFailuresPerEmail)
+            return;
+
+        final long lockedUntilInMillis = nowInMillis + lockoutInMillis;
+        lockouts.put(email, lockedUntilInMillis);
+        emailFailures.invalidate(email);
+        lockoutCounter.increment();
+        log.warn("User {} locked out after {} wrong passwords.", email, maxFailuresPerEmail);
+
+        if (isPersistent && ! lockoutRepository.save(LoginLockout.of(email, lockedUntilInMillis)))
+            log.warn("Lockout of User {} not saved.", email);
+    }
+
+    /**
+     * Forgets the wrong passwords of the email.
+     */
+    public void onSuccess(final String email) {
+        if (isEnabled)
+            emailFailures.invalidate(email);
+    }
+
+    void loadLockouts()
+    {
+        try {
+            lockoutRepository.ensureIndexes();
+            for (final LoginLockout lockout : lockoutRepository.findActive(new Date()))
+                lockouts.put(lockout.email(), lockout.expireAt().getTime());
+        }
+        catch (Exception e) {
+            log.warn("Lockouts not loaded: {}", e.getMessage());
+        }
+    }
+
+    private static long toRetryAfterInSeconds(final long millis) {
+        return Math.max(1L, (millis + 999L) / 1000L);
+    }
+
+    private static Counter newAttemptsCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("twoauth.login.attempts")
+                .description("Logins allowed or rejected before the password verification")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,9 +1,23 @@
 package twoauth.backend.security.service;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import twoauth.backend.security.model.AuthRequest;
 import twoauth.backend.security.model.JwtResponse;
 
 public interface LoginService {
-    ResponseEntity<JwtResponse> login(AuthRequest request);
+    /**
+     * Runs on the caller thread, which waits for the password hashing submitted to the {@link PasswordHashingExecutor}:
+     * the user is read and updated by the caller thread.
+     * @param clientAddress rate limited by the {@link LoginRateLimiter}, with the email of the request.
+     * @return 503 SERVICE_UNAVAILABLE if the password hashing pool is saturated.
+     */
+    ResponseEntity<JwtResponse> login(AuthRequest request, @Nullable String clientAddress);
+
+    /**
+     * Signs a new JWS in exchange for a refresh token, without verifying the password again.
+     * @return the new JWS with the refresh token that replaces the used one, or 401 UNAUTHORIZED if the token is
+     * unknown, expired or used again, or the user changed since the login.
+     */
+    ResponseEntity<JwtResponse> refresh(String refreshToken);
 }
@@ -0,0 +1,189 @@
+package twoauth.backend.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import twoauth.backend.security.model.StoredJwtKey;
+import twoauth.backend.security.repository.JwtKeyRepository;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Signing keys shared by every Backend instance through MongoDB, so that a JWS signed by an instance
+ * is verified by all the others. Selected with {@code 2Auth.jwt.key-store=MONGO}.
+ * <br/>
+ * Every instance reads the keys every refresh interval, on the scheduler, and publishes them as a new {@link JwtKeyRing}:
+ * a request never waits for MongoDB. The rotation is done by the instance that takes the lease: it saves the next key
+ * two refresh intervals before it becomes the current one, so every instance knows it before a JWS is signed with it.
+ * MongoDB deletes a key when the last JWS it signed expires.
+ * <br/>
+ * The secrets are sealed by a {@link JwtKeySealer}, with a master key derived from the key entry of an SSL bundle:
+ * every instance must have the same key entry, and reading MongoDB is not enough to sign a JWS. A key saved in clear
+ * is rejected, unless it is read before the end of the migration of the unsealed keys: then it is sealed and saved again.
+ */
+@Service
+@ConditionalOnProperty(prefix = "2Auth.jwt", name = "key-store", havingValue = "MONGO")
+@Slf4j
+class MongoJwtKeyStore extends AbstractJwtKeyStore
+{
+    private static final String LEASE_ID = "rotator";
+
+    private final JwtKeyRepository keyRepository;
+    private final JwtKeySealer keySealer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long keyTimeValidityInMillis;
+    private final long jwtTimeValidityInMillis;
+    private final long refreshIntervalInMillis;
+    private final long leaseTimeInMillis;
+    private final long unsealedKeysAcceptedUntilInMillis;
+    private final String owner = UUID.randomUUID().toString();
+
+    public MongoJwtKeyStore(
+            @Value("${2Auth.jwt.key-time-validity-in-millis:86400000}") long keyTVM,
+            @Value("${2Auth.jwt.time-validity-in-millis:28800000}") long jwtTVM,
+            @Value("${2Auth.jwt.signature-algorithm:HS512}") String signatureAlgorithm,
+            @Value("${2Auth.jwt.mongo-key-store.refresh-interval-in-millis:10000}") long refreshInterval,
+            @Value("${2Auth.jwt.mongo-key-store.lease-time-in-millis:60000}") long leaseTime,
+            @Value("${2Auth.jwt.mongo-key-store.ssl-bundle:jwt-keys}") String sslBundle,
+            @Value("${2Auth.jwt.mongo-key-store.unsealed-keys-accepted-until:}") String unsealedKeysAcceptedUntil,
+            final SslBundles sslBundles,
+            final JwtKeyRepository keyRepository,
+            final TaskScheduler taskScheduler,
+            final ApplicationEventPublisher eventPublisher
+    ) {
+        super(JwtSignatureAlgorithm.valueOf(signatureAlgorithm));
+        this.keyRepository = keyRepository;
+        try {
+            this.keySealer = JwtKeySealer.of(sslBundles.getBundle(sslBundle));
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Master key not derived from the SSL bundle " + sslBundle, e);
+        }
+        this.eventPublisher = eventPublisher;
+        this.unsealedKeysAcceptedUntilInMillis = unsealedKeysAcceptedUntil.isBlank()
+                ? 0L
+                : Instant.parse(unsealedKeysAcceptedUntil.strip()).toEpochMilli();
+        this.refreshIntervalInMillis = (refreshInterval < 1) ? 10_000L : refreshInterval;
+        // the next key is saved two refresh intervals before it becomes current
+        this.keyTimeValidityInMillis = Math.max((keyTVM < 1) ? 86_400_000L : keyTVM, 4 * this.refreshIntervalInMillis);
+        this.jwtTimeValidityInMillis = (jwtTVM < 1) ? 28_800_000L : jwtTVM;
+        this.leaseTimeInMillis = Math.max((leaseTime < 1) ? 60_000L : leaseTime, 2 * this.refreshIntervalInMillis);
+
+        // the keys must be loaded before the first login
+        keyRepository.ensureIndexes();
+        refresh();
+        // not if the keys were sealed with another master key: the other instances could not unseal a new key
+        if (getRing() == null && keyRepository.findActive(new Date()).isEmpty()) {
+            // the lease is held by another instance starting now: both keys are shared anyway
+            saveKey(System.currentTimeMillis());
+            refresh();
+        }
+        if (getRing() == null)
+            throw new IllegalStateException("JWT signing keys not loaded from MongoDB.");
+
+        taskScheduler.scheduleWithFixedDelay(
+                this::refresh,
+                Instant.now().plusMillis(this.refreshIntervalInMillis),
+                Duration.ofMillis(this.refreshIntervalInMillis)
+        );
+    }
+
+    void refresh()
+    {
+        try {
+            final long nowInMillis = System.currentTimeMillis();
+            List<StoredJwtKey> keys = keyRepository.findActive(new Date(nowInMillis));
+            final long nextActiveFromInMillis = keys.isEmpty()
+                    ? nowInMillis
+                    : keys.get(keys.size() - 1).activeFrom().getTime() + keyTimeValidityInMillis;
+
+            if (nextActiveFromInMillis - 2 * refreshIntervalInMillis <= nowInMillis && keyRepository.tryAcquireLease(
+                    LEASE_ID, owner, new Date(nowInMillis), new Date(nowInMillis + leaseTimeInMillis))) {
+                saveKey(Math.max(nextActiveFromInMillis, keys.isEmpty() ? nowInMillis : nowInMillis + 2 * refreshIntervalInMillis));
+                keys = keyRepository.findActive(new Date(nowInMillis));
+            }
+            if (! keys.isEmpty())
+                publish(keys, nowInMillis);
+        }
+        catch (Exception e) {
+            // never let an exception cancel the scheduled task, the last keys are still used
+            log.warn("Keys not refreshed: {}", e.getMessage());
+        }
+    }
+
+    private void saveKey(final long activeFromInMillis)
+    {
+        final JwtSigningKey newKey = generateNewKey();
+        // a key is current until the next one is read, at most a refresh interval after its activation
+        final long expireAtInMillis = activeFromInMillis + keyTimeValidityInMillis + refreshIntervalInMillis
+                + jwtTimeValidityInMillis;
+        final StoredJwtKey sealedKey;
+        try {
+            sealedKey = keySealer.seal(toStoredKey(newKey, new Date(activeFromInMillis), new Date(expireAtInMillis)));
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Key " + newKey.id() + " not sealed", e);
+        }
+        if (keyRepository.insert(sealedKey))
+            log.info("New Key saved: {}, current from {}", newKey.id(), Instant.ofEpochMilli(activeFromInMillis));
+    }
+
+    /**
+     * @throws IllegalStateException if a key was sealed with another master key or modified, or was saved in clear
+     * after the migration: the last keys are still used.
+     */
+    private void publish(final List<StoredJwtKey> keys, final long nowInMillis)
+    {
+        final List<StoredJwtKey> unsealedKeys = new ArrayList<>(keys.size());
+        for (final StoredJwtKey key : keys) {
+            if (! key.isSealed() && nowInMillis < unsealedKeysAcceptedUntilInMillis) {
+                unsealedKeys.add(key);
+                sealAgain(key);
+                continue;
+            }
+            try {
+                unsealedKeys.add(keySealer.unseal(key));
+            }
+            catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Key " + key.id() + " not unsealed, another SSL bundle key entry?", e);
+            }
+        }
+
+        final JwtKeyRing oldRing = getRing();
+        final JwtKeyRing newRing = toRing(unsealedKeys, nowInMillis);
+        publish(newRing);
+        if (oldRing != null && ! oldRing.current().id().equals(newRing.current().id())) {
+            log.info("Current Key: {}", newRing.current().id());
+            eventPublisher.publishEvent(new JwtKeyRotationEvent(newRing.current().id()));
+        }
+    }
+
+    /**
+     * Seals a key saved in clear before the secrets were sealed, the key is still used if it is not saved.
+     */
+    private void sealAgain(final StoredJwtKey key)
+    {
+        try {
+            if (keyRepository.replaceUnsealed(keySealer.seal(key)))
+                log.info("Key {} saved in clear is now sealed", key.id());
+        }
+        catch (Exception e) {
+            log.warn("Key {} saved in clear not sealed: {}", key.id(), e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MongoJwtKeyStore{owner='" + owner + "'}";
+    }
+}
@@ -0,0 +1,114 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of platform threads, sized to the CPU cores, that runs the password hashing
+ * (BCrypt) of the login, so that its CPU cost never starves the request threads.
+ * <br/>
+ * When all the threads are busy and the queue is full, a new task is rejected immediately
+ * with a {@link RejectedExecutionException}, instead of waiting.
+ * <br/>
+ * With virtual threads (spring.threads.virtual.enabled) the hashing stays on these platform threads:
+ * a virtual thread waiting for the result is unmounted, and never holds a carrier thread for the whole hash.
+ */
+@Component
+public class PasswordHashingExecutor
+{
+    private static final String NAME = "password.hashing";
+
+    private final ThreadPoolExecutor executor;
+    private final Timer waitTimer;
+    private final Timer hashingTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(
+            @Value("${2Auth.password-hashing.threads:0}") int threads,
+            @Value("${2Auth.password-hashing.queue-capacity:100}") int queueCapacity,
+            final MeterRegistry meterRegistry
+    ) {
+        final int poolSize = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+        final var threadCount = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>((queueCapacity < 1) ? 100 : queueCapacity),
+                runnable -> {
+                    final var thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        // executor.queued, executor.queue.remaining, executor.active, executor.pool.size, ...
+        new ExecutorServiceMetrics(executor, NAME, Tags.empty()).bindTo(meterRegistry);
+        this.waitTimer = Timer.builder("twoauth.password.hashing.wait")
+                .description("Time spent by a login in the password hashing queue")
+                .register(meterRegistry);
+        this.hashingTimer = Timer.builder("twoauth.password.hashing")
+                .description("Time spent by a login to verify the password")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("twoauth.password.hashing.rejected")
+                .description("Logins rejected because the password hashing pool is saturated")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the pool is saturated.
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<T> task)
+    {
+        final long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashingTimer.record(task);
+            }, executor);
+        }
+        catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the task on the pool and waits for its result.
+     * @throws RejectedExecutionException if the pool is saturated.
+     */
+    public <T> T call(final Supplier<T> task)
+    {
+        try {
+            return submit(task).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "PasswordHashingExecutor{" +
+                "poolSize=" + executor.getMaximumPoolSize() +
+                '}';
+    }
+}
@@ -0,0 +1,220 @@
+package twoauth.backend.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import twoauth.backend.exception.BadRequestException;
+import twoauth.backend.security.model.AuthRequest;
+import twoauth.backend.security.model.JwtResponse;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.repository.ReactiveUserSecurityRepository;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+/**
+ * Same login of {@link JwtLoginService}, without blocking a thread while MongoDB is read or updated:
+ * only the password verification runs on the {@link PasswordHashingExecutor}, and the refresh tokens are written
+ * on the bounded elastic Scheduler.
+ * <br/>
+ * The password is verified as by the DaoAuthenticationProvider: against a dummy hash when the user does not exist,
+ * so that an unknown email takes the same time of a wrong password, and re-encoded when it was hashed with other settings.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+class ReactiveJwtLoginService implements ReactiveLoginService
+{
+    private static final String USER_NOT_FOUND_PASSWORD = "userNotFoundPassword";
+
+    private final JwtLoginService jwtLoginService;
+    private final RefreshTokenService refreshTokenService;
+    private final ReactiveUserSecurityRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final LoginRateLimiter loginRateLimiter;
+    private final LoginMetrics loginMetrics;
+    private volatile String userNotFoundEncodedPassword;
+
+    ReactiveJwtLoginService(
+            final JwtLoginService jwtLoginService,
+            final RefreshTokenService refreshTokenService,
+            final ReactiveUserSecurityRepository userRepository,
+            final PasswordEncoder passwordEncoder,
+            final PasswordHashingExecutor passwordHashingExecutor,
+            final LoginRateLimiter loginRateLimiter,
+            final LoginMetrics loginMetrics
+    ) {
+        this.jwtLoginService = jwtLoginService;
+        this.refreshTokenService = refreshTokenService;
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.loginRateLimiter = loginRateLimiter;
+        this.loginMetrics = loginMetrics;
+    }
+
+    @Override
+    public Mono<ResponseEntity<JwtResponse>> login(final AuthRequest request, @Nullable final String clientAddress)
+    {
+        final long startInNanos = System.nanoTime();
+        return tryLogin(request, clientAddress)
+                .doOnSuccess(response -> loginMetrics.recordLogin(startInNanos, response, null))
+                .doOnError(error -> loginMetrics.recordLogin(startInNanos, null, error));
+    }
+
+    /**
+     * The refresh token is used and rotated with the blocking MongoTemplate, on the bounded elastic Scheduler.
+     */
+    @Override
+    public Mono<ResponseEntity<JwtResponse>> refresh(final String refreshToken)
+    {
+        final long startInNanos = System.nanoTime();
+        final long nowInMillis = System.currentTimeMillis();
+        return Mono.fromCallable(() -> refreshTokenService.use(refreshToken, nowInMillis))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(used -> userRepository.findUserById(used.email())
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(user -> jwtLoginService.signRefreshed(user, used, refreshToken, nowInMillis)))
+                .switchIfEmpty(Mono.fromSupplier(ReactiveJwtLoginService::getUnauthorized))
+                .doOnSuccess(response -> loginMetrics.recordRefresh(startInNanos, response))
+                .doOnError(error -> loginMetrics.recordRefresh(startInNanos, null));
+    }
+
+    private Mono<ResponseEntity<JwtResponse>> tryLogin(final AuthRequest request, @Nullable final String clientAddress)
+    {
+        final long retryAfterInSeconds;
+        if ((retryAfterInSeconds = loginRateLimiter.tryAcquire(request.getEmail(), clientAddress)) > 0) {
+            request.eraseCredentials();
+            return Mono.just(JwtLoginService.getTooManyRequests(retryAfterInSeconds));
+        }
+
+        return findUserById(request.getEmail())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                // an empty result is a wrong password or an unknown user
+                .flatMap(user -> Mono.fromFuture(() -> passwordHashingExecutor.submit(
+                        () -> verifyPassword(request, user.orElse(null)))))
+                .flatMap(verifiedUser -> upgradePassword(verifiedUser)
+                        .then(Mono.defer(() -> activateAndSign(request, verifiedUser.user()))))
+                .switchIfEmpty(Mono.fromSupplier(ReactiveJwtLoginService::getUnauthorized))
+                .onErrorResume(RejectedExecutionException.class, e -> Mono.just(getServiceUnavailable()))
+                // before the response is emitted, as the credentials are erased by JwtLoginService
+                .doOnTerminate(request::eraseCredentials)
+                .doOnCancel(request::eraseCredentials);
+    }
+
+    private Mono<User> findUserById(final String email)
+    {
+        return Mono.defer(() -> {
+            final long startInNanos = System.nanoTime();
+            return userRepository.findUserById(email)
+                    .doFinally(__ -> loginMetrics.getUserLookupTimer()
+                            .record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Runs on the PasswordHashingExecutor.
+     * @return null if the user does not exist or the password is wrong.
+     */
+    @Nullable
+    private VerifiedUser verifyPassword(final AuthRequest request, @Nullable final User userFromDB)
+    {
+        if (userFromDB == null) {
+            passwordEncoder.matches(request.getPassword(), getUserNotFoundEncodedPassword());
+            log.debug("User {} not found.", request.getEmail());
+            loginRateLimiter.onFailure(request.getEmail());
+            return null;
+        }
+        if (userFromDB.getPassword() == null || ! passwordEncoder.matches(request.getPassword(), userFromDB.getPassword())) {
+            loginRateLimiter.onFailure(request.getEmail());
+            return null;
+        }
+        loginRateLimiter.onSuccess(request.getEmail());
+
+        final String upgradedPassword = passwordEncoder.upgradeEncoding(userFromDB.getPassword())
+                ? passwordEncoder.encode(request.getPassword())
+                : null;
+        return new VerifiedUser(userFromDB, upgradedPassword);
+    }
+
+    /**
+     * If the update fails the old hash is kept, and it will be upgraded on a next login.
+     */
+    private Mono<Void> upgradePassword(final VerifiedUser verifiedUser)
+    {
+        if (verifiedUser.upgradedPassword() == null)
+            return Mono.empty();
+
+        final User userFromDB = verifiedUser.user();
+        return userRepository.optimisticLockUpdatePassword(userFromDB, verifiedUser.upgradedPassword())
+                .doOnNext(isUpdated -> {
+                    if (! isUpdated)
+                        log.warn(SAMPLED, "Password hash of User {} not upgraded.", userFromDB.getUsername());
+                })
+                .then();
+    }
+
+    private Mono<ResponseEntity<JwtResponse>> activateAndSign(final AuthRequest request, final User userFromDB)
+    {
+        final Mono<Boolean> isActive;
+        if (userFromDB.isActive()) {
+            if (request.getBase64OTActivationToken() != null)
+                return Mono.error(new BadRequestException("Activation Token is not necessary."));
+            isActive = Mono.just(true);
+        }
+        else
+            isActive = tryAccountActivation(request, userFromDB);
+
+        // the refresh token is written with the blocking MongoTemplate
+        return isActive.flatMap(active -> active
+                ? Mono.fromCallable(() -> ResponseEntity.ok(jwtLoginService.newJwtResponse(userFromDB, System.currentTimeMillis())))
+                        .subscribeOn(Schedulers.boundedElastic())
+                : Mono.just(getUnauthorized()));
+    }
+
+    private Mono<Boolean> tryAccountActivation(final AuthRequest request, final User userFromDB)
+    {
+        final String base64OTActivationToken = request.getBase64OTActivationToken();
+        if (base64OTActivationToken == null) {
+            log.debug("Not enabled User {} tried login without an OT Activation Token.", userFromDB.getUsername());
+            return Mono.just(false);
+        }
+
+        if (! base64OTActivationToken.equals(userFromDB.getActivationToken())) {
+            log.info(SAMPLED, "Not enabled User {} tried login with an invalid OT Activation Token.", userFromDB.getUsername());
+            return Mono.just(false);
+        }
+
+        return userRepository.optimisticLockEnableUserAccount(userFromDB);
+    }
+
+    private String getUserNotFoundEncodedPassword() {
+        if (userNotFoundEncodedPassword == null)
+            userNotFoundEncodedPassword = passwordEncoder.encode(USER_NOT_FOUND_PASSWORD);
+        return userNotFoundEncodedPassword;
+    }
+
+    private static ResponseEntity<JwtResponse> getUnauthorized() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED.value()).build();
+    }
+
+    private static ResponseEntity<JwtResponse> getServiceUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    private record VerifiedUser(User user, @Nullable String upgradedPassword) {}
+}
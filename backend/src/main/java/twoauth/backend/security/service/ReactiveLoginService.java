@@ -0,0 +1,22 @@
+package twoauth.backend.security.service;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+import twoauth.backend.security.model.AuthRequest;
+import twoauth.backend.security.model.JwtResponse;
+
+/**
+ * {@link LoginService} of the reactive mode.
+ */
+public interface ReactiveLoginService {
+    /**
+     * The user is read without blocking, the password is verified on the PasswordHashingExecutor.
+     */
+    Mono<ResponseEntity<JwtResponse>> login(AuthRequest request, @Nullable String clientAddress);
+
+    /**
+     * The user is read without blocking, the refresh token on the bounded elastic Scheduler.
+     */
+    Mono<ResponseEntity<JwtResponse>> refresh(String refreshToken);
+}
@@ -0,0 +1,14 @@
+package twoauth.backend.security.service;
+
+import reactor.core.publisher.Mono;
+import twoauth.backend.security.model.User;
+
+/**
+ * {@link UserService} of the reactive mode: the exceptions of UserService are signaled as errors.
+ */
+public interface ReactiveUserService
+{
+    Mono<User.SecureDto> safeGetById(String email);
+    Mono<Void> update(User.SecureDto user);
+    Mono<Void> delete(String email);
+}
@@ -0,0 +1,49 @@
+package twoauth.backend.security.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import twoauth.backend.exception.UserNotDeletedException;
+import twoauth.backend.exception.UserNotFoundException;
+import twoauth.backend.exception.UserNotUpdatedException;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.repository.ReactiveUserRepository;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveUserServiceImpl implements ReactiveUserService
+{
+    private final ReactiveUserRepository userRepository;
+
+    @Override
+    public Mono<User.SecureDto> safeGetById(final String email)
+    {
+        return userRepository.findById(email)
+                .map(user -> new User.SecureDto(
+                        user.email(),
+                        user.firstName(),
+                        user.lastName(),
+                        user.creation(),
+                        user.lastUpdate(),
+                        user.permissions(),
+                        user.isActive()
+                ))
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException(email)));
+    }
+
+    @Override
+    public Mono<Void> update(final User.SecureDto user)
+    {
+        return userRepository.optimisticLockUpdate(user)
+                .flatMap(isUpdated -> isUpdated ? Mono.empty() : Mono.error(new UserNotUpdatedException(user.email())));
+    }
+
+    @Override
+    public Mono<Void> delete(final String email)
+    {
+        return userRepository.delete(email)
+                .flatMap(isDeleted -> isDeleted ? Mono.empty() : Mono.error(new UserNotDeletedException(email)));
+    }
+}
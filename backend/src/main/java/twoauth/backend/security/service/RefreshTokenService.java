@@ -0,0 +1,162 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import twoauth.backend.security.model.RefreshToken;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.repository.RefreshTokenRepository;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Issues the refresh tokens at the login and rotates them on every use, see {@link RefreshToken}.
+ * <br/>
+ * A token is 256 random bits and only its SHA-256 hash is saved: a slow hash adds nothing to a value that cannot
+ * be guessed. A token used again after the reuse interval was copied, its whole family is deleted and both the user
+ * and the thief must log in again. The reuse interval tolerates many API Gateway instances refreshing the same session:
+ * they all get the same successor, an HMAC of the used token keyed with the salt saved at its first use.
+ */
+@Service
+@Slf4j
+class RefreshTokenService
+{
+    private static final int TOKEN_SIZE_IN_BYTES = 32;
+    // Base64URL without padding of the token bytes
+    private static final int TOKEN_LENGTH = 43;
+
+    private final long sessionTimeValidityInMillis;
+    private final long reuseIntervalInMillis;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final SecureRandom random = new SecureRandom();
+    private final Counter reuseCounter;
+    private volatile boolean isIndexed = false;
+
+    public RefreshTokenService(
+            @Value("${2Auth.jwt.session-time-validity-in-millis:86400000}") long sessionTVM,
+            @Value("${2Auth.jwt.refresh-token.reuse-interval-in-millis:5000}") long reuseInterval,
+            final RefreshTokenRepository refreshTokenRepository,
+            final MeterRegistry meterRegistry
+    ) {
+        this.sessionTimeValidityInMillis = (sessionTVM < 1) ? 86_400_000L : sessionTVM;
+        this.reuseIntervalInMillis = (reuseInterval < 0) ? 5000L : reuseInterval;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.reuseCounter = Counter.builder("twoauth.refresh_token.reuses")
+                .description("Refresh tokens used again, their family deleted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts a new family, valid for the session time validity.
+     * @return the opaque token, or null if it was not saved.
+     */
+    @Nullable
+    String issue(final User user, final long nowInMillis)
+    {
+        if (! isIndexed) {
+            try {
+                refreshTokenRepository.ensureIndexes();
+                isIndexed = true;
+            }
+            catch (Exception e) {
+                log.warn("Refresh token indexes not created: {}", e.getMessage());
+            }
+        }
+        final String token = newRandomValue();
+        final var expireAt = new Date(nowInMillis + sessionTimeValidityInMillis);
+        return refreshTokenRepository.insert(new RefreshToken(hash(token), UUID.randomUUID().toString(),
+                user.getUsername(), user.getTokenVersion(), null, null, expireAt)) ? token : null;
+    }
+
+    /**
+     * @return the used token as it was before this use, with the salt of its successor, or null if it is unknown,
+     * expired or used again (then its family is deleted). A token used again inside the reuse interval keeps
+     * its first use: it must not be rotated again.
+     */
+    @Nullable
+    RefreshToken use(final String token, final long nowInMillis)
+    {
+        if (token.length() != TOKEN_LENGTH)
+            return null;
+
+        final String successorSalt = newRandomValue();
+        RefreshToken used = refreshTokenRepository.findAndMarkUsed(hash(token), new Date(nowInMillis), successorSalt);
+        // not yet deleted by the TTL index
+        if (used == null || nowInMillis >= used.expireAt().getTime())
+            return null;
+
+        if (used.usedAt() != null && nowInMillis - used.usedAt().getTime() > reuseIntervalInMillis) {
+            final long deleted = refreshTokenRepository.deleteFamily(used.familyId());
+            reuseCounter.increment();
+            log.warn("Refresh token of User {} used again, {} tokens of its family deleted.", used.email(), deleted);
+            return null;
+        }
+        if (used.usedAt() == null)
+            used = new RefreshToken(used.id(), used.familyId(), used.email(), used.tokenVersion(), null, successorSalt,
+                    used.expireAt());
+        return used;
+    }
+
+    /**
+     * Saves the successor at the first use only, a use inside the reuse interval gets the same successor.
+     * If the successor is not saved, the used token can be used again.
+     * @param token the opaque value of the used token.
+     * @return the opaque token that replaces the used one in its family, or null if it was not saved.
+     */
+    @Nullable
+    String rotate(final RefreshToken used, final String token)
+    {
+        if (used.usedAt() != null)
+            // a token used before the successors were derived has no salt
+            return (used.successorSalt() == null) ? null : successorOf(token, used.successorSalt());
+
+        final String successor = successorOf(token, used.successorSalt());
+        if (refreshTokenRepository.insert(new RefreshToken(hash(successor), used.familyId(), used.email(),
+                used.tokenVersion(), null, null, used.expireAt())))
+            return successor;
+
+        // otherwise the next refresh with the used token would delete the family
+        refreshTokenRepository.markUnused(used.id());
+        return null;
+    }
+
+    private String newRandomValue() {
+        final byte[] bytes = new byte[TOKEN_SIZE_IN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String successorOf(final String token, final String successorSalt) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(successorSalt.getBytes(StandardCharsets.US_ASCII), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    mac.doFinal(token.getBytes(StandardCharsets.US_ASCII)));
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hash(final String token) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package twoauth.backend.security.service;
+
+import org.springframework.boot.ssl.SslBundle;
+import twoauth.backend.security.model.StoredJwtKey;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.SecureRandom;
+import java.security.UnrecoverableKeyException;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The signing keys sealed with AES-GCM in a local file. The file is written to a temporary file
+ * and moved over the old one, so that a crash never leaves it half written.
+ * <br/>
+ * Layout: version (1 byte), IV (12 bytes), then the ciphertext and the tag of the number of keys
+ * followed by the id, algorithm, secret, public key, activeFrom and expireAt of each key.
+ * The files of version 1 have no algorithm and public key, their keys are HS512.
+ */
+final class SealedJwtKeyFile
+{
+    private static final byte VERSION = 2;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_IN_BITS = 128;
+    private static final int MAX_KEYS = 1024;
+    private static final byte[] HKDF_INFO = "2Auth JWT key file".getBytes(UTF_8);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path path;
+    private final SecretKey masterKey;
+
+    SealedJwtKeyFile(final Path path, final SecretKey masterKey) {
+        this.path = path.toAbsolutePath();
+        this.masterKey = masterKey;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return empty if the file does not exist.
+     * @throws GeneralSecurityException if the file was sealed with another master key or was modified.
+     */
+    Optional<List<StoredJwtKey>> read() throws IOException, GeneralSecurityException
+    {
+        if (! Files.exists(path))
+            return Optional.empty();
+
+        final byte[] sealed = Files.readAllBytes(path);
+        final byte version = (sealed.length > 0) ? sealed[0] : 0;
+        if (sealed.length <= 1 + IV_LENGTH || version < 1 || version > VERSION)
+            throw new IOException("Unknown format of " + path);
+
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_LENGTH_IN_BITS, sealed, 1, IV_LENGTH));
+        cipher.updateAAD(sealed, 0, 1);
+        final byte[] plaintext = cipher.doFinal(sealed, 1 + IV_LENGTH, sealed.length - 1 - IV_LENGTH);
+
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(plaintext))) {
+            final int size = in.readInt();
+            if (size < 0 || size > MAX_KEYS)
+                throw new IOException("Unknown format of " + path);
+
+            final List<StoredJwtKey> keys = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                final String id = in.readUTF();
+                final String algorithm = (version == 1) ? null : in.readUTF();
+                final byte[] secret = readBytes(in);
+                final byte[] publicKey = (version == 1) ? new byte[0] : readBytes(in);
+                keys.add(new StoredJwtKey(id, algorithm, secret, (publicKey.length == 0) ? null : publicKey,
+                        new Date(in.readLong()), new Date(in.readLong()), false));
+            }
+            return Optional.of(keys);
+        }
+        finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    void write(final List<StoredJwtKey> keys) throws IOException, GeneralSecurityException
+    {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(keys.size());
+            for (final StoredJwtKey key : keys) {
+                out.writeUTF(key.id());
+                out.writeUTF((key.algorithm() == null) ? JwtSignatureAlgorithm.HS512.name() : key.algorithm());
+                writeBytes(out, key.secret());
+                writeBytes(out, (key.publicKey() == null) ? new byte[0] : key.publicKey());
+                out.writeLong(key.activeFrom().getTime());
+                out.writeLong(key.expireAt().getTime());
+            }
+        }
+        final byte[] plaintext = buffer.toByteArray();
+
+        final byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(TAG_LENGTH_IN_BITS, iv));
+        cipher.updateAAD(new byte[] { VERSION });
+        final byte[] ciphertext;
+        try {
+            ciphertext = cipher.doFinal(plaintext);
+        }
+        finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+
+        final Path directory = path.getParent();
+        Files.createDirectories(directory);
+        final Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp", ownerOnly(directory));
+        try {
+            try (final OutputStream out = Files.newOutputStream(temporary)) {
+                out.write(VERSION);
+                out.write(iv);
+                out.write(ciphertext);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Derives an AES-256 key with HKDF-SHA256 from the key entry of the SSL bundle,
+     * usually the private key of the TLS certificate: the master key changes only if that key changes.
+     */
+    static SecretKey deriveMasterKey(final SslBundle bundle) throws GeneralSecurityException {
+        return deriveMasterKey(bundle, HKDF_INFO);
+    }
+
+    /**
+     * @param info a different info derives an independent master key from the same key entry.
+     */
+    static SecretKey deriveMasterKey(final SslBundle bundle, final byte[] info) throws GeneralSecurityException
+    {
+        final KeyStore keyStore = bundle.getStores().getKeyStore();
+        if (keyStore == null)
+            throw new KeyStoreException("The SSL bundle has no key store");
+
+        final String password = Optional.ofNullable(bundle.getKey().getPassword())
+                .orElse(bundle.getStores().getKeyStorePassword());
+        final char[] passwordChars = (password == null) ? new char[0] : password.toCharArray();
+
+        String alias = bundle.getKey().getAlias();
+        if (alias == null) {
+            for (final String entry : Collections.list(keyStore.aliases())) {
+                if (keyStore.isKeyEntry(entry)) {
+                    alias = entry;
+                    break;
+                }
+            }
+        }
+        final Key key = (alias == null) ? null : keyStore.getKey(alias, passwordChars);
+        if (key == null || key.getEncoded() == null)
+            throw new UnrecoverableKeyException("No key entry in the key store of the SSL bundle");
+
+        final byte[] inputKey = key.getEncoded();
+        final Mac hmac = Mac.getInstance("HmacSHA256");
+        try {
+            // extract, with an empty salt
+            hmac.init(new SecretKeySpec(new byte[32], "HmacSHA256"));
+            final byte[] pseudoRandomKey = hmac.doFinal(inputKey);
+            // expand, a single block is 32 bytes
+            hmac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+            hmac.update(info);
+            hmac.update((byte) 1);
+            return new SecretKeySpec(hmac.doFinal(), "AES");
+        }
+        finally {
+            Arrays.fill(inputKey, (byte) 0);
+        }
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static FileAttribute<?>[] ownerOnly(final Path directory) {
+        return directory.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) }
+                : new FileAttribute<?>[0];
+    }
+}
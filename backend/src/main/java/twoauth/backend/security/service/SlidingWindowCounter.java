@@ -0,0 +1,71 @@
+package twoauth.backend.security.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free counter of the events in a sliding window, approximated with two fixed windows:
+ * the count of the previous window is weighted by the part of it still inside the sliding window.
+ * <br/>
+ * The index of the current window and the two counts are packed in one long, updated with compare-and-set.
+ */
+final class SlidingWindowCounter
+{
+    private static final int COUNT_BITS = 16;
+    private static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+
+    // window index (32 bits) | previous count (16 bits) | current count (16 bits)
+    private final AtomicLong state = new AtomicLong();
+    private final long windowInMillis;
+
+    SlidingWindowCounter(final long windowInMillis) {
+        this.windowInMillis = windowInMillis;
+    }
+
+    /**
+     * @return the events in the sliding window ending at {@code nowInMillis}, this one included.
+     */
+    int incrementAndGet(final long nowInMillis)
+    {
+        final int window = getWindow(nowInMillis);
+        long current, next;
+        do {
+            current = state.get();
+            next = roll(current, window);
+            if ((next & MAX_COUNT) < MAX_COUNT)
+                ++next;
+        }
+        while (! state.compareAndSet(current, next));
+        return estimate(next, nowInMillis);
+    }
+
+    /**
+     * @return the events in the sliding window ending at {@code nowInMillis}.
+     */
+    int get(final long nowInMillis) {
+        return estimate(roll(state.get(), getWindow(nowInMillis)), nowInMillis);
+    }
+
+    private int getWindow(final long nowInMillis) {
+        return (int) (nowInMillis / windowInMillis);
+    }
+
+    /**
+     * @return the state moved to {@code window}: the current count becomes the previous one if the windows are adjacent.
+     */
+    private static long roll(final long state, final int window)
+    {
+        final int stateWindow = (int) (state >>> (2 * COUNT_BITS));
+        if (stateWindow == window)
+            return state;
+
+        final long previousCount = (stateWindow == window - 1) ? (state & MAX_COUNT) : 0;
+        return ((long) window << (2 * COUNT_BITS)) | (previousCount << COUNT_BITS);
+    }
+
+    private int estimate(final long state, final long nowInMillis)
+    {
+        final double previousWeight = 1.0 - (double) (nowInMillis % windowInMillis) / windowInMillis;
+        final long previousCount = (state >>> COUNT_BITS) & MAX_COUNT;
+        return (int) (previousCount * previousWeight) + (int) (state & MAX_COUNT);
+    }
+}
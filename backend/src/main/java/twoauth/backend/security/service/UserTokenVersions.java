@@ -0,0 +1,153 @@
+package twoauth.backend.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import twoauth.backend.security.repository.UserSecurityRepository;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
+
+/**
+ * The current token version of the users, compared with the "tokenVersion" claim of every JWS:
+ * a JWS with an older version, or of a user that does not exist anymore, is rejected.
+ * Incrementing the version of a user invalidates all its JWS at once.
+ * <br/>
+ * The versions are kept in a bounded cache and read again from MongoDB every refresh interval:
+ * a version incremented by another instance is seen after at most the refresh interval.
+ * <br/>
+ * While MongoDB cannot be read, the last known version of a cached user is kept:
+ * only the users whose version is not cached are rejected.
+ */
+@Component
+@Slf4j
+public class UserTokenVersions
+{
+    private static final long USER_NOT_FOUND = -1L;
+
+    private final UserSecurityRepository userRepository;
+    private final LoadingCache<String, Long> versions;
+    private final ThreadPoolExecutor reloadExecutor;
+
+    public UserTokenVersions(
+            @Value("${2Auth.jwt.token-version.maximum-size:10000}") long maximumSize,
+            @Value("${2Auth.jwt.token-version.refresh-interval-in-millis:30000}") long refreshInterval,
+            final UserSecurityRepository userRepository,
+            final MeterRegistry meterRegistry
+    ) {
+        final Duration refreshIntervalDuration = Duration.ofMillis((refreshInterval < 1) ? 30_000L : refreshInterval);
+        this.userRepository = userRepository;
+        // a single thread, so that a slow MongoDB never holds the threads of the common pool;
+        // a refresh rejected by the full queue is tried again on the next check
+        this.reloadExecutor = new ThreadPoolExecutor(
+                1,
+                1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000),
+                runnable -> {
+                    final var thread = new Thread(runnable, "token-versions-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.versions = Caffeine.newBuilder()
+                .maximumSize((maximumSize < 0) ? 10_000L : maximumSize)
+                // read again in background, on the first check after the refresh interval
+                .refreshAfterWrite(refreshIntervalDuration)
+                // a version not checked for long is never trusted
+                .expireAfterWrite(refreshIntervalDuration.multipliedBy(2))
+                .executor(reloadExecutor)
+                .recordStats()
+                .build(new TokenVersionLoader(userRepository));
+        // cache.gets{result=hit|miss}, cache.evictions, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "users.token-versions");
+        new ExecutorServiceMetrics(reloadExecutor, "users.token-versions.reload", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Never blocks.
+     * @return true if {@link #isCurrent} answers without reading MongoDB.
+     */
+    public boolean isCached(final String email) {
+        return versions.getIfPresent(email) != null;
+    }
+
+    /**
+     * Reads MongoDB if the version of the user is not cached.
+     * If MongoDB cannot be read and the version is not cached, the version is considered old.
+     */
+    public boolean isCurrent(final String email, final long tokenVersion)
+    {
+        final long currentVersion;
+        try {
+            currentVersion = versions.get(email);
+        }
+        catch (Exception e) {
+            log.warn(SAMPLED, "Token version of User {} not read: {}", email, e.getMessage());
+            return false;
+        }
+        // a newer version is signed after an increment not yet seen by this instance
+        return currentVersion != USER_NOT_FOUND && tokenVersion >= currentVersion;
+    }
+
+    /**
+     * Invalidates every JWS issued to the user.
+     * @return the incremented version, or empty if the user does not exist.
+     */
+    public OptionalLong increment(final String email)
+    {
+        final OptionalLong newVersion = userRepository.incrementTokenVersion(email);
+        newVersion.ifPresent(version -> versions.put(email, version));
+        return newVersion;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        reloadExecutor.shutdown();
+    }
+
+    /**
+     * Reads the version of a user from MongoDB.
+     * A failed reload keeps the last known version, which is read again after the refresh interval.
+     */
+    static class TokenVersionLoader implements CacheLoader<String, Long>
+    {
+        private final UserSecurityRepository userRepository;
+
+        TokenVersionLoader(final UserSecurityRepository userRepository) {
+            this.userRepository = userRepository;
+        }
+
+        @Override
+        public Long load(final String email) {
+            return userRepository.findTokenVersionById(email).orElse(USER_NOT_FOUND);
+        }
+
+        @Override
+        public Long reload(final String email, final Long lastKnownVersion)
+        {
+            try {
+                return load(email);
+            }
+            catch (Exception e) {
+                log.warn(SAMPLED, "Token version of User {} not read again, the last known one is kept: {}",
+                        email, e.getMessage());
+                return lastKnownVersion;
+            }
+        }
+    }
+}
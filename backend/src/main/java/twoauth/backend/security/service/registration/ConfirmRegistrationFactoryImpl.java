@@ -1,21 +1,21 @@
 package twoauth.backend.security.service.registration;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import twoauth.backend.security.repository.EmailOutboxRepository;
 import twoauth.backend.security.service.registration.confirmtypes.*;
 
 @Service
 public class ConfirmRegistrationFactoryImpl implements ConfirmRegistrationFactory
 {
-    private final JavaMailSender mailSender;
+    private final EmailOutboxRepository outboxRepository;
     private final ConfirmType confirmType;
 
     public ConfirmRegistrationFactoryImpl(
             @Value("${2Auth.registration-confirmation:TEST_FOR_API}") String confirmType,
-            JavaMailSender mailSender
+            EmailOutboxRepository outboxRepository
     ) {
-        this.mailSender = mailSender;
+        this.outboxRepository = outboxRepository;
         this.confirmType = ConfirmType.valueOf(confirmType);
     }
 
@@ -23,8 +23,8 @@ public class ConfirmRegistrationFactoryImpl implements ConfirmRegistrationFactor
     public ConfirmRegistration newConfirmRegistration(final String userEmail) {
         return switch (confirmType) {
             case NONE -> new None();
-            case EMAIL_FOR_FRONTEND -> new EmailForFrontend(mailSender, userEmail);
-            case EMAIL_FOR_API -> new EmailForApi(mailSender, userEmail);
+            case EMAIL_FOR_FRONTEND -> new EmailForFrontend(outboxRepository, userEmail);
+            case EMAIL_FOR_API -> new EmailForApi(outboxRepository, userEmail);
             case TEST_FOR_FRONTEND -> new TestForFrontend();
             case TEST_FOR_API -> new TestForApi();
         };
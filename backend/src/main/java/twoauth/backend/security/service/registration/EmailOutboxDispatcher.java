@@ -0,0 +1,215 @@
+package twoauth.backend.security.service.registration;
+
+import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import twoauth.backend.security.model.OutboxEmail;
+import twoauth.backend.security.repository.EmailOutboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the emails of the outbox in the background, so that the registrations
+ * never wait for the mail server.
+ * <br/>
+ * The emails are sent in batches over a single SMTP connection, one batch per poll on a thread of its own.
+ * A failed email is retried with exponential backoff, until the maximum number of attempts is reached.
+ * <br/>
+ * Created only when the registrations are confirmed by email.
+ */
+@Component
+@ConditionalOnExpression(EmailOutboxDispatcher.IS_EMAIL_CONFIRMATION)
+@Slf4j
+public class EmailOutboxDispatcher
+{
+    public static final String IS_EMAIL_CONFIRMATION =
+            "'${2Auth.registration-confirmation:TEST_FOR_API}'.startsWith('EMAIL_')";
+
+    private final EmailOutboxRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long claimTimeInMillis;
+    private final long retryBaseDelayInMillis;
+    private final long retryMaxDelayInMillis;
+    private final Meter.MeterProvider<Timer> sendTimers;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter discardedCounter;
+    // only read and written by the single scheduler thread
+    private boolean isIndexed = false;
+
+    public EmailOutboxDispatcher(
+            @Value("${2Auth.email-outbox.poll-interval-in-millis:2000}") long pollInterval,
+            @Value("${2Auth.email-outbox.batch-size:50}") int batchSize,
+            @Value("${2Auth.email-outbox.max-attempts:10}") int maxAttempts,
+            @Value("${2Auth.email-outbox.retry-base-delay-in-millis:30000}") long retryBaseDelay,
+            @Value("${2Auth.email-outbox.retry-max-delay-in-millis:3600000}") long retryMaxDelay,
+            final EmailOutboxRepository outboxRepository,
+            final JavaMailSender mailSender,
+            @Qualifier("emailOutboxScheduler") final TaskScheduler taskScheduler,
+            final MeterRegistry meterRegistry
+    ) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.batchSize = (batchSize < 1) ? 50 : batchSize;
+        this.maxAttempts = (maxAttempts < 1) ? 10 : maxAttempts;
+        this.retryBaseDelayInMillis = (retryBaseDelay < 1) ? 30_000L : retryBaseDelay;
+        this.retryMaxDelayInMillis = Math.max(this.retryBaseDelayInMillis, retryMaxDelay);
+        // a claimed email is sent again by someone else only if its dispatcher dies
+        this.claimTimeInMillis = Math.max(60_000L, this.retryBaseDelayInMillis);
+        this.sendTimers = Timer.builder("twoauth.email.dispatch")
+                .description("Time spent to send a batch of emails over one connection, by outcome")
+                .withRegistry(meterRegistry);
+        this.sentCounter = newOutboxCounter(meterRegistry, "sent");
+        this.retriedCounter = newOutboxCounter(meterRegistry, "retried");
+        this.discardedCounter = newOutboxCounter(meterRegistry, "discarded");
+
+        final Duration pollIntervalDuration = Duration.ofMillis((pollInterval < 1) ? 2000L : pollInterval);
+        taskScheduler.scheduleWithFixedDelay(
+                this::dispatchBatch,
+                Instant.now().plus(pollIntervalDuration),
+                pollIntervalDuration
+        );
+    }
+
+    private void dispatchBatch()
+    {
+        if (! isIndexed) {
+            try {
+                outboxRepository.ensureIndexes();
+                isIndexed = true;
+            }
+            catch (Exception e) {
+                log.warn("Outbox indexes not created: {}", e.getMessage());
+            }
+        }
+        try {
+            // one batch per poll: a full outbox is drained over the next polls
+            dispatch();
+        }
+        catch (Exception e) {
+            // never let an exception cancel the scheduled task
+            log.warn("Outbox not dispatched: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims and sends one batch of due emails.
+     * @return the number of emails claimed.
+     */
+    int dispatch()
+    {
+        final var now = new Date();
+        final var leaseUntil = new Date(now.getTime() + claimTimeInMillis);
+
+        final Map<MimeMessage, OutboxEmail> batch = new LinkedHashMap<>();
+        final List<String> toDelete = new ArrayList<>();
+        int claimed = 0;
+        OutboxEmail email;
+        while (claimed < batchSize && (email = outboxRepository.claimNext(now, leaseUntil)) != null) {
+            ++claimed;
+            try {
+                batch.put(toMimeMessage(email), email);
+            }
+            catch (MailException e) {
+                // a malformed email will never be sent
+                log.warn("Email discarded: {} - {}", email, e.getMessage());
+                toDelete.add(email.id());
+                discardedCounter.increment();
+            }
+        }
+        if (batch.isEmpty()) {
+            outboxRepository.deleteAll(toDelete);
+            return claimed;
+        }
+
+        Set<MimeMessage> failed = Set.of();
+        final long startInNanos = System.nanoTime();
+        try {
+            // a single connection to the mail server for the whole batch
+            mailSender.send(batch.keySet().toArray(MimeMessage[]::new));
+        }
+        catch (MailSendException e) {
+            failed = new HashSet<>();
+            for (final Object failedMessage : e.getFailedMessages().keySet())
+                if (failedMessage instanceof MimeMessage mimeMessage)
+                    failed.add(mimeMessage);
+            log.warn("Emails not sent: {}/{} failed - {}", failed.size(), batch.size(), e.getMessage());
+        }
+        catch (MailException e) {
+            failed = batch.keySet();
+            log.warn("Emails not sent: {}", e.getMessage());
+        }
+        final String outcome = failed.isEmpty() ? "sent" : (failed.size() < batch.size()) ? "partially_failed" : "failed";
+        sendTimers.withTag("outcome", outcome).record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+
+        for (final var entry : batch.entrySet()) {
+            final OutboxEmail sent = entry.getValue();
+            if (!failed.contains(entry.getKey())) {
+                toDelete.add(sent.id());
+                sentCounter.increment();
+                continue;
+            }
+            final int attempts = sent.attempts() + 1;
+            if (attempts >= maxAttempts) {
+                log.warn("Email discarded after {} attempts: {}", attempts, sent);
+                toDelete.add(sent.id());
+                discardedCounter.increment();
+            }
+            else {
+                retriedCounter.increment();
+                outboxRepository.retryLater(sent.id(), attempts, new Date(now.getTime() + retryDelayInMillis(attempts)));
+            }
+        }
+        outboxRepository.deleteAll(toDelete);
+        return claimed;
+    }
+
+    /**
+     * @return the base delay doubled for each attempt already made, up to the maximum delay.
+     */
+    long retryDelayInMillis(final int attempts)
+    {
+        final int shift = Math.min(attempts - 1, 30);
+        final long delay = retryBaseDelayInMillis << shift;
+        return (delay <= 0 || delay > retryMaxDelayInMillis) ? retryMaxDelayInMillis : delay;
+    }
+
+    private MimeMessage toMimeMessage(final OutboxEmail email)
+    {
+        final MimeMessage mimeMessage = mailSender.createMimeMessage();
+        final var message = new MimeMailMessage(mimeMessage);
+        message.setTo(email.to());
+        message.setSubject(email.subject());
+        message.setText(email.text());
+        return mimeMessage;
+    }
+
+    private static Counter newOutboxCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("twoauth.email.outbox")
+                .description("Emails of the outbox sent, retried later or discarded")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String toString() {
+        return "EmailOutboxDispatcher{}";
+    }
+}
@@ -1,40 +1,88 @@
 package twoauth.backend.security.service.registration;
 
+import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import twoauth.backend.security.model.User;
 import twoauth.backend.security.repository.UserSecurityRepository;
+import twoauth.backend.security.service.PasswordHashingExecutor;
 import twoauth.backend.security.service.registration.confirmtypes.None;
 
 import java.util.Date;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static twoauth.backend.logging.SamplingTurboFilter.SAMPLED;
 
 @Service
+@Slf4j
 class RegistrationServiceImpl implements RegistrationService
 {
     private final PasswordEncoder passwordEncoder;
     private final UserSecurityRepository userRepository;
     private final ConfirmRegistrationFactory confirmRegistrationFactory;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final Meter.MeterProvider<Timer> registrationTimers;
 
     public RegistrationServiceImpl(
             final PasswordEncoder passwordEncoder,
             final UserSecurityRepository userRepository,
-            final ConfirmRegistrationFactory confirmRegistrationFactory
+            final ConfirmRegistrationFactory confirmRegistrationFactory,
+            final PasswordHashingExecutor passwordHashingExecutor,
+            final MeterRegistry meterRegistry
     ) {
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
         this.confirmRegistrationFactory = confirmRegistrationFactory;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.registrationTimers = Timer.builder("twoauth.registration")
+                .description("Time spent by a registration, by outcome")
+                .withRegistry(meterRegistry);
     }
 
+    /**
+     * Times the registration: {@code twoauth.registration{outcome=registered|not_registered|unavailable|error}}.
+     */
     @Override
     public boolean registration(final User.RegistrationDto userDto)
     {
+        final long startInNanos = System.nanoTime();
+        String outcome = "error";
+        try {
+            final boolean isRegistered = register(userDto);
+            outcome = isRegistered ? "registered" : "not_registered";
+            return isRegistered;
+        }
+        catch (RejectedExecutionException e) {
+            outcome = "unavailable";
+            throw e;
+        }
+        finally {
+            registrationTimers.withTag("outcome", outcome).record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean register(final User.RegistrationDto userDto)
+    {
+        final String encodedPassword;
+        try {
+            encodedPassword = passwordHashingExecutor.call(() -> passwordEncoder.encode(userDto.getPassword()));
+        }
+        catch (RejectedExecutionException e) {
+            userDto.eraseCredentials();
+            throw e;
+        }
+
         final var now = new Date();
         final ConfirmRegistration confirmRegistration =
                 confirmRegistrationFactory.newConfirmRegistration(userDto.getEmail());
 
         final User user = new User(
                 userDto.getEmail(),
-                passwordEncoder.encode(userDto.getPassword()),
+                encodedPassword,
                 userDto.getFirstName(),
                 userDto.getLastName(),
                 now,
@@ -49,7 +97,7 @@ class RegistrationServiceImpl implements RegistrationService
         user.eraseCredentials();
         if (isSaved && !confirmRegistration.sendConfirmationRequest()) {
             // TODO handle this specific error
-            System.err.println("User saved but Registration Confirmation not sent.");
+            log.warn(SAMPLED, "User saved but Registration Confirmation not sent.");
             return false;
         }
         return isSaved;
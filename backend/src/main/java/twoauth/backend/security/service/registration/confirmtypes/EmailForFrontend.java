@@ -1,53 +1,39 @@
 package twoauth.backend.security.service.registration.confirmtypes;
 
-import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import lombok.extern.slf4j.Slf4j;
+import twoauth.backend.security.model.OutboxEmail;
+import twoauth.backend.security.repository.EmailOutboxRepository;
 
+@Slf4j
 public final class EmailForFrontend extends JwtsHS512Token
 {
-    private final JavaMailSender mailSender;
+    private final EmailOutboxRepository outboxRepository;
     private final String userEmail;
 
-    public EmailForFrontend(final JavaMailSender mailSender, final String userEmail) {
+    public EmailForFrontend(final EmailOutboxRepository outboxRepository, final String userEmail) {
         super();
-        this.mailSender = mailSender;
+        this.outboxRepository = outboxRepository;
         this.userEmail = userEmail;
     }
 
+    /**
+     * Queues the email in the outbox, it will be sent in background.
+     */
     @Override
     public boolean sendConfirmationRequest()
     {
-        System.out.printf("EmailForFrontend: %s%n", uniqueSecureToken);
+        final OutboxEmail email = OutboxEmail.of(
+                userEmail,
+                "Confirm Registration",
+                String.format("Insert this registration token in the next login: %s", uniqueSecureToken)
+        );
 
-        final SimpleMailMessage emailMessage = new SimpleMailMessage();
-        emailMessage.setTo(userEmail);
-        emailMessage.setSubject("Confirm Registration");
-        emailMessage.setText(String.format("Insert this registration token in the next login: %s", uniqueSecureToken));
-
-        try {
-            mailSender.send(emailMessage);
-        }
-        catch (MailException e) {
-            System.err.printf("EmailForFrontend JavaMailSender.send: %s - %s%n", userEmail, e.getMessage());
+        if (!outboxRepository.enqueue(email)) {
+            log.warn("Registration Confirmation of User {} not queued.", userEmail);
             return false;
         }
-        System.out.printf("Email sent: %s%n", emailMessage);
-        /*try {
-            executor.submit(() -> {
-                try {
-                    mailSender.send(emailMessage);
-                    System.out.printf("Email sent: %s%n", emailMessage);
-                }
-                catch (MailException e) {
-                    System.err.printf("EmailForFrontend JavaMailSender.send: %s - %s%n", userEmail, e.getMessage());
-                }
-            });
-        }
-        catch (RejectedExecutionException e) {
-            System.err.printf("EmailForFrontend executor.submit: %s - %s%n", userEmail, e.getMessage());
-            return false;
-        }*/
+        log.debug("Registration Confirmation of User {} queued: {}", userEmail, email.id());
+
         return true;
     }
 
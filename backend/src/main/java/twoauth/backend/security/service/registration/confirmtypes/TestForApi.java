@@ -1,14 +1,20 @@
 package twoauth.backend.security.service.registration.confirmtypes;
 
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 public final class TestForApi extends JwtsHS512Token
 {
     public TestForApi() {
         super();
     }
 
+    /**
+     * Only for testing: the token is logged instead of being sent.
+     */
     @Override
     public boolean sendConfirmationRequest() {
-        System.out.printf("TestForApi: %s%n", this.uniqueSecureToken);
+        log.info("TestForApi: {}", this.uniqueSecureToken);
         return true;
     }
 
@@ -1,14 +1,20 @@
 package twoauth.backend.security.service.registration.confirmtypes;
 
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 public final class TestForFrontend extends JwtsHS512Token
 {
     public TestForFrontend() {
         super();
     }
 
+    /**
+     * Only for testing: the token is logged instead of being sent.
+     */
     @Override
     public boolean sendConfirmationRequest() {
-        System.out.printf("TestForFrontend: %s%n", this.uniqueSecureToken);
+        log.info("TestForFrontend: {}", this.uniqueSecureToken);
         return true;
     }
 
@@ -0,0 +1,45 @@
+package twoauth.backend.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplingTurboFilterTests
+{
+    private Logger logger;
+    private SamplingTurboFilter filter;
+
+    @BeforeEach
+    void setup() {
+        logger = new LoggerContext().getLogger("test");
+        logger.setLevel(Level.INFO);
+        filter = new SamplingTurboFilter();
+        filter.setMaxPerInterval(2);
+        filter.setIntervalInMillis(60_000L);
+    }
+
+    @Test
+    void decide_DeniesSampledEvents_WhenMaxPerIntervalIsReached()
+    {
+        assertEquals(FilterReply.NEUTRAL, filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.WARN, "a {}", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.WARN, "a {}", null, null));
+        assertEquals(FilterReply.DENY, filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.WARN, "a {}", null, null));
+        // another message has its own counter
+        assertEquals(FilterReply.NEUTRAL, filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.WARN, "b {}", null, null));
+    }
+
+    @Test
+    void decide_ReturnsNeutral_WhenEventIsNotSampledOrLevelIsDisabled()
+    {
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.WARN, "a {}", null, null));
+            assertEquals(FilterReply.NEUTRAL, filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.DEBUG, "a {}", null, null));
+        }
+        assertEquals(FilterReply.NEUTRAL, filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.WARN, "a {}", null, null));
+    }
+}
@@ -0,0 +1,179 @@
+package twoauth.backend.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import twoauth.backend.security.model.AuthRequest;
+import twoauth.backend.security.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential tests: the Validator must give the same result of the {@link LegacyValidator}
+ * on hand-picked edge cases and on random inputs built from the characters each check cares about.
+ */
+class ValidatorTests
+{
+    private static final int RANDOM_INPUTS = 200_000;
+
+    private static final List<String> EMAILS = List.of(
+            "", " ", "      ", "a@b.it", "test@email.com", "test.user@email.com", "test_user-1@sub.email.com",
+            "test@email", "test@com", "test@it", "test@arpa", "test@localhost", "test@xn--p1ai", "test@email.xn--p1ai",
+            ".test@email.com", "test.@email.com", "te..st@email.com", "test@.email.com", "test@email.com.",
+            "test@email..com", "test@-email.com", "test@email-.com", "test@e-mail.com", "test@em_ail.com",
+            "test@email.c0m", "test@email.1com", "test@1email.com", "test@@email.com", "te@st@email.com",
+            "@email.com", "test@", "testemail.com", "Test@email.com", "test@email.COM", "test @email.com",
+            "test@email.com ", "test@email.notatld", "test@email.c", "test@email.-com", "test@email.co-",
+            "test@" + "a".repeat(63) + ".it", "a@" + "b".repeat(44) + ".it", "a@" + "b".repeat(45) + ".it"
+    );
+
+    private static final List<String> NAMES = List.of(
+            "", " ", "   ", "Ab", "Abc", "Ab c", "Ab  c", " Abc", "Abc ", "A b", "Ab-c", "Abè", "A".repeat(40),
+            "A".repeat(41), "abc", "ABC", "Ab\tc", "  A  "
+    );
+
+    private static final List<String> TOKENS = List.of(
+            "", "    ", "AAAA", "AAA=", "AA==", "A===", "====", "AA=A", "A=AA", "=AAA", "AAAA====", "AAAAAA==",
+            "AAAAAAA=", "AAAAA===", "AA==AAAA", "AAA", "AAAAA", "ab+/", "ab-_", "ab c", "A".repeat(128),
+            "A".repeat(132), "A".repeat(126) + "=="
+    );
+
+    private static final List<String> PASSWORDS = List.of(
+            "", "a2R_a2R_", "a2R_a2R", "aa22RR__", "aa22RR_", "a22RR__", "aa2RR__", "aa22R__", "AA22RR__",
+            "aa22rr__", "aaaaaaaa", "ààRR22__", "aa22RR  ", "aa٢٢RR__", "a".repeat(121), "aB1_".repeat(30)
+    );
+
+    @Test
+    void validateEmail_ReturnsLegacyResult_WhenEmailIsAnEdgeCase() {
+        assertEquals(LegacyValidator.validateEmail(null), Validator.validateEmail(null));
+        for (final String email : EMAILS)
+            assertEquals(LegacyValidator.validateEmail(email), Validator.validateEmail(email), email);
+    }
+
+    @Test
+    void validateEmail_ReturnsLegacyResult_WhenEmailIsRandom() {
+        final var random = new Random(42);
+        final String[] parts = { "a", "z", "0", "9", ".", "_", "-", "@", "com", "it", "xn--p1ai", "email", "A", " " };
+        for (int i = 0; i < RANDOM_INPUTS; ++i) {
+            final var email = new StringBuilder();
+            final int size = 1 + random.nextInt(12);
+            for (int j = 0; j < size; ++j)
+                email.append(parts[random.nextInt(parts.length)]);
+
+            final String value = email.toString();
+            assertEquals(LegacyValidator.validateEmail(value), Validator.validateEmail(value), value);
+        }
+    }
+
+    @Test
+    void validateName_ReturnsLegacyResult_WhenNameIsAnEdgeCaseOrRandom() {
+        final List<String> names = new ArrayList<>(NAMES);
+        final var random = new Random(42);
+        final char[] chars = { 'a', 'Z', ' ', ' ', '-', '\t', 'é' };
+        for (int i = 0; i < RANDOM_INPUTS; ++i) {
+            final char[] name = new char[random.nextInt(8)];
+            for (int j = 0; j < name.length; ++j)
+                name[j] = chars[random.nextInt(chars.length)];
+            names.add(new String(name));
+        }
+
+        for (final String prefix : List.of("First", "Last", "Middle")) {
+            assertEquals(LegacyValidator.validateName(null, prefix), Validator.validateName(null, prefix));
+            for (final String name : names)
+                assertEquals(LegacyValidator.validateName(name, prefix), Validator.validateName(name, prefix), name);
+        }
+    }
+
+    @Test
+    void validateBase64OTActivationToken_ReturnsLegacyResult_WhenTokenIsAnEdgeCaseOrRandom() {
+        final List<String> tokens = new ArrayList<>(TOKENS);
+        final var random = new Random(42);
+        final char[] chars = { 'A', 'z', '0', '+', '/', '=', '=', '=', '-', ' ' };
+        for (int i = 0; i < RANDOM_INPUTS; ++i) {
+            final char[] token = new char[4 * random.nextInt(4) + (random.nextInt(8) == 0 ? 1 : 0)];
+            for (int j = 0; j < token.length; ++j)
+                token[j] = chars[random.nextInt(chars.length)];
+            tokens.add(new String(token));
+        }
+
+        assertEquals(LegacyValidator.validateBase64OTActivationToken(null), Validator.validateBase64OTActivationToken(null));
+        for (final String token : tokens) {
+            assertEquals(LegacyValidator.validateBase64OTActivationToken(token),
+                    Validator.validateBase64OTActivationToken(token), token);
+        }
+    }
+
+    @Test
+    void validatePassword_ReturnsLegacyResultAndClearsPassword_WhenPasswordIsAnEdgeCase() {
+        assertEquals(LegacyValidator.validatePassword(null), Validator.validatePassword(null));
+        for (final String password : PASSWORDS) {
+            final char[] legacy = password.toCharArray();
+            final char[] current = password.toCharArray();
+            assertEquals(LegacyValidator.validatePassword(legacy), Validator.validatePassword(current), password);
+            assertArrayEquals(legacy, current);
+        }
+    }
+
+    @Test
+    void validateRegistrationDate_ReturnsLegacyResult_WhenDateIsAnEdgeCase() {
+        final long now = System.currentTimeMillis();
+        final List<Date> dates = Arrays.asList(null, new Date(0), new Date(1704067199999L), new Date(1704067200000L),
+                new Date(now - 1000), new Date(now + 60_000));
+        for (final String prefix : List.of("Creation", "LastUpdate", "Other")) {
+            for (final Date date : dates)
+                assertEquals(LegacyValidator.validateRegistrationDate(date, prefix),
+                        Validator.validateRegistrationDate(date, prefix), String.valueOf(date));
+        }
+    }
+
+    @Test
+    void validatePermissions_ReturnsLegacyResult_WhenPermissionsAreAnEdgeCase() {
+        final List<List<String>> permissionsList = Arrays.asList(
+                null, List.of(), List.of("READ"), Arrays.asList("READ", null), List.of("READ", " "),
+                List.of("A".repeat(50)), List.of("A".repeat(51)), java.util.Collections.nCopies(50, "READ"),
+                java.util.Collections.nCopies(51, "READ")
+        );
+        for (final List<String> permissions : permissionsList)
+            assertEquals(LegacyValidator.validatePermissions(permissions), Validator.validatePermissions(permissions));
+    }
+
+    @Test
+    void validateUser_ReturnsLegacyResult_WhenUserIsAnEdgeCase() {
+        final var now = new Date();
+        final List<User> users = List.of(
+                new User("test@email.com", "a2R_a2R_", "First", "Last", now, now, List.of("READ"), true, null),
+                new User("test@email.com", "a2R_a2R", "First", "Last", now, now, List.of("READ"), true, null),
+                new User("test@email.com", "a2R_a2R_", "First", "Last", now, now, List.of(), true, null),
+                new User("test@email.com", "a2R_a2R_", "First", "Last", now, now, List.of("A".repeat(51)), true, null),
+                new User("test@email.com", "a2R_a2R_", "First", "Last", now, now, List.of("READ"), true, "token"),
+                new User("test@email.com", "a2R_a2R_", "First", "Last", now, now, List.of("READ"), false, null),
+                new User("test@email", "a2R_a2R_", "First", "Last", now, now, List.of("READ"), true, null),
+                new User("test@email.com", "a2R_a2R_", "First", "Last", new Date(0), now, List.of("READ"), true, null)
+        );
+        assertEquals(LegacyValidator.validateUser(null), Validator.validateUser(null));
+        for (final User user : users)
+            assertEquals(LegacyValidator.validateUser(user), Validator.validateUser(user), user.toString());
+    }
+
+    @Test
+    void validateAuthRequest_ReturnsLegacyResult_WhenRequestIsAnEdgeCase() throws Exception {
+        final var objectMapper = new ObjectMapper();
+        final List<String> requests = List.of(
+                "{\"email\": \"test@email.com\", \"password\": \"a2R_a2R_\"}",
+                "{\"email\": \"test@email.com\", \"password\": \"a2R_a2R\"}",
+                "{\"email\": \"test@email\", \"password\": \"a2R_a2R_\"}",
+                "{\"email\": \"test@email.com\", \"password\": \"a2R_a2R_\", \"base64OTActivationToken\": \"AA==\"}",
+                "{\"email\": \"test@email.com\", \"password\": \"a2R_a2R_\", \"base64OTActivationToken\": \"A===\"}"
+        );
+        assertEquals(LegacyValidator.validateAuthRequest(null), Validator.validateAuthRequest(null));
+        for (final String request : requests) {
+            final AuthRequest authRequest = objectMapper.readValue(request, AuthRequest.class);
+            assertEquals(LegacyValidator.validateAuthRequest(authRequest), Validator.validateAuthRequest(authRequest), request);
+        }
+    }
+}
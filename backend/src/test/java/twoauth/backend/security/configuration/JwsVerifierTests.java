@@ -0,0 +1,117 @@
+package twoauth.backend.security.configuration;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import twoauth.backend.security.model.StdJwtClaims;
+import twoauth.backend.security.service.JwtKeyRotationEvent;
+import twoauth.backend.security.service.JwtKeyStore;
+import twoauth.backend.security.service.JwtSigningKey;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwsVerifierTests
+{
+    private static final JwtSigningKey SIGNING_KEY = new JwtSigningKey("kid", Jwts.SIG.HS512.key().build());
+
+    private final JwtKeyStore keyStore = new JwtKeyStore() {
+        private final JwtParser parser = Jwts.parser().verifyWith((SecretKey) SIGNING_KEY.key()).build();
+
+        @Override
+        public JwtSigningKey getSigningKey() {
+            return SIGNING_KEY;
+        }
+
+        @Override
+        public JwtParser getParser() {
+            return parser;
+        }
+    };
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwsVerifier jwsVerifier;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwsVerifier = new JwsVerifier(100, keyStore, new JwsVerificationMetrics(meterRegistry), meterRegistry);
+    }
+
+    private double getVerifications(String result) {
+        return meterRegistry.get("twoauth.jws.verifications").tag("result", result).counter().count();
+    }
+
+    private static String newJws(long expirationInMillis, Object permissions) {
+        return Jwts.builder()
+                .header().keyId(SIGNING_KEY.id()).and()
+                .subject("test@email.com")
+                .expiration(new Date(expirationInMillis))
+                .claim(StdJwtClaims.PERMISSIONS, permissions)
+                .signWith(SIGNING_KEY.key())
+                .compact();
+    }
+
+    @Test
+    void verify_ReturnsSubjectAndPermissions_WhenJwsIsValid()
+    {
+        final long expiration = (System.currentTimeMillis() + 60_000L) / 1000L * 1000L;
+        final VerifiedJws verifiedJws = jwsVerifier.verify(newJws(expiration, List.of("READ", "WRITE")));
+
+        assertNotNull(verifiedJws);
+        assertEquals("test@email.com", verifiedJws.subject());
+        assertEquals(List.of("READ", "WRITE"), verifiedJws.permissions().stream().map(Object::toString).toList());
+        assertEquals(expiration, verifiedJws.expirationInMillis());
+        assertEquals(0L, verifiedJws.tokenVersion());
+    }
+
+    @Test
+    void verify_ReturnsCachedResult_WhenSameJwsIsVerifiedTwice()
+    {
+        final String jws = newJws(System.currentTimeMillis() + 60_000L, List.of("READ"));
+
+        assertSame(jwsVerifier.verify(jws), jwsVerifier.verify(jws));
+    }
+
+    @Test
+    void verify_ParsesJwsAgain_WhenKeyIsRotated()
+    {
+        final String jws = newJws(System.currentTimeMillis() + 60_000L, List.of("READ"));
+        final VerifiedJws first = jwsVerifier.verify(jws);
+
+        jwsVerifier.onKeyRotation(new JwtKeyRotationEvent("new-kid"));
+
+        final VerifiedJws second = jwsVerifier.verify(jws);
+        assertNotNull(second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void verify_ReturnsNull_WhenJwsIsExpired()
+    {
+        assertNull(jwsVerifier.verify(newJws(System.currentTimeMillis() - 1_000L, List.of("READ"))));
+        assertEquals(1.0, getVerifications("expired"));
+    }
+
+    @Test
+    void verify_ReturnsNull_WhenPermissionsAreNotStrings()
+    {
+        assertNull(jwsVerifier.verify(newJws(System.currentTimeMillis() + 60_000L, List.of(1, 2))));
+    }
+
+    @Test
+    void verify_ReturnsNull_WhenSignatureIsInvalid()
+    {
+        final String jws = newJws(System.currentTimeMillis() + 60_000L, List.of("READ"));
+        final String tampered = jws.substring(0, jws.length() - 4) + (jws.endsWith("AAAA") ? "BBBB" : "AAAA");
+
+        assertNull(jwsVerifier.verify(tampered));
+        assertEquals(1.0, getVerifications("invalid_signature"));
+        assertEquals(0.0, getVerifications("malformed"));
+    }
+}
@@ -0,0 +1,60 @@
+package twoauth.backend.security.configuration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordEncoderFactoryTests
+{
+    private static final String PASSWORD = "a2R_a2R_";
+
+    private static PasswordEncoder newEncoder(PasswordEncoderType type, int bcryptStrength) {
+        return PasswordEncoderFactory.newPasswordEncoder(type, bcryptStrength, 1024, 1, 1);
+    }
+
+    @Test
+    void encode_ReturnsHashWithAlgorithmId_WhenAlgorithmIsConfigured()
+    {
+        assertTrue(newEncoder(PasswordEncoderType.BCRYPT, 4).encode(PASSWORD).startsWith("{bcrypt}$2a$04$"));
+        assertTrue(newEncoder(PasswordEncoderType.ARGON2, 4).encode(PASSWORD).startsWith("{argon2}$argon2id$"));
+    }
+
+    @Test
+    void matches_ReturnsTrue_WhenHashHasNoAlgorithmId()
+    {
+        final PasswordEncoder encoder = newEncoder(PasswordEncoderType.BCRYPT, 4);
+        final String legacyHash = new BCryptPasswordEncoder(5).encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, legacyHash));
+        assertTrue(encoder.upgradeEncoding(legacyHash));
+    }
+
+    @Test
+    void upgradeEncoding_ReturnsFalse_WhenHashHasCurrentSettings()
+    {
+        final PasswordEncoder encoder = newEncoder(PasswordEncoderType.BCRYPT, 4);
+
+        assertFalse(encoder.upgradeEncoding(encoder.encode(PASSWORD)));
+    }
+
+    @Test
+    void upgradeEncoding_ReturnsTrue_WhenBCryptCostIsHigherOrLower()
+    {
+        final PasswordEncoder encoder = newEncoder(PasswordEncoderType.BCRYPT, 5);
+
+        assertTrue(encoder.upgradeEncoding(newEncoder(PasswordEncoderType.BCRYPT, 4).encode(PASSWORD)));
+        assertTrue(encoder.upgradeEncoding(newEncoder(PasswordEncoderType.BCRYPT, 6).encode(PASSWORD)));
+    }
+
+    @Test
+    void upgradeEncoding_ReturnsTrue_WhenHashHasAnotherAlgorithm()
+    {
+        final PasswordEncoder bcrypt = newEncoder(PasswordEncoderType.BCRYPT, 4);
+        final String argon2Hash = newEncoder(PasswordEncoderType.ARGON2, 4).encode(PASSWORD);
+
+        assertTrue(bcrypt.matches(PASSWORD, argon2Hash));
+        assertTrue(bcrypt.upgradeEncoding(argon2Hash));
+    }
+}
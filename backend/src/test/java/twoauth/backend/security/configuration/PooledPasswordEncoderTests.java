@@ -0,0 +1,54 @@
+package twoauth.backend.security.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import twoauth.backend.security.service.PasswordHashingExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledPasswordEncoderTests
+{
+    private static final String PASSWORD = "a2R_a2R_";
+
+    // daemon threads, not shut down
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(1, 10, new SimpleMeterRegistry());
+
+    @Test
+    void authenticate_ReadsUserOnCallerThreadAndHashesOnPool_WhenPasswordIsCorrect()
+    {
+        final List<String> threads = new ArrayList<>();
+        final PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        final String hash = bcrypt.encode(PASSWORD);
+        final PasswordEncoder recordingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                threads.add("matches " + Thread.currentThread().getName());
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+        };
+
+        final var authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(email -> {
+            threads.add("lookup " + Thread.currentThread().getName());
+            return User.withUsername(email).password(hash).build();
+        });
+        authenticationProvider.setPasswordEncoder(new PooledPasswordEncoder(recordingEncoder, passwordHashingExecutor));
+
+        assertTrue(authenticationProvider.authenticate(
+                new UsernamePasswordAuthenticationToken("test@email.com", PASSWORD)).isAuthenticated());
+        assertEquals(List.of("lookup " + Thread.currentThread().getName(), "matches password-hashing-1"), threads);
+    }
+}
@@ -0,0 +1,50 @@
+package twoauth.backend.security.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.UserService;
+import twoauth.backend.security.service.UserTokenVersions;
+
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UserControllerTests
+{
+    private static final String EMAIL = "test@email.com";
+
+    private UserTokenVersions tokenVersions;
+    private UserController userController;
+
+    @BeforeEach
+    void setup() {
+        tokenVersions = mock(UserTokenVersions.class);
+        userController = new UserController(mock(UserService.class), mock(JwsRevocationList.class), tokenVersions);
+    }
+
+    @Test
+    void incrementTokenVersion_ReturnsForbidden_WhenCallerIsAnotherUser() throws Exception
+    {
+        final var response = userController.incrementTokenVersion(EMAIL,
+                new TestingAuthenticationToken("other@email.com", null));
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(tokenVersions, never()).increment(anyString());
+    }
+
+    @Test
+    void incrementTokenVersion_ReturnsOk_WhenCallerIsTheUser() throws Exception
+    {
+        when(tokenVersions.increment(EMAIL)).thenReturn(OptionalLong.of(1L));
+
+        final var response = userController.incrementTokenVersion(EMAIL, new TestingAuthenticationToken(EMAIL, null));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(tokenVersions).increment(EMAIL);
+    }
+}
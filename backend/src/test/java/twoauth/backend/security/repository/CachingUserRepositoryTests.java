@@ -0,0 +1,101 @@
+package twoauth.backend.security.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import twoauth.backend.security.model.User;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CachingUserRepositoryTests
+{
+    private static final String EMAIL = "test@email.com";
+
+    private UserRepositoryImpl userRepositoryImpl;
+    private SimpleMeterRegistry meterRegistry;
+    private CachingUserRepository userRepository;
+
+    @BeforeEach
+    void setup() {
+        userRepositoryImpl = mock(UserRepositoryImpl.class);
+        meterRegistry = new SimpleMeterRegistry();
+        userRepository = new CachingUserRepository(100, 60_000, userRepositoryImpl, meterRegistry);
+    }
+
+    private static User newUser() {
+        final var now = new Date();
+        return new User(EMAIL, "{bcrypt}hash", "First", "Last", now, now, List.of("READ"), true, null);
+    }
+
+    @Test
+    void findUserDetailsById_ReadsDatabaseOnce_WhenUserIsCached()
+    {
+        when(userRepositoryImpl.findUserDetailsById(EMAIL)).thenReturn(Optional.of(newUser()));
+
+        assertTrue(userRepository.findUserDetailsById(EMAIL).isPresent());
+        assertTrue(userRepository.findUserDetailsById(EMAIL).isPresent());
+
+        verify(userRepositoryImpl, times(1)).findUserDetailsById(EMAIL);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users.details").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void findUserDetailsById_ReturnsCopiesWithCredentials_WhenPreviousCopyIsErased()
+    {
+        when(userRepositoryImpl.findUserDetailsById(EMAIL)).thenReturn(Optional.of(newUser()));
+
+        final UserDetails first = userRepository.findUserDetailsById(EMAIL).orElseThrow();
+        ((User) first).eraseCredentials();
+        final UserDetails second = userRepository.findUserDetailsById(EMAIL).orElseThrow();
+
+        assertNotSame(first, second);
+        assertEquals("{bcrypt}hash", second.getPassword());
+    }
+
+    @Test
+    void findUserDetailsById_ReadsDatabaseAgain_WhenUserIsNotFound()
+    {
+        when(userRepositoryImpl.findUserDetailsById(EMAIL)).thenReturn(Optional.empty());
+
+        assertTrue(userRepository.findUserDetailsById(EMAIL).isEmpty());
+        assertTrue(userRepository.findUserDetailsById(EMAIL).isEmpty());
+
+        verify(userRepositoryImpl, times(2)).findUserDetailsById(EMAIL);
+    }
+
+    @Test
+    void findById_ReadsDatabaseAgain_WhenUserIsUpdated()
+    {
+        final var now = new Date();
+        final var secureDto = new User.SecureDto(EMAIL, "First", "Last", now, now, List.of("READ"), true);
+        when(userRepositoryImpl.findById(EMAIL)).thenReturn(Optional.of(secureDto));
+        when(userRepositoryImpl.optimisticLockUpdate(any())).thenReturn(true);
+
+        userRepository.findById(EMAIL);
+        assertTrue(userRepository.optimisticLockUpdate(secureDto));
+        userRepository.findById(EMAIL);
+
+        verify(userRepositoryImpl, times(2)).findById(EMAIL);
+    }
+
+    @Test
+    void findUserDetailsById_ReadsDatabaseAgain_WhenUserIsDeleted()
+    {
+        when(userRepositoryImpl.findUserDetailsById(EMAIL)).thenReturn(Optional.of(newUser()));
+        when(userRepositoryImpl.delete(EMAIL)).thenReturn(true);
+
+        userRepository.findUserDetailsById(EMAIL);
+        assertTrue(userRepository.delete(EMAIL));
+        userRepository.findUserDetailsById(EMAIL);
+
+        verify(userRepositoryImpl, times(2)).findUserDetailsById(EMAIL);
+    }
+}
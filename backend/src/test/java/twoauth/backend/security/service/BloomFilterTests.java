@@ -0,0 +1,40 @@
+package twoauth.backend.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTests
+{
+    @Test
+    void mightContain_ReturnsTrueForEveryPutValueAndRarelyForOthers_WhenExpectedInsertionsArePut()
+    {
+        final BloomFilter filter = BloomFilter.of(10_000, 0.01);
+        final String[] values = new String[10_000];
+        for (int i = 0; i < values.length; ++i)
+            filter.put(values[i] = UUID.randomUUID().toString());
+
+        for (final String value : values)
+            assertTrue(filter.mightContain(value));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; ++i)
+            if (filter.mightContain(UUID.randomUUID().toString()))
+                ++falsePositives;
+        assertTrue(falsePositives < 1_500, "false positives: " + falsePositives);
+        assertFalse(filter.isSaturated());
+        assertTrue(filter.getSizeInBytes() < 16 * 1024, "bytes: " + filter.getSizeInBytes());
+    }
+
+    @Test
+    void isSaturated_ReturnsTrue_WhenMoreThanExpectedInsertionsArePut()
+    {
+        final BloomFilter filter = BloomFilter.of(10, 0.01);
+        for (int i = 0; i < 11; ++i)
+            filter.put("jti-" + i);
+
+        assertTrue(filter.isSaturated());
+    }
+}
@@ -0,0 +1,137 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.ssl.DefaultSslBundleRegistry;
+import org.springframework.boot.ssl.SslBundle;
+import org.springframework.boot.ssl.SslBundleKey;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.boot.ssl.SslStoreBundle;
+import org.springframework.scheduling.TaskScheduler;
+
+import javax.crypto.KeyGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class FileJwtKeyStoreTests
+{
+    private static final String PASSWORD = "changeit";
+
+    @TempDir
+    private Path directory;
+    private Path keyFile;
+    private List<JwtKeyRotationEvent> events;
+
+    @BeforeEach
+    void setup() {
+        keyFile = directory.resolve("jwt-keys.sealed");
+        events = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private FileJwtKeyStore newKeyStore(final SslBundles sslBundles) {
+        return newKeyStore(sslBundles, "HS512");
+    }
+
+    private FileJwtKeyStore newKeyStore(final SslBundles sslBundles, final String signatureAlgorithm) {
+        return new FileJwtKeyStore(600_000L, 60_000L, signatureAlgorithm, keyFile.toString(), "jwt-keys", sslBundles,
+                mock(TaskScheduler.class), event -> events.add((JwtKeyRotationEvent) event));
+    }
+
+    static SslBundles newSslBundles() throws Exception
+    {
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setEntry("master", new KeyStore.SecretKeyEntry(KeyGenerator.getInstance("AES").generateKey()),
+                new KeyStore.PasswordProtection(PASSWORD.toCharArray()));
+        return new DefaultSslBundleRegistry("jwt-keys", SslBundle.of(
+                SslStoreBundle.of(keyStore, PASSWORD, null), SslBundleKey.of(PASSWORD, "master")));
+    }
+
+    private static String sign(final JwtSigningKey signingKey) {
+        return Jwts.builder()
+                .header().keyId(signingKey.id()).and()
+                .subject("test@email.com")
+                .signWith(signingKey.key())
+                .compact();
+    }
+
+    @Test
+    void getParser_VerifiesJwsSignedBeforeRestart_WhenFileIsSealedWithSameMasterKey() throws Exception
+    {
+        final SslBundles sslBundles = newSslBundles();
+        final FileJwtKeyStore beforeRestart = newKeyStore(sslBundles);
+        final JwtSigningKey signingKey = beforeRestart.getSigningKey();
+        final String jws = sign(signingKey);
+
+        final FileJwtKeyStore afterRestart = newKeyStore(sslBundles);
+
+        assertEquals(signingKey.id(), afterRestart.getSigningKey().id());
+        assertEquals("test@email.com", afterRestart.getParser().parseSignedClaims(jws).getPayload().getSubject());
+        // the secret is never written in clear
+        final byte[] sealed = Files.readAllBytes(keyFile);
+        assertEquals(-1, Collections.indexOfSubList(toList(sealed), toList(signingKey.key().getEncoded())));
+    }
+
+    @Test
+    void rotate_KeepsRetiredKeyAcrossRestart_WhenNewKeyIsCurrent() throws Exception
+    {
+        final SslBundles sslBundles = newSslBundles();
+        final FileJwtKeyStore beforeRestart = newKeyStore(sslBundles);
+        final String oldJws = sign(beforeRestart.getSigningKey());
+
+        beforeRestart.rotate();
+        final JwtSigningKey newKey = beforeRestart.getSigningKey();
+        final FileJwtKeyStore afterRestart = newKeyStore(sslBundles);
+
+        assertEquals(1, events.size());
+        assertEquals(newKey.id(), events.get(0).keyId());
+        assertEquals(newKey.id(), afterRestart.getSigningKey().id());
+        assertEquals("test@email.com", afterRestart.getParser().parseSignedClaims(oldJws).getPayload().getSubject());
+    }
+
+    @Test
+    void getPublicKeys_ReturnsSavedPublicKey_WhenAlgorithmIsEd25519() throws Exception
+    {
+        final SslBundles sslBundles = newSslBundles();
+        final FileJwtKeyStore beforeRestart = newKeyStore(sslBundles, "ED25519");
+        final JwtSigningKey signingKey = beforeRestart.getSigningKey();
+        final String jws = sign(signingKey);
+
+        final FileJwtKeyStore afterRestart = newKeyStore(sslBundles, "ED25519");
+
+        assertEquals(JwtSignatureAlgorithm.ED25519, afterRestart.getSigningKey().algorithm());
+        assertEquals(Map.of(signingKey.id(), signingKey.verificationKey()), afterRestart.getPublicKeys());
+        assertEquals("test@email.com", afterRestart.getParser().parseSignedClaims(jws).getPayload().getSubject());
+        assertEquals("EdDSA", afterRestart.getParser().parseSignedClaims(jws).getHeader().getAlgorithm());
+    }
+
+    @Test
+    void getSigningKey_ReturnsNewKey_WhenFileIsSealedWithAnotherMasterKey() throws Exception
+    {
+        final String oldKeyId = newKeyStore(newSslBundles()).getSigningKey().id();
+
+        final SslBundles newSslBundles = newSslBundles();
+        final FileJwtKeyStore keyStore = newKeyStore(newSslBundles);
+
+        assertNotEquals(oldKeyId, keyStore.getSigningKey().id());
+        assertEquals(keyStore.getSigningKey().id(), newKeyStore(newSslBundles).getSigningKey().id(),
+                "the file is not sealed again with the new master key");
+    }
+
+    private static List<Byte> toList(final byte[] bytes) {
+        final List<Byte> list = new ArrayList<>(bytes.length);
+        for (final byte b : bytes)
+            list.add(b);
+        return list;
+    }
+}
@@ -0,0 +1,79 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+import twoauth.backend.security.model.RevokedJws;
+import twoauth.backend.security.repository.RevokedJwsRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwsRevocationListTests
+{
+    private RevokedJwsRepository revokedJwsRepository;
+    private JwsRevocationList revocationList;
+
+    @BeforeEach
+    void setup() {
+        revokedJwsRepository = mock(RevokedJwsRepository.class);
+        when(revokedJwsRepository.save(any(RevokedJws.class))).thenReturn(true);
+        when(revokedJwsRepository.findIdsRevokedSince(any(), any())).thenReturn(List.of("remote"));
+        revocationList = new JwsRevocationList(100, 0.01, 5000, 3_600_000, 60_000,
+                revokedJwsRepository, mock(TaskScheduler.class), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void isRevoked_ReadsDatabase_WhenFilterIsNotLoaded()
+    {
+        when(revokedJwsRepository.existsById("jti")).thenReturn(false);
+
+        assertFalse(revocationList.isRevoked("jti"));
+        assertFalse(revocationList.isRevoked("jti"));
+
+        verify(revokedJwsRepository, times(1)).existsById("jti");
+    }
+
+    @Test
+    void isRevoked_AnswersWithoutDatabase_WhenFilterIsLoaded()
+    {
+        revocationList.refresh();
+        revocationList.revoke("local", System.currentTimeMillis() + 60_000);
+
+        assertTrue(revocationList.isRevoked("local"));
+        assertFalse(revocationList.mightBeRevoked("other"));
+        assertFalse(revocationList.isRevoked(null));
+        verify(revokedJwsRepository).ensureIndexes();
+        verify(revokedJwsRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void isRevoked_ReturnsTrueWithoutDatabase_WhenRevokedDuringRebuild()
+    {
+        when(revokedJwsRepository.findIdsRevokedSince(any(), any())).thenAnswer(__ -> {
+            // revoked by a request while the rebuild reads MongoDB
+            revocationList.revoke("local", System.currentTimeMillis() + 60_000);
+            return List.of("remote");
+        });
+
+        revocationList.refresh();
+
+        assertTrue(revocationList.mightBeRevoked("local"));
+        assertTrue(revocationList.isRevoked("local"));
+        verify(revokedJwsRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void isRevoked_ReturnsTrue_WhenRevokedByAnotherInstance()
+    {
+        revocationList.refresh();
+        when(revokedJwsRepository.existsById("remote")).thenReturn(true);
+
+        assertTrue(revocationList.isRevoked("remote"));
+    }
+}
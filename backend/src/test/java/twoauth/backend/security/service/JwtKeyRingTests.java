@@ -0,0 +1,67 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTests
+{
+    private static final long GRACE_PERIOD = 1_000L;
+
+    private static JwtSigningKey newKey(String id) {
+        return new JwtSigningKey(id, Jwts.SIG.HS512.key().build());
+    }
+
+    @Test
+    void verificationKey_ReturnsCurrentKey_WhenKeyIdIsTheCurrentOne()
+    {
+        final JwtSigningKey first = newKey("first");
+        final JwtKeyRing ring = JwtKeyRing.of(first);
+
+        assertSame(first, ring.current());
+        assertSame(first.key(), ring.verificationKey("first", Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void verificationKey_ReturnsRetiredKey_WhenGracePeriodIsNotOver()
+    {
+        final JwtSigningKey first = newKey("first");
+        final JwtSigningKey second = newKey("second");
+        final JwtKeyRing ring = JwtKeyRing.of(first).rotate(second, 0L, GRACE_PERIOD);
+
+        assertSame(second, ring.current());
+        assertSame(first.key(), ring.verificationKey("first", GRACE_PERIOD - 1));
+        assertSame(second.key(), ring.verificationKey("second", GRACE_PERIOD - 1));
+    }
+
+    @Test
+    void verificationKey_ReturnsNull_WhenGracePeriodIsOver()
+    {
+        final JwtKeyRing ring = JwtKeyRing.of(newKey("first")).rotate(newKey("second"), 0L, GRACE_PERIOD);
+
+        assertNull(ring.verificationKey("first", GRACE_PERIOD));
+    }
+
+    @Test
+    void verificationKey_ReturnsNull_WhenKeyIdIsUnknownOrNull()
+    {
+        final JwtKeyRing ring = JwtKeyRing.of(newKey("first"));
+
+        assertNull(ring.verificationKey("unknown", 0L));
+        assertNull(ring.verificationKey(null, 0L));
+    }
+
+    @Test
+    void rotate_RemovesRetiredKeys_WhenTheirGracePeriodIsOver()
+    {
+        final JwtKeyRing ring = JwtKeyRing.of(newKey("first"))
+                .rotate(newKey("second"), 0L, GRACE_PERIOD)
+                .rotate(newKey("third"), GRACE_PERIOD, GRACE_PERIOD);
+
+        assertEquals(2, ring.size());
+        assertNull(ring.verificationKey("first", GRACE_PERIOD));
+        assertNotNull(ring.verificationKey("second", GRACE_PERIOD));
+        assertNotNull(ring.verificationKey("third", GRACE_PERIOD));
+    }
+}
@@ -0,0 +1,102 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+import twoauth.backend.security.model.LoginLockout;
+import twoauth.backend.security.repository.LoginLockoutRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LoginRateLimiterTests
+{
+    private static final String EMAIL = "test@email.com";
+
+    private LoginLockoutRepository lockoutRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private LoginRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setup() {
+        lockoutRepository = mock(LoginLockoutRepository.class);
+        when(lockoutRepository.save(any(LoginLockout.class))).thenReturn(true);
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new LoginRateLimiter(true, 60_000L, 3, 5, 120_000L, 100, List.of("10.0.0.1"), true,
+                lockoutRepository, mock(TaskScheduler.class), meterRegistry);
+    }
+
+    @Test
+    void tryAcquire_RejectsEmail_WhenWrongPasswordsReachTheMaximum()
+    {
+        rateLimiter.onFailure(EMAIL);
+        rateLimiter.onFailure(EMAIL);
+        assertEquals(0, rateLimiter.tryAcquire(EMAIL, null));
+
+        rateLimiter.onFailure(EMAIL);
+
+        final long retryAfter = rateLimiter.tryAcquire(EMAIL, null);
+        assertTrue(retryAfter > 60 && retryAfter <= 120, "retry after: " + retryAfter);
+        assertEquals(0, rateLimiter.tryAcquire("other@email.com", null));
+        verify(lockoutRepository).save(argThat(lockout -> EMAIL.equals(lockout.email())));
+        assertEquals(1.0, meterRegistry.get("twoauth.login.attempts").tag("result", "rejected_email").counter().count());
+    }
+
+    @Test
+    void tryAcquire_AllowsEmail_WhenSuccessForgetsWrongPasswords()
+    {
+        rateLimiter.onFailure(EMAIL);
+        rateLimiter.onFailure(EMAIL);
+        rateLimiter.onSuccess(EMAIL);
+        rateLimiter.onFailure(EMAIL);
+
+        assertEquals(0, rateLimiter.tryAcquire(EMAIL, null));
+    }
+
+    @Test
+    void tryAcquire_RejectsAddress_WhenAttemptsExceedTheMaximum()
+    {
+        for (int i = 0; i < 5; ++i)
+            assertEquals(0, rateLimiter.tryAcquire("user" + i + "@email.com", "192.0.2.1"));
+
+        assertTrue(rateLimiter.tryAcquire("user5@email.com", "192.0.2.1") > 0);
+        assertEquals(0, rateLimiter.tryAcquire("user5@email.com", "192.0.2.2"));
+    }
+
+    @Test
+    void loadLockouts_RejectsEmail_WhenLockoutWasSavedBeforeRestart()
+    {
+        when(lockoutRepository.findActive(any())).thenReturn(
+                List.of(LoginLockout.of(EMAIL, System.currentTimeMillis() + 30_000L)));
+
+        rateLimiter.loadLockouts();
+
+        assertTrue(rateLimiter.tryAcquire(EMAIL, null) > 0);
+        verify(lockoutRepository).ensureIndexes();
+    }
+
+    @Test
+    void getClientAddress_ReturnsLastForwardedAddress_WhenConnectionComesFromTrustedProxy()
+    {
+        assertEquals("198.51.100.2", rateLimiter.getClientAddress("203.0.113.9, 198.51.100.2", "10.0.0.1"));
+        assertEquals("10.0.0.1", rateLimiter.getClientAddress(null, "10.0.0.1"));
+    }
+
+    @Test
+    void getClientAddress_IgnoresSpoofedForwardedFor_WhenConnectionDoesNotComeFromTrustedProxy()
+    {
+        final var untrustingRateLimiter = new LoginRateLimiter(true, 60_000L, 3, 5, 120_000L, 100, List.of(), true,
+                lockoutRepository, mock(TaskScheduler.class), meterRegistry);
+
+        assertEquals("192.0.2.1", rateLimiter.getClientAddress("198.51.100.2", "192.0.2.1"));
+        assertEquals("192.0.2.1", untrustingRateLimiter.getClientAddress("198.51.100.2", "192.0.2.1"));
+        for (int i = 0; i < 5; ++i)
+            assertEquals(0, rateLimiter.tryAcquire("user" + i + "@email.com",
+                    rateLimiter.getClientAddress("198.51.100." + i, "192.0.2.1")));
+        assertTrue(rateLimiter.tryAcquire("user5@email.com", rateLimiter.getClientAddress("198.51.100.5", "192.0.2.1")) > 0);
+    }
+}
@@ -0,0 +1,190 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.scheduling.TaskScheduler;
+import twoauth.backend.security.model.JwtKeyLease;
+import twoauth.backend.security.model.StoredJwtKey;
+import twoauth.backend.security.repository.JwtKeyRepository;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class MongoJwtKeyStoreTests
+{
+    private static final long KEY_TVM = 600L;
+    private static final long REFRESH_INTERVAL = 100L;
+
+    private InMemoryKeyRepository keyRepository;
+    private SslBundles sslBundles;
+    private List<JwtKeyRotationEvent> events;
+
+    @BeforeEach
+    void setup() throws Exception {
+        keyRepository = new InMemoryKeyRepository();
+        sslBundles = FileJwtKeyStoreTests.newSslBundles();
+        events = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private MongoJwtKeyStore newKeyStore() {
+        return newKeyStore(sslBundles);
+    }
+
+    private MongoJwtKeyStore newKeyStore(final SslBundles sslBundles) {
+        return newKeyStore(sslBundles, "");
+    }
+
+    private MongoJwtKeyStore newKeyStore(final SslBundles sslBundles, final String unsealedKeysAcceptedUntil) {
+        return new MongoJwtKeyStore(KEY_TVM, 60_000L, "HS512", REFRESH_INTERVAL, 1_000L, "jwt-keys",
+                unsealedKeysAcceptedUntil, sslBundles, keyRepository, mock(TaskScheduler.class),
+                event -> events.add((JwtKeyRotationEvent) event));
+    }
+
+    private StoredJwtKey saveKeyInClear() {
+        final long nowInMillis = System.currentTimeMillis();
+        final StoredJwtKey key = AbstractJwtKeyStore.toStoredKey(JwtSignatureAlgorithm.HS512.newKey("inClear"),
+                new Date(nowInMillis), new Date(nowInMillis + 60_000L));
+        keyRepository.insert(key);
+        return key;
+    }
+
+    @Test
+    void getParser_VerifiesJwsSignedByAnotherInstance_WhenKeysAreShared()
+    {
+        final MongoJwtKeyStore first = newKeyStore();
+        final MongoJwtKeyStore second = newKeyStore();
+
+        final JwtSigningKey signingKey = first.getSigningKey();
+        final String jws = Jwts.builder()
+                .header().keyId(signingKey.id()).and()
+                .subject("test@email.com")
+                .signWith(signingKey.key())
+                .compact();
+
+        assertEquals(1, keyRepository.keys.size());
+        assertEquals(signingKey.id(), second.getSigningKey().id());
+        assertEquals("test@email.com", second.getParser().parseSignedClaims(jws).getPayload().getSubject());
+    }
+
+    @Test
+    void getSigningKey_ReturnsKeySealedInMongo_OnlyWithSameMasterKey() throws Exception
+    {
+        final JwtSigningKey signingKey = newKeyStore().getSigningKey();
+
+        final StoredJwtKey storedKey = keyRepository.keys.get(0);
+        assertTrue(storedKey.isSealed());
+        assertFalse(Arrays.equals(signingKey.key().getEncoded(), storedKey.secret()));
+
+        final var otherSslBundles = FileJwtKeyStoreTests.newSslBundles();
+        assertThrows(IllegalStateException.class, () -> newKeyStore(otherSslBundles));
+        assertEquals(1, keyRepository.keys.size());
+    }
+
+    @Test
+    void getSigningKey_Throws_WhenSealedKeyFieldIsModified()
+    {
+        newKeyStore();
+        final StoredJwtKey storedKey = keyRepository.keys.remove(0);
+        // a longer validity, the secret is left as it was sealed
+        keyRepository.insert(new StoredJwtKey(storedKey.id(), storedKey.algorithm(), storedKey.secret(),
+                storedKey.publicKey(), storedKey.activeFrom(), new Date(storedKey.expireAt().getTime() + 60_000L), true));
+
+        assertThrows(IllegalStateException.class, this::newKeyStore);
+        assertEquals(1, keyRepository.keys.size());
+    }
+
+    @Test
+    void getSigningKey_SealsKeySavedInClear_OnlyDuringMigration()
+    {
+        final StoredJwtKey keyInClear = saveKeyInClear();
+
+        assertThrows(IllegalStateException.class, this::newKeyStore);
+        assertThrows(IllegalStateException.class, () -> newKeyStore(sslBundles, "2020-01-01T00:00:00Z"));
+        assertFalse(keyRepository.keys.get(0).isSealed());
+
+        final MongoJwtKeyStore keyStore = newKeyStore(sslBundles, Instant.now().plusSeconds(60).toString());
+
+        assertEquals(keyInClear.id(), keyStore.getSigningKey().id());
+        assertEquals(1, keyRepository.keys.size());
+        assertTrue(keyRepository.keys.get(0).isSealed());
+        // sealed, it is accepted after the migration too
+        assertEquals(keyInClear.id(), newKeyStore().getSigningKey().id());
+    }
+
+    @Test
+    void refresh_SavesNextKeyOnceBeforeItBecomesCurrent_WhenRotationIsDue() throws InterruptedException
+    {
+        final MongoJwtKeyStore first = newKeyStore();
+        final MongoJwtKeyStore second = newKeyStore();
+        final String oldKeyId = first.getSigningKey().id();
+
+        // within two refresh intervals of the rotation
+        final long activeFrom = keyRepository.keys.get(0).activeFrom().getTime();
+        Thread.sleep(activeFrom + KEY_TVM - 3 * REFRESH_INTERVAL / 2 - System.currentTimeMillis());
+        first.refresh();
+        second.refresh();
+
+        assertEquals(2, keyRepository.keys.size());
+        final String newKeyId = keyRepository.keys.get(1).id();
+        for (final MongoJwtKeyStore keyStore : List.of(first, second)) {
+            assertEquals(oldKeyId, keyStore.getSigningKey().id());
+            assertNotNull(keyStore.getRing().verificationKey(newKeyId, System.currentTimeMillis()));
+        }
+
+        Thread.sleep(activeFrom + KEY_TVM + REFRESH_INTERVAL - System.currentTimeMillis());
+        first.refresh();
+        second.refresh();
+
+        assertEquals(2, keyRepository.keys.size());
+        assertEquals(newKeyId, first.getSigningKey().id());
+        assertEquals(newKeyId, second.getSigningKey().id());
+        assertNotNull(second.getRing().verificationKey(oldKeyId, System.currentTimeMillis()));
+        assertEquals(2, events.size());
+    }
+
+    private static final class InMemoryKeyRepository implements JwtKeyRepository
+    {
+        private final List<StoredJwtKey> keys = new ArrayList<>();
+        private JwtKeyLease lease;
+
+        @Override
+        public void ensureIndexes() {}
+
+        @Override
+        public synchronized boolean insert(final StoredJwtKey key) {
+            keys.add(key);
+            keys.sort(Comparator.comparing(StoredJwtKey::activeFrom));
+            return true;
+        }
+
+        @Override
+        public synchronized List<StoredJwtKey> findActive(final Date now) {
+            return keys.stream().filter(key -> key.expireAt().after(now)).toList();
+        }
+
+        @Override
+        public synchronized boolean replaceUnsealed(final StoredJwtKey sealedKey) {
+            for (int i = 0; i < keys.size(); ++i) {
+                if (keys.get(i).id().equals(sealedKey.id()) && ! keys.get(i).isSealed()) {
+                    keys.set(i, sealedKey);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public synchronized boolean tryAcquireLease(final String leaseId, final String owner,
+                                                    final Date now, final Date expireAt) {
+            if (lease != null && ! lease.owner().equals(owner) && lease.expireAt().after(now))
+                return false;
+            lease = new JwtKeyLease(leaseId, owner, expireAt);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTests
+{
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void submit_ReturnsTaskResult_WhenPoolIsNotSaturated() throws Exception
+    {
+        assertEquals("hash", executor.submit(() -> "hash").get());
+        assertEquals(1L, meterRegistry.get("twoauth.password.hashing").timer().count());
+    }
+
+    @Test
+    void submit_ThrowsRejectedExecutionException_WhenThreadsAndQueueAreFull() throws Exception
+    {
+        final var running = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var busy = executor.submit(() -> {
+            running.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        running.await();
+        final var queued = executor.submit(() -> true);
+
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> true));
+        assertEquals(1.0, meterRegistry.get("twoauth.password.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(busy.get());
+        assertTrue(queued.get());
+    }
+
+    @Test
+    void call_ReturnsTaskResultOrThrowsTaskException_WhenPoolIsNotSaturated()
+    {
+        assertEquals("hash", executor.call(() -> "hash"));
+        assertThrows(IllegalArgumentException.class, () -> executor.call(() -> {
+            throw new IllegalArgumentException("invalid password");
+        }));
+    }
+}
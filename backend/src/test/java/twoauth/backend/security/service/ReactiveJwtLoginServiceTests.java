@@ -0,0 +1,232 @@
+package twoauth.backend.security.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import reactor.core.publisher.Mono;
+import twoauth.backend.security.model.AuthRequest;
+import twoauth.backend.security.model.JwtResponse;
+import twoauth.backend.security.model.RefreshToken;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.repository.LoginLockoutRepository;
+import twoauth.backend.security.repository.ReactiveUserSecurityRepository;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReactiveJwtLoginServiceTests
+{
+    private static final String EMAIL = "test@email.com";
+    private static final String PASSWORD = "a2R_a2R_";
+    private static final JwtSigningKey SIGNING_KEY = new JwtSigningKey("kid", Jwts.SIG.HS512.key().build());
+
+    private final JwtKeyStore keyStore = new JwtKeyStore() {
+        private final JwtParser parser = Jwts.parser().verifyWith((SecretKey) SIGNING_KEY.key()).build();
+
+        @Override
+        public JwtSigningKey getSigningKey() {
+            return SIGNING_KEY;
+        }
+
+        @Override
+        public JwtParser getParser() {
+            return parser;
+        }
+    };
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private ReactiveUserSecurityRepository userRepository;
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private LoginRateLimiter loginRateLimiter;
+    private SimpleMeterRegistry meterRegistry;
+    private LoginMetrics loginMetrics;
+    private RefreshTokenServiceTests.InMemoryRefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenService refreshTokenService;
+    private ReactiveJwtLoginService loginService;
+
+    @BeforeEach
+    void setup() {
+        userRepository = mock(ReactiveUserSecurityRepository.class);
+        passwordHashingExecutor = new PasswordHashingExecutor(1, 10, new SimpleMeterRegistry());
+        loginRateLimiter = new LoginRateLimiter(true, 60_000L, 3, 100, 60_000L, 100, List.of(), false,
+                mock(LoginLockoutRepository.class), mock(TaskScheduler.class), new SimpleMeterRegistry());
+        meterRegistry = new SimpleMeterRegistry();
+        loginMetrics = new LoginMetrics(meterRegistry);
+        refreshTokenRepository = new RefreshTokenServiceTests.InMemoryRefreshTokenRepository();
+        refreshTokenService = new RefreshTokenService(600_000L, 5_000L, refreshTokenRepository, new SimpleMeterRegistry());
+        loginService = new ReactiveJwtLoginService(
+                new JwtLoginService(60_000L, null, keyStore, refreshTokenService, null, loginRateLimiter, loginMetrics),
+                refreshTokenService,
+                userRepository,
+                passwordEncoder,
+                passwordHashingExecutor,
+                loginRateLimiter,
+                loginMetrics
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingExecutor.shutdown();
+    }
+
+    private User newUser(final String encodedPassword, final boolean isActive, final String activationToken) {
+        final var now = new Date();
+        return new User(EMAIL, encodedPassword, "First", "Last", now, now, List.of("READ"), isActive, activationToken);
+    }
+
+    private static AuthRequest newAuthRequest(final String password, final String activationToken) throws Exception {
+        final var json = (activationToken == null)
+                ? String.format("{\"email\": \"%s\", \"password\": \"%s\"}", EMAIL, password)
+                : String.format("{\"email\": \"%s\", \"password\": \"%s\", \"base64OTActivationToken\": \"%s\"}",
+                        EMAIL, password, activationToken);
+        return new ObjectMapper().readValue(json, AuthRequest.class);
+    }
+
+    @Test
+    void login_ReturnsSignedJws_WhenPasswordIsCorrect() throws Exception
+    {
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(newUser(passwordEncoder.encode(PASSWORD), true, null)));
+        final AuthRequest request = newAuthRequest(PASSWORD, null);
+
+        final ResponseEntity<JwtResponse> response = loginService.login(request, null).block();
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(EMAIL, keyStore.getParser().parseSignedClaims(response.getBody().jwt()).getPayload().getSubject());
+        assertNull(request.getPassword());
+        verify(userRepository, never()).optimisticLockUpdatePassword(any(), anyString());
+    }
+
+    @Test
+    void login_ReturnsUnauthorized_WhenPasswordIsWrongOrUserIsUnknown() throws Exception
+    {
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(newUser(passwordEncoder.encode(PASSWORD), true, null)));
+        final ResponseEntity<JwtResponse> wrongPassword = loginService.login(newAuthRequest("b3S_b3S_", null), null).block();
+
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.empty());
+        final ResponseEntity<JwtResponse> unknownUser = loginService.login(newAuthRequest(PASSWORD, null), null).block();
+
+        assertNotNull(wrongPassword);
+        assertEquals(HttpStatus.UNAUTHORIZED, wrongPassword.getStatusCode());
+        assertNotNull(unknownUser);
+        assertEquals(HttpStatus.UNAUTHORIZED, unknownUser.getStatusCode());
+        assertEquals(2, meterRegistry.get("twoauth.login").tag("outcome", "unauthorized").timer().count());
+        assertEquals(2, meterRegistry.get("twoauth.login.phase").tag("phase", "user_lookup").timer().count());
+    }
+
+    @Test
+    void login_UpgradesPasswordHashAndEnablesAccount_WhenHashIsWeakerAndTokenIsValid() throws Exception
+    {
+        final User user = newUser(new BCryptPasswordEncoder(4).encode(PASSWORD), false, "AAAA");
+        final var strongerEncoder = new BCryptPasswordEncoder(5);
+        loginService = new ReactiveJwtLoginService(
+                new JwtLoginService(60_000L, null, keyStore, refreshTokenService, null, loginRateLimiter, loginMetrics),
+                refreshTokenService,
+                userRepository,
+                strongerEncoder,
+                passwordHashingExecutor,
+                loginRateLimiter,
+                loginMetrics
+        );
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(user));
+        when(userRepository.optimisticLockUpdatePassword(eq(user), anyString())).thenReturn(Mono.just(true));
+        when(userRepository.optimisticLockEnableUserAccount(user)).thenReturn(Mono.just(true));
+
+        final ResponseEntity<JwtResponse> response = loginService.login(newAuthRequest(PASSWORD, "AAAA"), null).block();
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(userRepository).optimisticLockUpdatePassword(eq(user), argThat(hash -> strongerEncoder.matches(PASSWORD, hash)
+                && ! strongerEncoder.upgradeEncoding(hash)));
+        verify(userRepository).optimisticLockEnableUserAccount(user);
+    }
+
+    @Test
+    void login_ReturnsTooManyRequestsWithoutHashing_WhenEmailIsLockedOut() throws Exception
+    {
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(newUser(passwordEncoder.encode(PASSWORD), true, null)));
+        for (int i = 0; i < 3; ++i)
+            loginService.login(newAuthRequest("b3S_b3S_", null), "192.0.2.1").block();
+
+        final AuthRequest request = newAuthRequest(PASSWORD, null);
+        final ResponseEntity<JwtResponse> response = loginService.login(request, "192.0.2.2").block();
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertNotNull(response.getHeaders().getFirst("Retry-After"));
+        assertNull(request.getPassword());
+        verify(userRepository, times(3)).findUserById(EMAIL);
+    }
+
+    @Test
+    void refresh_ReturnsJwsAndRotatesToken_WhenUserIsUnchanged() throws Exception
+    {
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(newUser(passwordEncoder.encode(PASSWORD), true, null)));
+        final JwtResponse login = loginService.login(newAuthRequest(PASSWORD, null), null).block().getBody();
+
+        final ResponseEntity<JwtResponse> response = loginService.refresh(login.refreshToken()).block();
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        final var payload = keyStore.getParser().parseSignedClaims(response.getBody().jwt()).getPayload();
+        assertEquals(EMAIL, payload.getSubject());
+        assertNotNull(response.getBody().refreshToken());
+        assertNotEquals(login.refreshToken(), response.getBody().refreshToken());
+        assertEquals(1, meterRegistry.get("twoauth.jws.refresh").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void refresh_ReturnsSameRotatedToken_WhenTokenIsUsedAgainInsideReuseInterval() throws Exception
+    {
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(newUser(passwordEncoder.encode(PASSWORD), true, null)));
+        final JwtResponse login = loginService.login(newAuthRequest(PASSWORD, null), null).block().getBody();
+
+        final ResponseEntity<JwtResponse> first = loginService.refresh(login.refreshToken()).block();
+        // another API Gateway instance refreshing the same session
+        final ResponseEntity<JwtResponse> replayed = loginService.refresh(login.refreshToken()).block();
+
+        assertNotNull(first);
+        assertNotNull(first.getBody().refreshToken());
+        assertNotNull(replayed);
+        assertEquals(HttpStatus.OK, replayed.getStatusCode());
+        assertEquals(EMAIL, keyStore.getParser().parseSignedClaims(replayed.getBody().jwt()).getPayload().getSubject());
+        assertEquals(first.getBody().refreshToken(), replayed.getBody().refreshToken());
+        // the login token and its only successor
+        assertEquals(2, refreshTokenRepository.tokens.size());
+    }
+
+    @Test
+    void refresh_ReturnsUnauthorized_WhenTokenIsUnknownOrTokenVersionChanged()
+    {
+        // issued before the user changed the password
+        final String refreshToken = "A".repeat(43);
+        final var now = new Date();
+        refreshTokenRepository.insert(new RefreshToken(RefreshTokenService.hash(refreshToken), "family", EMAIL, 1L,
+                null, null, new Date(now.getTime() + 600_000L)));
+        when(userRepository.findUserById(EMAIL)).thenReturn(Mono.just(newUser(null, true, null)));
+
+        final ResponseEntity<JwtResponse> unknown = loginService.refresh("unknown").block();
+        final ResponseEntity<JwtResponse> oldTokenVersion = loginService.refresh(refreshToken).block();
+
+        assertNotNull(unknown);
+        assertEquals(HttpStatus.UNAUTHORIZED, unknown.getStatusCode());
+        assertNotNull(oldTokenVersion);
+        assertEquals(HttpStatus.UNAUTHORIZED, oldTokenVersion.getStatusCode());
+        verify(userRepository, times(1)).findUserById(EMAIL);
+    }
+}
@@ -0,0 +1,161 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import twoauth.backend.security.model.RefreshToken;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.repository.RefreshTokenRepository;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshTokenServiceTests
+{
+    private static final long SESSION_TVM = 600_000L;
+    private static final long REUSE_INTERVAL = 5_000L;
+
+    private InMemoryRefreshTokenRepository refreshTokenRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setup() {
+        refreshTokenRepository = new InMemoryRefreshTokenRepository();
+        meterRegistry = new SimpleMeterRegistry();
+        refreshTokenService = new RefreshTokenService(SESSION_TVM, REUSE_INTERVAL, refreshTokenRepository, meterRegistry);
+    }
+
+    private static User newUser() {
+        final var now = new Date();
+        return new User("test@email.com", null, "First", "Last", now, now, List.of("READ"), true, null);
+    }
+
+    @Test
+    void use_ReturnsTokenOfSameFamilyOnlyOnce_WhenTokenIsRotated()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final String token = refreshTokenService.issue(newUser(), nowInMillis);
+
+        assertNotNull(token);
+        assertFalse(refreshTokenRepository.tokens.containsKey(token));
+
+        final RefreshToken used = refreshTokenService.use(token, nowInMillis);
+        assertNotNull(used);
+        assertEquals("test@email.com", used.email());
+        assertEquals(nowInMillis + SESSION_TVM, used.expireAt().getTime());
+
+        final String rotated = refreshTokenService.rotate(used, token);
+        assertNotNull(rotated);
+        assertNotEquals(token, rotated);
+
+        final RefreshToken usedRotated = refreshTokenService.use(rotated, nowInMillis + 60_000L);
+        assertNotNull(usedRotated);
+        assertEquals(used.familyId(), usedRotated.familyId());
+        assertEquals(used.expireAt(), usedRotated.expireAt());
+    }
+
+    @Test
+    void use_ReturnsNullAndDeletesFamily_WhenTokenIsUsedAgainAfterReuseInterval()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final String token = refreshTokenService.issue(newUser(), nowInMillis);
+        final String rotated = refreshTokenService.rotate(refreshTokenService.use(token, nowInMillis), token);
+
+        // another API Gateway instance refreshing the same session
+        assertNotNull(refreshTokenService.use(token, nowInMillis + REUSE_INTERVAL));
+
+        assertNull(refreshTokenService.use(token, nowInMillis + REUSE_INTERVAL + 1));
+        assertTrue(refreshTokenRepository.tokens.isEmpty());
+        assertNull(refreshTokenService.use(rotated, nowInMillis + REUSE_INTERVAL + 1));
+        assertEquals(1.0, meterRegistry.get("twoauth.refresh_token.reuses").counter().count());
+    }
+
+    @Test
+    void rotate_ReturnsSameSuccessorWithoutSavingItAgain_WhenTokenIsUsedAgainInsideReuseInterval()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final String token = refreshTokenService.issue(newUser(), nowInMillis);
+        final String rotated = refreshTokenService.rotate(refreshTokenService.use(token, nowInMillis), token);
+
+        // another API Gateway instance refreshing the same session
+        final RefreshToken usedAgain = refreshTokenService.use(token, nowInMillis + REUSE_INTERVAL);
+        assertNotNull(usedAgain);
+        assertEquals(rotated, refreshTokenService.rotate(usedAgain, token));
+
+        // the login token and its only successor
+        assertEquals(2, refreshTokenRepository.tokens.size());
+        assertEquals(0.0, meterRegistry.get("twoauth.refresh_token.reuses").counter().count());
+    }
+
+    @Test
+    void rotate_ReturnsNullAndLetsTokenBeUsedAgain_WhenSuccessorIsNotSaved()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final String token = refreshTokenService.issue(newUser(), nowInMillis);
+
+        refreshTokenRepository.isInsertFailing = true;
+        assertNull(refreshTokenService.rotate(refreshTokenService.use(token, nowInMillis), token));
+        assertEquals(1, refreshTokenRepository.tokens.size());
+        assertNull(refreshTokenRepository.tokens.values().iterator().next().usedAt());
+
+        // after the reuse interval, not taken for a stolen token
+        refreshTokenRepository.isInsertFailing = false;
+        final RefreshToken used = refreshTokenService.use(token, nowInMillis + REUSE_INTERVAL + 1);
+        assertNotNull(used);
+        assertNotNull(refreshTokenService.rotate(used, token));
+        assertEquals(2, refreshTokenRepository.tokens.size());
+        assertEquals(0.0, meterRegistry.get("twoauth.refresh_token.reuses").counter().count());
+    }
+
+    @Test
+    void use_ReturnsNull_WhenTokenIsUnknownOrExpired()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final String token = refreshTokenService.issue(newUser(), nowInMillis);
+
+        assertNull(refreshTokenService.use("unknown", nowInMillis));
+        assertNull(refreshTokenService.use(token.substring(1) + "A", nowInMillis));
+        assertNull(refreshTokenService.use(token, nowInMillis + SESSION_TVM));
+    }
+
+    static final class InMemoryRefreshTokenRepository implements RefreshTokenRepository
+    {
+        final Map<String, RefreshToken> tokens = new HashMap<>();
+        boolean isInsertFailing = false;
+
+        @Override
+        public void ensureIndexes() {}
+
+        @Override
+        public synchronized boolean insert(final RefreshToken token) {
+            return ! isInsertFailing && tokens.putIfAbsent(token.id(), token) == null;
+        }
+
+        @Override
+        public synchronized RefreshToken findAndMarkUsed(final String id, final Date now, final String successorSalt) {
+            final RefreshToken token = tokens.get(id);
+            if (token != null && token.usedAt() == null)
+                tokens.put(id, new RefreshToken(token.id(), token.familyId(), token.email(), token.tokenVersion(),
+                        now, successorSalt, token.expireAt()));
+            return token;
+        }
+
+        @Override
+        public synchronized void markUnused(final String id) {
+            tokens.computeIfPresent(id, (__, token) -> new RefreshToken(token.id(), token.familyId(), token.email(),
+                    token.tokenVersion(), null, null, token.expireAt()));
+        }
+
+        @Override
+        public synchronized long deleteFamily(final String familyId) {
+            final long size = tokens.size();
+            tokens.values().removeIf(token -> token.familyId().equals(familyId));
+            return size - tokens.size();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package twoauth.backend.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTests
+{
+    private static final long WINDOW = 1000L;
+    private static final long START = 1_000_000L * WINDOW;
+
+    @Test
+    void get_ReturnsWeightedPreviousCount_WhenWindowMoves()
+    {
+        final var counter = new SlidingWindowCounter(WINDOW);
+        for (int i = 0; i < 10; ++i)
+            counter.incrementAndGet(START);
+
+        assertEquals(10, counter.get(START + WINDOW - 1));
+        // a quarter of the next window: three quarters of the previous count
+        assertEquals(7, counter.get(START + WINDOW + WINDOW / 4));
+        assertEquals(8, counter.incrementAndGet(START + WINDOW + WINDOW / 4));
+    }
+
+    @Test
+    void get_ReturnsZero_WhenTwoWindowsArePassed()
+    {
+        final var counter = new SlidingWindowCounter(WINDOW);
+        counter.incrementAndGet(START);
+
+        assertEquals(0, counter.get(START + 2 * WINDOW));
+        assertEquals(1, counter.incrementAndGet(START + 2 * WINDOW));
+    }
+}
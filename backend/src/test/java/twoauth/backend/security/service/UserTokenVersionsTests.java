@@ -0,0 +1,69 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import twoauth.backend.security.repository.UserSecurityRepository;
+
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserTokenVersionsTests
+{
+    private static final String EMAIL = "test@email.com";
+
+    private UserSecurityRepository userRepository;
+    private UserTokenVersions tokenVersions;
+
+    @BeforeEach
+    void setup() {
+        userRepository = mock(UserSecurityRepository.class);
+        tokenVersions = new UserTokenVersions(100, 30_000, userRepository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void isCurrent_ReturnsFalse_WhenVersionIsOlder()
+    {
+        when(userRepository.findTokenVersionById(EMAIL)).thenReturn(OptionalLong.of(2L));
+
+        assertFalse(tokenVersions.isCurrent(EMAIL, 1L));
+        assertTrue(tokenVersions.isCurrent(EMAIL, 2L));
+        assertTrue(tokenVersions.isCached(EMAIL));
+        verify(userRepository, times(1)).findTokenVersionById(EMAIL);
+    }
+
+    @Test
+    void isCurrent_ReturnsFalse_WhenUserIsUnknownOrDatabaseFails()
+    {
+        when(userRepository.findTokenVersionById(EMAIL)).thenReturn(OptionalLong.empty());
+        when(userRepository.findTokenVersionById("other@email.com")).thenThrow(new IllegalStateException("down"));
+
+        assertFalse(tokenVersions.isCurrent(EMAIL, 0L));
+        assertFalse(tokenVersions.isCurrent("other@email.com", 0L));
+    }
+
+    @Test
+    void reload_ReturnsLastKnownVersion_WhenDatabaseFails()
+    {
+        final var loader = new UserTokenVersions.TokenVersionLoader(userRepository);
+        when(userRepository.findTokenVersionById(EMAIL))
+                .thenReturn(OptionalLong.of(3L))
+                .thenThrow(new IllegalStateException("down"));
+
+        assertEquals(3L, loader.reload(EMAIL, 2L));
+        assertEquals(3L, loader.reload(EMAIL, 3L));
+        assertThrows(IllegalStateException.class, () -> loader.load(EMAIL));
+    }
+
+    @Test
+    void increment_RejectsOlderVersion_WithoutReadingDatabase()
+    {
+        when(userRepository.incrementTokenVersion(EMAIL)).thenReturn(OptionalLong.of(1L));
+
+        assertEquals(OptionalLong.of(1L), tokenVersions.increment(EMAIL));
+        assertFalse(tokenVersions.isCurrent(EMAIL, 0L));
+        verify(userRepository, never()).findTokenVersionById(EMAIL);
+    }
+}
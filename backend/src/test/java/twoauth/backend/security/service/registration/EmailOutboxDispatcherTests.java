@@ -0,0 +1,237 @@
+package twoauth.backend.security.service.registration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import twoauth.backend.security.model.OutboxEmail;
+import twoauth.backend.security.repository.EmailOutboxRepository;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailOutboxDispatcherTests
+{
+    private static final String REJECTED_EMAIL = "rejected@email.com";
+
+    private SmtpStandIn smtpServer;
+    private InMemoryOutbox outbox;
+    private ScheduledExecutorService scheduler;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setup() throws IOException
+    {
+        smtpServer = new SmtpStandIn();
+        outbox = new InMemoryOutbox();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        final var mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getPort());
+        mailSender.setDefaultEncoding("UTF-8");
+        mailSender.getJavaMailProperties().put("mail.smtp.from", "2auth@email.com");
+
+        // the scheduled dispatch never runs during a test, dispatch() is called explicitly
+        dispatcher = new EmailOutboxDispatcher(3_600_000L, 10, 3, 1000L, 4000L,
+                outbox, mailSender, new ConcurrentTaskScheduler(scheduler), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        scheduler.shutdownNow();
+        smtpServer.close();
+    }
+
+    @Test
+    void dispatch_SendsTheBatchOverOneConnection_WhenEmailsAreQueued()
+    {
+        for (int i = 0; i < 3; ++i)
+            outbox.enqueue(OutboxEmail.of("user" + i + "@email.com", "Confirm Registration", "token" + i));
+
+        assertEquals(3, dispatcher.dispatch());
+
+        assertEquals(3, smtpServer.getDeliveredMessages().size());
+        assertEquals(1, smtpServer.getConnections());
+        assertTrue(outbox.emails.isEmpty());
+    }
+
+    @Test
+    void dispatch_RetriesOnlyTheFailedEmail_WhenMailServerRejectsARecipient()
+    {
+        outbox.enqueue(OutboxEmail.of("user@email.com", "Confirm Registration", "token"));
+        outbox.enqueue(OutboxEmail.of(REJECTED_EMAIL, "Confirm Registration", "token"));
+
+        final long before = System.currentTimeMillis();
+        assertEquals(2, dispatcher.dispatch());
+
+        assertEquals(1, smtpServer.getDeliveredMessages().size());
+        assertEquals(1, outbox.emails.size());
+        final OutboxEmail retried = outbox.emails.values().iterator().next();
+        assertEquals(REJECTED_EMAIL, retried.to());
+        assertEquals(1, retried.attempts());
+        assertTrue(retried.nextAttempt().getTime() >= before + 1000L);
+
+        // not due yet
+        assertEquals(0, dispatcher.dispatch());
+    }
+
+    @Test
+    void dispatch_DiscardsTheEmail_WhenMaxAttemptsIsReached()
+    {
+        outbox.enqueue(new OutboxEmail(null, REJECTED_EMAIL, "Confirm Registration", "token", 2, new Date(), new Date()));
+
+        assertEquals(1, dispatcher.dispatch());
+
+        assertTrue(outbox.emails.isEmpty());
+    }
+
+    @Test
+    void retryDelayInMillis_DoublesUpToTheMaximum_WhenAttemptsIncrease()
+    {
+        assertEquals(1000L, dispatcher.retryDelayInMillis(1));
+        assertEquals(2000L, dispatcher.retryDelayInMillis(2));
+        assertEquals(4000L, dispatcher.retryDelayInMillis(3));
+        assertEquals(4000L, dispatcher.retryDelayInMillis(4));
+        assertEquals(4000L, dispatcher.retryDelayInMillis(100));
+    }
+
+    private static final class InMemoryOutbox implements EmailOutboxRepository
+    {
+        private final AtomicInteger ids = new AtomicInteger();
+        private final Map<String, OutboxEmail> emails = new ConcurrentHashMap<>();
+
+        @Override
+        public void ensureIndexes() {}
+
+        @Override
+        public boolean enqueue(final OutboxEmail email) {
+            final String id = String.valueOf(ids.incrementAndGet());
+            emails.put(id, new OutboxEmail(id, email.to(), email.subject(), email.text(),
+                    email.attempts(), email.creation(), email.nextAttempt()));
+            return true;
+        }
+
+        @Override
+        public synchronized OutboxEmail claimNext(final Date now, final Date leaseUntil) {
+            final OutboxEmail email = emails.values().stream()
+                    .filter(e -> !e.nextAttempt().after(now))
+                    .min(Comparator.comparing(OutboxEmail::nextAttempt))
+                    .orElse(null);
+            if (email == null)
+                return null;
+            final var claimed = new OutboxEmail(email.id(), email.to(), email.subject(), email.text(),
+                    email.attempts(), email.creation(), leaseUntil);
+            emails.put(email.id(), claimed);
+            return claimed;
+        }
+
+        @Override
+        public void deleteAll(final Collection<String> ids) {
+            ids.forEach(emails::remove);
+        }
+
+        @Override
+        public void retryLater(final String id, final int attempts, final Date nextAttempt) {
+            emails.computeIfPresent(id, (k, e) -> new OutboxEmail(e.id(), e.to(), e.subject(), e.text(),
+                    attempts, e.creation(), nextAttempt));
+        }
+    }
+
+    /**
+     * Minimal local SMTP server: accepts every message, except the ones for {@link #REJECTED_EMAIL}.
+     */
+    private static final class SmtpStandIn implements Closeable
+    {
+        private final ServerSocket serverSocket;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final List<String> deliveredMessages = new CopyOnWriteArrayList<>();
+        private final AtomicInteger connections = new AtomicInteger();
+
+        SmtpStandIn() throws IOException {
+            serverSocket = new ServerSocket(0);
+            executor.submit(this::accept);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getConnections() {
+            return connections.get();
+        }
+
+        List<String> getDeliveredMessages() {
+            return deliveredMessages;
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    executor.submit(() -> session(socket));
+                }
+                catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void session(final Socket socket) {
+            try (socket;
+                 final var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 final var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), true))
+            {
+                reply(out, "220 localhost");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    final String command = line.toUpperCase(Locale.ROOT);
+                    if (command.startsWith("RCPT") && line.contains(REJECTED_EMAIL)) {
+                        reply(out, "550 mailbox unavailable");
+                    }
+                    else if (command.startsWith("DATA")) {
+                        reply(out, "354 end with <CRLF>.<CRLF>");
+                        final var message = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals("."))
+                            message.append(line).append('\n');
+                        deliveredMessages.add(message.toString());
+                        reply(out, "250 OK");
+                    }
+                    else if (command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    }
+                    else {
+                        reply(out, "250 OK");
+                    }
+                }
+            }
+            catch (IOException ignored) {}
+        }
+
+        private static void reply(final PrintWriter out, final String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package twoauth.apigateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import twoauth.apigateway.model.AuthRequest;
+
+import javax.net.ssl.KeyManagerFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (look at p0.99) of the API Gateway login, against a local TLS stand-in of the Backend
+ * that answers immediately, so that only the cost of the connections to the Backend is measured.
+ * <ul>
+ *     <li>DEFAULT: the client used before, {@code WebClient.builder().build()};</li>
+ *     <li>NEW_CONNECTION: a new connection and TLS handshake for every login;</li>
+ *     <li>POOLED and POOLED_HTTP2: the client configured by {@link WebClientConfig}.</li>
+ * </ul>
+ * The stand-in shares the CPUs of the benchmark, change the concurrent logins with e.g. {@code -t 16}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class BackendLoginBenchmark
+{
+    private static final char[] KEY_STORE_PASSWORD = "benchmark".toCharArray();
+
+    @Param({ "DEFAULT", "NEW_CONNECTION", "POOLED", "POOLED_HTTP2" })
+    public String client;
+
+    private DisposableServer backend;
+    private ConnectionProvider connectionProvider;
+    private AuthenticationController authenticationController;
+
+    @Setup
+    public void setup() throws Exception {
+        backend = newBackendStandIn();
+
+        final var insecureHttp11 = Http11SslContextSpec.forClient()
+                .configure(builder -> builder.trustManager(InsecureTrustManagerFactory.INSTANCE));
+        final var insecureHttp2 = Http2SslContextSpec.forClient()
+                .configure(builder -> builder.trustManager(InsecureTrustManagerFactory.INSTANCE));
+        connectionProvider = WebClientConfig.newBackendConnectionProvider(
+                100, Duration.ofSeconds(5), Duration.ofSeconds(15), Duration.ofMinutes(5)
+        );
+
+        final HttpClient httpClient = switch (client) {
+            case "DEFAULT" -> HttpClient.create()
+                    .secure(spec -> spec.sslContext(insecureHttp11));
+            case "NEW_CONNECTION" -> HttpClient.newConnection()
+                    .secure(spec -> spec.sslContext(insecureHttp11));
+            case "POOLED" -> WebClientConfig.newBackendHttpClient(
+                    connectionProvider, Duration.ofSeconds(2), Duration.ofSeconds(10), false
+            ).secure(spec -> spec.sslContext(insecureHttp11));
+            case "POOLED_HTTP2" -> WebClientConfig.newBackendHttpClient(
+                    connectionProvider, Duration.ofSeconds(2), Duration.ofSeconds(10), true
+            ).secure(spec -> spec.sslContext(insecureHttp2));
+            default -> throw new IllegalArgumentException("Unknown client " + client);
+        };
+
+        final WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        authenticationController = new AuthenticationController(
+                "localhost", backend.port(), true, new NoOpSecurityContextRepository(), webClient, new ObjectMapper(),
+                new SimpleMeterRegistry()
+        );
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionProvider.disposeLater().block();
+        backend.disposeNow();
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> login() {
+        final ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/login"));
+        final var request = new AuthRequest("benchmark@email.com", "a2R_a2R_", null);
+        final ResponseEntity<Object> response = authenticationController.login(request, exchange).block();
+        if (response == null || !response.getStatusCode().is2xxSuccessful())
+            throw new IllegalStateException("Login failed: " + response);
+        return response;
+    }
+
+    private static DisposableServer newBackendStandIn() throws Exception {
+        final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        final String jws = encoder.encodeToString("{\"alg\":\"HS512\"}".getBytes(StandardCharsets.UTF_8)) + '.' +
+                encoder.encodeToString("{\"sub\":\"benchmark@email.com\"}".getBytes(StandardCharsets.UTF_8)) + '.' +
+                encoder.encodeToString(new byte[64]);
+        final String body = "{\"jwt\":\"" + jws + "\"}";
+
+        return HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2)
+                .secure(spec -> spec.sslContext(Http2SslContextSpec.forServer(newKeyManagerFactory())))
+                .route(routes -> routes.post("/login", (request, response) -> request.receive().then()
+                        .then(response.header("Content-Type", "application/json").sendString(Mono.just(body)).then())))
+                .bindNow();
+    }
+
+    /**
+     * @return the self-signed certificate of the stand-in, generated with the keytool of the running JDK.
+     */
+    private static KeyManagerFactory newKeyManagerFactory() {
+        try {
+            final Path directory = Files.createTempDirectory("2auth-benchmark");
+            final File keyStoreFile = directory.resolve("backend.p12").toFile();
+            final String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+            final Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "backend",
+                    "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost", "-validity", "1",
+                    "-storetype", "PKCS12", "-keystore", keyStoreFile.getPath(),
+                    "-storepass", new String(KEY_STORE_PASSWORD))
+                    .inheritIO()
+                    .start();
+            if (process.waitFor() != 0)
+                throw new IllegalStateException("keytool failed.");
+
+            final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (final InputStream in = new FileInputStream(keyStoreFile)) {
+                keyStore.load(in, KEY_STORE_PASSWORD);
+            }
+            Files.delete(keyStoreFile.toPath());
+            Files.delete(directory);
+
+            final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+            return keyManagerFactory;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Cannot create the key store of the Backend stand-in.", e);
+        }
+    }
+
+    private static final class NoOpSecurityContextRepository implements ServerSecurityContextRepository
+    {
+        @Override
+        public Mono<Void> save(final ServerWebExchange exchange, final SecurityContext context) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<SecurityContext> load(final ServerWebExchange exchange) {
+            return Mono.empty();
+        }
+    }
+}
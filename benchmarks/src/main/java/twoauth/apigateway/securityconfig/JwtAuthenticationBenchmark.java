@@ -0,0 +1,41 @@
+package twoauth.apigateway.securityconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of extracting the subject from the JWS payload, done by the API Gateway on every login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationBenchmark
+{
+    private ObjectMapper objectMapper;
+    private String jws;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+
+        final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        final String header = "{\"kid\":\"Rk9PQkFSQkFa\",\"alg\":\"HS512\"}";
+        final String payload = "{\"sub\":\"benchmark@email.com\",\"iat\":1735686000,\"exp\":1735714800," +
+                "\"permissions\":[\"READ\",\"WRITE\"]}";
+        jws = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + '.' +
+                encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + '.' +
+                encoder.encodeToString(new byte[64]);
+    }
+
+    @Benchmark
+    public JwtAuthentication newJwtAuthentication() {
+        return new JwtAuthentication(jws, objectMapper);
+    }
+}
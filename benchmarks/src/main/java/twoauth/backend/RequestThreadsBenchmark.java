@@ -0,0 +1,141 @@
+package twoauth.backend;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the Backend request threads: platform threads (Tomcat default, 200 threads)
+ * against virtual threads (spring.threads.virtual.enabled, Java 21).
+ * <br/>
+ * Every operation sends {@code concurrency} requests at once to an embedded Tomcat, whose servlet
+ * waits {@code mongoLatencyMillis} like a request blocked on MongoDB. The throughput in requests per second
+ * is {@code concurrency / score}. The threads and the heap used by the server are printed after every iteration,
+ * add {@code -prof gc} for the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx512m" })
+public class RequestThreadsBenchmark
+{
+    private static final byte[] BODY = "{\"email\":\"benchmark@email.com\",\"firstName\":\"First\"}".getBytes();
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    public String threads;
+
+    @Param({ "200", "1000" })
+    public int concurrency;
+
+    @Param({ "10" })
+    public long mongoLatencyMillis;
+
+    private Path baseDir;
+    private Tomcat tomcat;
+    private ExecutorService clientExecutor;
+    private HttpClient httpClient;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        baseDir = Files.createTempDirectory("2auth-tomcat");
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+
+        final var connector = new Connector();
+        connector.setPort(0);
+        if ("VIRTUAL".equals(threads))
+            ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(new VirtualThreadExecutor("tomcat-handler-"));
+        tomcat.setConnector(connector);
+
+        final Context context = tomcat.addContext("", baseDir.toString());
+        Tomcat.addServlet(context, "user", new BlockingServlet(mongoLatencyMillis));
+        context.addServletMappingDecoded("/user", "user");
+        tomcat.start();
+
+        // few client threads, so that the printed threads are the ones of the server
+        clientExecutor = Executors.newFixedThreadPool(2);
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/user")).build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        clientExecutor.shutdownNow();
+        tomcat.stop();
+        tomcat.destroy();
+        try (final var files = Files.walk(baseDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printMemory() {
+        final var threadBean = ManagementFactory.getThreadMXBean();
+        final var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%n[%s] platform threads: %d (peak %d), heap used: %d MiB%n",
+                threads, threadBean.getThreadCount(), threadBean.getPeakThreadCount(), heap.getUsed() >> 20);
+    }
+
+    @Benchmark
+    public int requests() {
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<HttpResponse<Void>>[] responses = new CompletableFuture[concurrency];
+        for (int i = 0; i < concurrency; ++i)
+            responses[i] = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        CompletableFuture.allOf(responses).join();
+
+        int ok = 0;
+        for (final var response : responses)
+            ok += (response.join().statusCode() == 200) ? 1 : 0;
+        if (ok != concurrency)
+            throw new IllegalStateException((concurrency - ok) + " requests failed.");
+        return ok;
+    }
+
+    private static final class BlockingServlet extends HttpServlet
+    {
+        private final long latencyMillis;
+
+        BlockingServlet(final long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+            try {
+                Thread.sleep(latencyMillis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.setContentType("application/json");
+            resp.getOutputStream().write(BODY);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package twoauth.backend.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import twoauth.backend.security.model.AuthRequest;
+import twoauth.backend.security.model.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating the bodies of the registration and login requests, both valid,
+ * against the regex based LegacyValidator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark
+{
+    private User.RegistrationDto registrationDto;
+    private AuthRequest authRequest;
+
+    @Setup
+    public void setup() throws Exception {
+        final var objectMapper = new ObjectMapper();
+        registrationDto = objectMapper.readValue("""
+                {"email": "benchmark.user@email.com", "password": "aaBB11__",
+                 "firstName": "Benchmark", "lastName": "Test User", "permissions": ["READ", "WRITE"]}
+                """, User.RegistrationDto.class);
+        authRequest = objectMapper.readValue("""
+                {"email": "benchmark.user@email.com", "password": "aaBB11__"}
+                """, AuthRequest.class);
+    }
+
+    @Benchmark
+    public String validateUserRegistrationDto() {
+        return Validator.validateUserRegistrationDto(registrationDto);
+    }
+
+    @Benchmark
+    public String validateAuthRequest() {
+        return Validator.validateAuthRequest(authRequest);
+    }
+
+    @Benchmark
+    public String legacyValidateUserRegistrationDto() {
+        return LegacyValidator.validateUserRegistrationDto(registrationDto);
+    }
+
+    @Benchmark
+    public String legacyValidateAuthRequest() {
+        return LegacyValidator.validateAuthRequest(authRequest);
+    }
+}
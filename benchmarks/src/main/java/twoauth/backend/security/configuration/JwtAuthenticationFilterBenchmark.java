@@ -0,0 +1,142 @@
+package twoauth.backend.security.configuration;
+
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import twoauth.backend.security.model.StdJwtClaims;
+import twoauth.backend.security.model.User;
+import twoauth.backend.security.repository.UserSecurityRepository;
+import twoauth.backend.security.service.BenchmarkKeyStores;
+import twoauth.backend.security.service.InMemoryRevokedJwsRepository;
+import twoauth.backend.security.service.JwsRevocationList;
+import twoauth.backend.security.service.JwtKeyStore;
+import twoauth.backend.security.service.JwtSigningKey;
+import twoauth.backend.security.service.UserTokenVersions;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the JwtAuthenticationFilter, for a JWS already verified (the API Gateway
+ * relays the same JWS on every request) and for a JWS never seen before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark
+{
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {};
+
+    private ScheduledExecutorService executor;
+    private JwsVerifier jwsVerifier;
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private String jws;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        final JwtKeyStore keyStore = BenchmarkKeyStores.newInMemoryJwtKeyStore(new ConcurrentTaskScheduler(executor));
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var verificationMetrics = new JwsVerificationMetrics(meterRegistry);
+        jwsVerifier = new JwsVerifier(10_000L, keyStore, verificationMetrics, meterRegistry);
+        final var revocationList = new JwsRevocationList(10_000, 0.01, 60_000L, 3_600_000L, 28_800_000L,
+                new InMemoryRevokedJwsRepository(), new ConcurrentTaskScheduler(executor), new SimpleMeterRegistry());
+        final var tokenVersions = new UserTokenVersions(10_000L, 30_000L, new ConstantTokenVersionRepository(),
+                new SimpleMeterRegistry());
+        filter = new JwtAuthenticationFilter(jwsVerifier, revocationList, tokenVersions, verificationMetrics);
+
+        final JwtSigningKey signingKey = keyStore.getSigningKey();
+        final long nowInMillis = System.currentTimeMillis();
+        jws = Jwts.builder()
+                .header().keyId(signingKey.id()).and()
+                .id(UUID.randomUUID().toString())
+                .subject("benchmark@email.com")
+                .issuedAt(new Date(nowInMillis))
+                .expiration(new Date(nowInMillis + 28_800_000L))
+                .claim(StdJwtClaims.PERMISSIONS, List.of("READ", "WRITE"))
+                .claim(StdJwtClaims.TOKEN_VERSION, 0L)
+                .signWith(signingKey.key())
+                .compact();
+
+        request = new MockHttpServletRequest("GET", "/user");
+        request.addHeader("Authorization", "Bearer " + jws);
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Authentication filterVerifiedJws() throws ServletException, IOException {
+        try {
+            filter.doFilter(request, response, NO_OP_CHAIN);
+            return SecurityContextHolder.getContext().getAuthentication();
+        }
+        finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Benchmark
+    public VerifiedJws verifyNewJws() {
+        return jwsVerifier.parse(jws, System.currentTimeMillis());
+    }
+
+    /**
+     * MongoDB stand-in: every user exists with the token version 0.
+     */
+    private static final class ConstantTokenVersionRepository implements UserSecurityRepository
+    {
+        @Override
+        public Optional<UserDetails> findUserDetailsById(final String email) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean save(final User user) {
+            return false;
+        }
+
+        @Override
+        public boolean optimisticLockEnableUserAccount(final User user) {
+            return false;
+        }
+
+        @Override
+        public boolean optimisticLockUpdatePassword(final User user, final String newPassword) {
+            return false;
+        }
+
+        @Override
+        public OptionalLong findTokenVersionById(final String email) {
+            return OptionalLong.of(0L);
+        }
+
+        @Override
+        public OptionalLong incrementTokenVersion(final String email) {
+            return OptionalLong.empty();
+        }
+    }
+}
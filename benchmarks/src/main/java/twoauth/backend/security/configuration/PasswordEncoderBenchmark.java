@@ -0,0 +1,49 @@
+package twoauth.backend.security.configuration;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password verifications per second (one per login) of every password encoder setting.
+ * <br/>
+ * The setting is {@code BCRYPT-<strength>} or {@code ARGON2-<memoryInKiB>-<iterations>-<parallelism>},
+ * run a subset with e.g. {@code -p setting=BCRYPT-10,BCRYPT-12}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordEncoderBenchmark
+{
+    private static final String PASSWORD = "a2R_a2R_a2R_";
+
+    @Param({
+            "BCRYPT-10", "BCRYPT-11", "BCRYPT-12", "BCRYPT-13",
+            "ARGON2-19456-2-1", "ARGON2-47104-1-1", "ARGON2-65536-3-4"
+    })
+    public String setting;
+
+    private PasswordEncoder passwordEncoder;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        final String[] parts = setting.split("-");
+        final var type = PasswordEncoderType.valueOf(parts[0]);
+        passwordEncoder = switch (type) {
+            case BCRYPT -> PasswordEncoderFactory.newPasswordEncoder(type, Integer.parseInt(parts[1]), 19456, 2, 1);
+            case ARGON2 -> PasswordEncoderFactory.newPasswordEncoder(
+                    type, 12, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        };
+        hash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, hash);
+    }
+}
@@ -0,0 +1,15 @@
+package twoauth.backend.security.service;
+
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Gives the benchmarks of other packages access to the package-private key stores.
+ */
+public final class BenchmarkKeyStores
+{
+    private BenchmarkKeyStores() {}
+
+    public static JwtKeyStore newInMemoryJwtKeyStore(final TaskScheduler taskScheduler) {
+        return new InMemoryJwtKeyStore(86_400_000L, 28_800_000L, "HS512", taskScheduler, event -> {});
+    }
+}
@@ -0,0 +1,40 @@
+package twoauth.backend.security.service;
+
+import twoauth.backend.security.model.RevokedJws;
+import twoauth.backend.security.repository.RevokedJwsRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MongoDB stand-in of the benchmarks, so that a positive hit of the revocation filter costs only a map lookup.
+ */
+public final class InMemoryRevokedJwsRepository implements RevokedJwsRepository
+{
+    private final Map<String, RevokedJws> revoked = new ConcurrentHashMap<>();
+
+    @Override
+    public void ensureIndexes() {}
+
+    @Override
+    public boolean save(final RevokedJws revokedJws) {
+        revoked.put(revokedJws.id(), revokedJws);
+        return true;
+    }
+
+    @Override
+    public boolean existsById(final String id) {
+        return revoked.containsKey(id);
+    }
+
+    @Override
+    public List<String> findIdsRevokedSince(final Date since, final Date now) {
+        return revoked.values()
+                .stream()
+                .filter(jws -> !jws.revokedAt().before(since) && jws.expireAt().after(now))
+                .map(RevokedJws::id)
+                .toList();
+    }
+}
@@ -0,0 +1,52 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import twoauth.backend.security.model.User;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of signing the JWS returned by a successful login, password check excluded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwsCreationBenchmark
+{
+    private ScheduledExecutorService executor;
+    private JwtLoginService loginService;
+    private User user;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        final var keyStore = new InMemoryJwtKeyStore(
+                86_400_000L, 28_800_000L, "HS512", new ConcurrentTaskScheduler(executor), event -> {});
+        // only the signing is benchmarked: no authentication, repository, hashing pool or rate limiter
+        loginService = new JwtLoginService(28_800_000L, null, keyStore, null, null, null,
+                new LoginMetrics(new SimpleMeterRegistry()));
+
+        final var now = new Date();
+        user = new User("benchmark@email.com", null, "First", "Last", now, now,
+                List.of("READ", "WRITE"), true, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public String newJws() {
+        return loginService.newJws(user, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,67 @@
+package twoauth.backend.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the revocation check of every authenticated request, with {@code revocations} revoked JWS:
+ * a JWS that is not revoked is answered by the Bloom filter alone.
+ * The size of the filter is printed at the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwsRevocationListBenchmark
+{
+    @Param({ "10000" })
+    public int revocations;
+
+    private ScheduledExecutorService executor;
+    private JwsRevocationList revocationList;
+    private String[] notRevoked;
+    private String revoked;
+    private int next;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        revocationList = new JwsRevocationList(revocations, 0.01, 60_000L, 3_600_000L, 28_800_000L,
+                new InMemoryRevokedJwsRepository(), new ConcurrentTaskScheduler(executor), new SimpleMeterRegistry());
+
+        final long expirationInMillis = System.currentTimeMillis() + 28_800_000L;
+        for (int i = 0; i < revocations; ++i)
+            revocationList.revoke(UUID.randomUUID().toString(), expirationInMillis);
+        revoked = UUID.randomUUID().toString();
+        revocationList.revoke(revoked, expirationInMillis);
+
+        System.out.printf("%nBloom filter of %d revocations: %d bytes%n", revocations + 1, revocationList.getFilterSizeInBytes());
+
+        notRevoked = new String[1024];
+        for (int i = 0; i < notRevoked.length; ++i)
+            notRevoked[i] = UUID.randomUUID().toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean isRevoked_NotRevoked() {
+        return revocationList.isRevoked(notRevoked[next++ & (notRevoked.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean isRevoked_Revoked() {
+        return revocationList.isRevoked(revoked);
+    }
+}
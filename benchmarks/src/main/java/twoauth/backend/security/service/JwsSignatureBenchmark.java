@@ -0,0 +1,57 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the JWS signature (done once per login by the Backend) and of its verification
+ * (done for every request, by the Backend or by the API Gateway with the public key) for each signature algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwsSignatureBenchmark
+{
+    @Param({"HS512", "ED25519", "ES256"})
+    private String algorithm;
+
+    private JwtSigningKey signingKey;
+    private JwtParser parser;
+    private String jws;
+
+    @Setup
+    public void setup() {
+        signingKey = JwtSignatureAlgorithm.valueOf(algorithm).newKey("benchmark");
+        parser = Jwts.parser()
+                .keyLocator(header -> signingKey.verificationKey())
+                .build();
+        jws = sign();
+    }
+
+    @Benchmark
+    public String sign() {
+        final long nowInMillis = System.currentTimeMillis();
+        return Jwts.builder()
+                .header().keyId(signingKey.id()).and()
+                .subject("benchmark@email.com")
+                .issuedAt(new Date(nowInMillis))
+                .expiration(new Date(nowInMillis + 28_800_000L))
+                .claim("permissions", List.of("READ", "WRITE"))
+                .signWith(signingKey.key())
+                .compact();
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return parser.parseSignedClaims(jws).getPayload();
+    }
+}
@@ -0,0 +1,71 @@
+package twoauth.backend.security.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the JWS verification done by the JwtAuthenticationFilter:
+ * a parser built for every request against the parser cached by the key store,
+ * which resolves the key from the "kid" header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtParserBenchmark
+{
+    private ScheduledExecutorService executor;
+    private JwtKeyStore keyStore;
+    private JwtSigningKey signingKey;
+    private String jws;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        keyStore = new InMemoryJwtKeyStore(
+                86_400_000L, 28_800_000L, "HS512", new ConcurrentTaskScheduler(executor), event -> {});
+        signingKey = keyStore.getSigningKey();
+
+        final long nowInMillis = System.currentTimeMillis();
+        jws = Jwts.builder()
+                .header().keyId(signingKey.id()).and()
+                .subject("benchmark@email.com")
+                .issuedAt(new Date(nowInMillis))
+                .expiration(new Date(nowInMillis + 28_800_000L))
+                .claim("permissions", List.of("READ", "WRITE"))
+                .signWith(signingKey.key())
+                .compact();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Claims parserBuiltPerRequest() {
+        return Jwts.parser()
+                .verifyWith((SecretKey) signingKey.key())
+                .build()
+                .parseSignedClaims(jws)
+                .getPayload();
+    }
+
+    @Benchmark
+    public Claims cachedParser() {
+        return keyStore.getParser()
+                .parseSignedClaims(jws)
+                .getPayload();
+    }
+}
@@ -0,0 +1,35 @@
+package twoauth.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH writing the results as JSON, so that two releases can be compared.
+ * <br/>
+ * Every JMH option is accepted. An explicit {@code -rff} keeps the JSON format ({@code -rff validator.json}),
+ * an explicit {@code -rf} keeps the JMH file name of its format ({@code -rf csv} writes jmh-result.csv).
+ */
+public final class BenchmarksMain
+{
+    private static final String RESULT_FORMAT = "-rf";
+    private static final String RESULT_FILE = "-rff";
+
+    private BenchmarksMain() {}
+
+    public static void main(final String[] args) throws Exception
+    {
+        final List<String> options = Arrays.asList(args);
+        final List<String> jsonArgs = new ArrayList<>(args.length + 4);
+        if (! options.contains(RESULT_FORMAT)) {
+            jsonArgs.addAll(List.of(RESULT_FORMAT, "json"));
+            if (! options.contains(RESULT_FILE))
+                jsonArgs.addAll(List.of(RESULT_FILE, "jmh-result.json"));
+        }
+        jsonArgs.addAll(options);
+
+        Main.main(jsonArgs.toArray(String[]::new));
+    }
+}
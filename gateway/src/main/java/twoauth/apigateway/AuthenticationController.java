@@ -1,15 +1,20 @@
 package twoauth.apigateway;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import twoauth.apigateway.model.AuthRequest;
 import twoauth.apigateway.model.ErrorWrapper;
 import twoauth.apigateway.model.JwtResponse;
 import twoauth.apigateway.model.User;
 import twoauth.apigateway.securityconfig.JwtAuthentication;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.web.server.context.ServerSecurityContextRepository;
@@ -17,21 +22,30 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 class AuthenticationController
 {
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
     private final URI registrationURI;
     private final URI loginURI;
     private final ServerSecurityContextRepository securityContextRepository;
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final Meter.MeterProvider<Timer> registrationTimers;
+    private final Meter.MeterProvider<Timer> loginTimers;
 
     public AuthenticationController(
             @Value("${2Auth.backend-domain:localhost}") String backendDomain,
@@ -39,7 +53,8 @@ class AuthenticationController
             @Value("${server.ssl.enabled:false}") boolean isSslEnabled,
             ServerSecurityContextRepository securityContextRepository,
             WebClient webClient,
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
     ) {
         final String scheme = isSslEnabled ? "https" : "http";
         try {
@@ -53,11 +68,18 @@ class AuthenticationController
         this.securityContextRepository = securityContextRepository;
         this.webClient = webClient;
         this.objectMapper = objectMapper;
+        this.registrationTimers = Timer.builder("twoauth.gateway.registration")
+                .description("Time spent by a registration through the Backend, by status")
+                .withRegistry(meterRegistry);
+        this.loginTimers = Timer.builder("twoauth.gateway.login")
+                .description("Time spent by a login through the Backend, by status")
+                .withRegistry(meterRegistry);
     }
 
     @PostMapping("/registration")
     public Mono<ResponseEntity<Object>> registration(@RequestBody final User user)
     {
+        final long startInNanos = System.nanoTime();
         return handleBadRequestStatus(
                     webClient.post()
                         .uri(registrationURI)
@@ -72,18 +94,31 @@ class AuthenticationController
                 .onErrorResume(e -> {
                     if (e instanceof AuthBadRequestException)
                         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage()));
+                    final ResponseEntity<Object> serviceUnavailable = getServiceUnavailable(e);
+                    if (serviceUnavailable != null)
+                        return Mono.just(serviceUnavailable);
                     return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
                 })
+                .doOnNext(response -> record(registrationTimers, startInNanos, response))
                 .doFinally(__ -> user.eraseCredentials());
 
     }
 
+    /**
+     * The address of the client is sent in the X-Forwarded-For header, the Backend rate limits the logins with it.
+     */
     @PostMapping("/login")
     public Mono<ResponseEntity<Object>> login(@RequestBody final AuthRequest request,
                                               final ServerWebExchange exchange) {
+        final long startInNanos = System.nanoTime();
+        final InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
         return handleBadRequestStatus(
                     webClient.post()
                         .uri(loginURI)
+                        .headers(headers -> {
+                            if (remoteAddress != null && remoteAddress.getAddress() != null)
+                                headers.set(FORWARDED_FOR_HEADER, remoteAddress.getAddress().getHostAddress());
+                        })
                         .contentType(MediaType.APPLICATION_JSON)
                         .bodyValue(request)
                         .accept(MediaType.APPLICATION_JSON)
@@ -92,7 +127,7 @@ class AuthenticationController
                 )
                 .bodyToMono(JwtResponse.class)
                 .flatMap(response -> {
-                    final SecurityContext context = new SecurityContextImpl(new JwtAuthentication(response.jwt(), objectMapper));
+                    final SecurityContext context = new SecurityContextImpl(new JwtAuthentication(response.jwt(), response.refreshToken(), objectMapper));
                     return securityContextRepository.save(exchange, context)
                             .thenReturn(ResponseEntity.ok().build());
                 })
@@ -100,11 +135,55 @@ class AuthenticationController
                 .onErrorResume(e -> {
                     if (e instanceof AuthBadRequestException)
                         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage()));
+                    // too many logins of the client or of the email, the credentials were not checked
+                    if (e instanceof WebClientResponseException.TooManyRequests tooManyRequests)
+                        return Mono.just(getTooManyRequests(tooManyRequests));
+                    final ResponseEntity<Object> serviceUnavailable = getServiceUnavailable(e);
+                    if (serviceUnavailable != null)
+                        return Mono.just(serviceUnavailable);
                     return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
                 })
+                .doOnNext(response -> record(loginTimers, startInNanos, response))
                 .doFinally(__ -> request.eraseCredentials());
     }
 
+    private static void record(final Meter.MeterProvider<Timer> timers, final long startInNanos,
+                               final ResponseEntity<?> response) {
+        timers.withTag("status", Integer.toString(response.getStatusCode().value()))
+                .record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static ResponseEntity<Object> getTooManyRequests(final WebClientResponseException.TooManyRequests e)
+    {
+        final String retryAfter = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        final var response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+        if (retryAfter != null)
+            response.header(HttpHeaders.RETRY_AFTER, retryAfter);
+        return response.build();
+    }
+
+    /**
+     * @return 503 with the Retry-After of the Backend (1 second if it has none), or null if the error
+     * is not an overload: the credentials were not checked, the client can retry.
+     */
+    @Nullable
+    private static ResponseEntity<Object> getServiceUnavailable(final Throwable e)
+    {
+        final String retryAfter;
+        // the backend is saturated by other password hashings
+        if (e instanceof WebClientResponseException.ServiceUnavailable serviceUnavailable)
+            retryAfter = serviceUnavailable.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        // every connection to the backend is busy, the request was not sent
+        else if (e instanceof WebClientRequestException && e.getCause() instanceof TimeoutException)
+            retryAfter = null;
+        else
+            return null;
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, (retryAfter != null) ? retryAfter : "1")
+                .build();
+    }
+
     private WebClient.ResponseSpec handleBadRequestStatus(final WebClient.ResponseSpec request) {
         return request.onStatus(
                 status -> status.isSameCodeAs(HttpStatus.BAD_REQUEST),
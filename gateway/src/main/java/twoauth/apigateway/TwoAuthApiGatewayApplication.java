@@ -2,9 +2,18 @@ package twoauth.apigateway;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
 
-@SpringBootApplication(exclude = { ReactiveUserDetailsServiceAutoConfiguration.class })
+// MongoDB is used only by 2Auth.session-store.type=MONGO, see SessionStoreConfiguration
+@SpringBootApplication(exclude = {
+		ReactiveUserDetailsServiceAutoConfiguration.class,
+		MongoReactiveAutoConfiguration.class,
+		MongoReactiveDataAutoConfiguration.class,
+		MongoReactiveRepositoriesAutoConfiguration.class
+})
 public class TwoAuthApiGatewayApplication {
 
 	public static void main(String[] args) {
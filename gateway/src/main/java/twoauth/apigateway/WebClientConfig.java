@@ -1,14 +1,119 @@
 package twoauth.apigateway;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * WebClient used for the login and registration calls to the Backend.
+ * <br/>
+ * The connections are kept alive in a dedicated pool, so that the TLS handshake is not repeated
+ * on every call. The pool and the client publish their metrics to Micrometer with the names
+ * {@code reactor.netty.connection.provider.*} and {@code reactor.netty.http.client.*}.
+ */
 @Configuration
 class WebClientConfig
 {
+    static final String BACKEND_CONNECTION_PROVIDER_NAME = "backend";
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider backendConnectionProvider(
+            @Value("${2Auth.backend-client.max-connections:100}") int maxConnections,
+            @Value("${2Auth.backend-client.pending-acquire-timeout-in-millis:5000}") long pendingAcquireTimeoutInMillis,
+            @Value("${2Auth.backend-client.max-idle-time-in-millis:15000}") long maxIdleTimeInMillis,
+            @Value("${2Auth.backend-client.max-life-time-in-millis:300000}") long maxLifeTimeInMillis
+    ) {
+        if (maxConnections <= 0)
+            maxConnections = 100;
+        if (pendingAcquireTimeoutInMillis <= 0)
+            pendingAcquireTimeoutInMillis = 5000;
+        if (maxIdleTimeInMillis <= 0)
+            maxIdleTimeInMillis = 15000;
+        if (maxLifeTimeInMillis <= 0)
+            maxLifeTimeInMillis = 300000;
+
+        return newBackendConnectionProvider(
+                maxConnections,
+                Duration.ofMillis(pendingAcquireTimeoutInMillis),
+                Duration.ofMillis(maxIdleTimeInMillis),
+                Duration.ofMillis(maxLifeTimeInMillis)
+        );
+    }
+
     @Bean
-    WebClient webClient() {
-        return WebClient.builder().build();
+    WebClient webClient(
+            final ConnectionProvider backendConnectionProvider,
+            @Value("${2Auth.backend-client.connect-timeout-in-millis:2000}") int connectTimeoutInMillis,
+            @Value("${2Auth.backend-client.response-timeout-in-millis:10000}") long responseTimeoutInMillis,
+            @Value("${2Auth.backend-client.http2-enabled:false}") boolean isHttp2Enabled,
+            @Value("${server.ssl.enabled:false}") boolean isSslEnabled
+    ) {
+        if (connectTimeoutInMillis <= 0)
+            connectTimeoutInMillis = 2000;
+        if (responseTimeoutInMillis <= 0)
+            responseTimeoutInMillis = 10000;
+
+        final HttpClient httpClient = newBackendHttpClient(
+                backendConnectionProvider,
+                Duration.ofMillis(connectTimeoutInMillis),
+                Duration.ofMillis(responseTimeoutInMillis),
+                // the Backend is called with https only when SSL is enabled, see AuthenticationController
+                isHttp2Enabled && isSslEnabled
+        );
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    static ConnectionProvider newBackendConnectionProvider(
+            final int maxConnections,
+            final Duration pendingAcquireTimeout,
+            final Duration maxIdleTime,
+            final Duration maxLifeTime
+    ) {
+        return ConnectionProvider.builder(BACKEND_CONNECTION_PROVIDER_NAME)
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                // idle connections are closed before the Backend closes them
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(maxIdleTime)
+                // most recently used first, so that the connections in excess become idle and are evicted
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * @param isHttp2Enabled if true, HTTP/2 is negotiated with ALPN over TLS, with fallback to HTTP/1.1.
+     */
+    static HttpClient newBackendHttpClient(
+            final ConnectionProvider connectionProvider,
+            final Duration connectTimeout,
+            final Duration responseTimeout,
+            final boolean isHttp2Enabled
+    ) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout)
+                .keepAlive(true)
+                // only the login and registration URIs are called, the uri tag has few values
+                .metrics(true, Function.identity());
+
+        if (isHttp2Enabled) {
+            httpClient = httpClient
+                    .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                    .secure();
+        }
+        return httpClient;
     }
 }
@@ -1,3 +1,3 @@
 package twoauth.apigateway.model;
 
-public record JwtResponse(String jwt) {}
+public record JwtResponse(String jwt, String refreshToken) {}
@@ -0,0 +1,3 @@
+package twoauth.apigateway.model;
+
+public record RefreshRequest(String refreshToken) {}
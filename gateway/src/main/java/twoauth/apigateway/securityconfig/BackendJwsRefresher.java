@@ -0,0 +1,132 @@
+package twoauth.apigateway.securityconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import twoauth.apigateway.model.JwtResponse;
+import twoauth.apigateway.model.RefreshRequest;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+
+/**
+ * Replaces the JWS of a session that is about to expire, or already expired, with a new one, signed by the Backend
+ * in exchange for the refresh token of the session (POST /token/refresh): the JWS can be short-lived, and an active
+ * user is logged out only at the end of the session time validity.
+ * <br/>
+ * Every refresh rotates the refresh token, the new one is saved in the session with the new JWS. The concurrent
+ * requests of a session share the same refresh, the instances refreshing the same session get the same new token.
+ * A new JWS without a refresh token (not rotated by the Backend) is only relayed: the session keeps its refresh token. If the Backend does not refresh the JWS, the old one is relayed
+ * until it expires, and the refresh is retried after a while.
+ */
+@Component
+public class BackendJwsRefresher
+{
+    static final String REFRESH_PATH = "/token/refresh";
+    // time a refresh is shared by the requests still holding the old JWS, and a failed refresh is not retried
+    private static final Duration SHARED_REFRESH_TIME = Duration.ofSeconds(10);
+    private static final Logger log = LoggerFactory.getLogger(BackendJwsRefresher.class);
+
+    private final boolean isEnabled;
+    private final long windowInMillis;
+    private final URI refreshURI;
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final ServerSecurityContextRepository securityContextRepository;
+    private final Cache<String, Mono<JwtAuthentication>> refreshes;
+    private final Counter refreshedCounter;
+    private final Counter notRefreshedCounter;
+
+    public BackendJwsRefresher(
+            @Value("${2Auth.jws-refresh.enabled:true}") boolean isEnabled,
+            @Value("${2Auth.jws-refresh.window-in-millis:600000}") long windowInMillis,
+            @Value("${2Auth.backend-domain:localhost}") String backendDomain,
+            @Value("${2Auth.backend-port:-1}") int backendPort,
+            @Value("${server.ssl.enabled:false}") boolean isSslEnabled,
+            final WebClient webClient,
+            final ObjectMapper objectMapper,
+            final ServerSecurityContextRepository securityContextRepository,
+            final MeterRegistry meterRegistry
+    ) {
+        try {
+            refreshURI = new URI(isSslEnabled ? "https" : "http", null, backendDomain, backendPort, REFRESH_PATH, null, null);
+        }
+        catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid backend refresh URI.");
+        }
+
+        this.isEnabled = isEnabled;
+        this.windowInMillis = (windowInMillis < 0) ? 600_000L : windowInMillis;
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+        this.securityContextRepository = securityContextRepository;
+        this.refreshes = Caffeine.newBuilder()
+                .expireAfterWrite(SHARED_REFRESH_TIME)
+                .build();
+        this.refreshedCounter = newCounter(meterRegistry, "refreshed");
+        this.notRefreshedCounter = newCounter(meterRegistry, "not_refreshed");
+    }
+
+    private static Counter newCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("twoauth.gateway.jws.refreshes")
+                .description("JWS of the sessions refreshed by the Backend with their refresh token, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if the session has a refresh token and its JWS expires within the refresh window (or expired),
+     * false if the expiration is unknown.
+     */
+    public boolean isRefreshable(final JwtAuthentication jwtAuth, final long nowInMillis) {
+        return isEnabled && jwtAuth.getRefreshToken() != null && jwtAuth.getExpirationInMillis() != 0L
+                && jwtAuth.getExpirationInMillis() - nowInMillis <= windowInMillis;
+    }
+
+    /**
+     * Saves the refreshed JWS in the session of the exchange.
+     * @return the refreshed authentication, or the same authentication if the Backend did not refresh it.
+     */
+    public Mono<JwtAuthentication> refresh(final ServerWebExchange exchange, final JwtAuthentication jwtAuth)
+    {
+        return refreshes.get(jwtAuth.getRefreshToken(), __ -> requestRefresh(jwtAuth.getRefreshToken()))
+                .flatMap(refreshed -> (refreshed.getRefreshToken() == null)
+                        ? Mono.just(refreshed)
+                        : securityContextRepository.save(exchange, new SecurityContextImpl(refreshed))
+                                .thenReturn(refreshed))
+                .defaultIfEmpty(jwtAuth);
+    }
+
+    private Mono<JwtAuthentication> requestRefresh(final String refreshToken)
+    {
+        return webClient.post()
+                .uri(refreshURI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(new RefreshRequest(refreshToken))
+                .retrieve()
+                .bodyToMono(JwtResponse.class)
+                .map(response -> new JwtAuthentication(response.jwt(), response.refreshToken(), objectMapper))
+                .doOnNext(__ -> refreshedCounter.increment())
+                // 401 when the refresh token expired, was used again or the user changed the password
+                .onErrorResume(e -> {
+                    log.debug("JWS not refreshed: {}", e.getMessage());
+                    notRefreshedCounter.increment();
+                    return Mono.empty();
+                })
+                .cache();
+    }
+}
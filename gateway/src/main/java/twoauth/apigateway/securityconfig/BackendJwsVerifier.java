@@ -0,0 +1,242 @@
+package twoauth.apigateway.securityconfig;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.Jwks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies the signature and the expiration of the JWS with the public keys of the Backend, read from its JWK Set:
+ * a forged or expired JWS is rejected by the API Gateway, without proxying the request.
+ * Enabled with {@code 2Auth.local-jws-verification.enabled}, the Backend must sign with ED25519 or ES256.
+ * <br/>
+ * Only a JWS signed with a known key is judged: with an unknown "kid" (a key newer than the last read, or a HS512 key)
+ * the request is relayed and the Backend decides, while the keys are read again.
+ * The keys are read every refresh interval, the verified JWS are remembered until they expire.
+ */
+@Component
+public class BackendJwsVerifier implements DisposableBean
+{
+    public enum Result { VALID, INVALID, EXPIRED, UNKNOWN_KEY }
+
+    static final String JWKS_PATH = "/.well-known/jwks.json";
+    // minimum time between two reads of the keys caused by an unknown "kid"
+    private static final long MIN_REFRESH_INTERVAL_IN_MILLIS = 5000L;
+    private static final MediaType JWK_SET = MediaType.parseMediaType("application/jwk-set+json");
+    private static final Logger log = LoggerFactory.getLogger(BackendJwsVerifier.class);
+
+    private final boolean isEnabled;
+    private final URI jwksURI;
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final JwtParser parser;
+    private final Cache<String, Long> verified;
+    private final Map<Result, Counter> counters = new EnumMap<>(Result.class);
+    private final AtomicLong lastRefreshInMillis = new AtomicLong();
+    private final Disposable polling;
+    private volatile Map<String, PublicKey> publicKeys = Map.of();
+
+    public BackendJwsVerifier(
+            @Value("${2Auth.local-jws-verification.enabled:false}") boolean isEnabled,
+            @Value("${2Auth.local-jws-verification.refresh-interval-in-millis:60000}") long refreshInterval,
+            @Value("${2Auth.local-jws-verification.verified-cache-maximum-size:10000}") long maximumSize,
+            @Value("${2Auth.backend-domain:localhost}") String backendDomain,
+            @Value("${2Auth.backend-port:-1}") int backendPort,
+            @Value("${server.ssl.enabled:false}") boolean isSslEnabled,
+            final WebClient webClient,
+            final ObjectMapper objectMapper,
+            final MeterRegistry meterRegistry
+    ) {
+        try {
+            jwksURI = new URI(isSslEnabled ? "https" : "http", null, backendDomain, backendPort, JWKS_PATH, null, null);
+        }
+        catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid backend JWK Set URI.");
+        }
+
+        this.isEnabled = isEnabled;
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        final PublicKey publicKey = publicKeys.get(header.getKeyId());
+                        if (publicKey == null)
+                            throw new UnknownKeyException();
+                        return publicKey;
+                    }
+                })
+                .build();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize((maximumSize < 0) ? 10_000L : maximumSize)
+                .expireAfter(new ExpireWithJws())
+                .build();
+        for (final Result result : Result.values()) {
+            counters.put(result, Counter.builder("twoauth.gateway.jws.verifications")
+                    .description("JWS verified by the API Gateway before relaying them, by result")
+                    .tag("result", result.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+
+        this.polling = isEnabled
+                ? Flux.interval(Duration.ZERO, Duration.ofMillis((refreshInterval < 1) ? 60_000L : refreshInterval))
+                        .onBackpressureDrop()
+                        .concatMap(__ -> refresh())
+                        .subscribe()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Never blocks.
+     */
+    public Result verify(final String jws)
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        final Long expirationInMillis = verified.getIfPresent(jws);
+        if (expirationInMillis != null)
+            return count((nowInMillis < expirationInMillis) ? Result.VALID : Result.EXPIRED);
+
+        final Date expiration;
+        try {
+            expiration = parser.parseSignedClaims(jws).getPayload().getExpiration();
+        }
+        catch (UnknownKeyException e) {
+            requestRefresh(nowInMillis);
+            return count(Result.UNKNOWN_KEY);
+        }
+        catch (ExpiredJwtException e) {
+            return count(Result.EXPIRED);
+        }
+        catch (JwtException | IllegalArgumentException e) {
+            return count(Result.INVALID);
+        }
+
+        // the Backend rejects a JWS without expiration
+        if (expiration == null)
+            return count(Result.INVALID);
+        verified.put(jws, expiration.getTime());
+        return count(Result.VALID);
+    }
+
+    /**
+     * Replaces the public keys with the ones of the JWK Set, the keys that are not public or without "kid" are skipped.
+     * @return the number of public keys.
+     */
+    int update(final String jwks) throws JsonProcessingException
+    {
+        final var newPublicKeys = new HashMap<String, PublicKey>();
+        for (final JsonNode node : objectMapper.readTree(jwks).path("keys")) {
+            try {
+                final Jwk<?> jwk = Jwks.parser().build().parse(node.toString());
+                if (jwk.getId() != null && jwk.toKey() instanceof PublicKey publicKey)
+                    newPublicKeys.put(jwk.getId(), publicKey);
+            }
+            catch (RuntimeException e) {
+                log.warn("Backend public key skipped: {}", e.getMessage());
+            }
+        }
+        publicKeys = Map.copyOf(newPublicKeys);
+        return newPublicKeys.size();
+    }
+
+    @Override
+    public void destroy() {
+        if (polling != null)
+            polling.dispose();
+    }
+
+    private Mono<Void> refresh()
+    {
+        return webClient.get()
+                .uri(jwksURI)
+                .accept(JWK_SET, MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)
+                .doOnSubscribe(__ -> lastRefreshInMillis.set(System.currentTimeMillis()))
+                .flatMap(jwks -> Mono.fromCallable(() -> update(jwks)))
+                .doOnNext(size -> log.debug("Backend public keys read: {}", size))
+                .then()
+                // the last keys are still used
+                .onErrorResume(e -> {
+                    log.warn("Backend public keys not read: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private void requestRefresh(final long nowInMillis)
+    {
+        final long lastInMillis = lastRefreshInMillis.get();
+        if (isEnabled && nowInMillis - lastInMillis >= MIN_REFRESH_INTERVAL_IN_MILLIS
+                && lastRefreshInMillis.compareAndSet(lastInMillis, nowInMillis))
+            refresh().subscribe();
+    }
+
+    private Result count(final Result result) {
+        counters.get(result).increment();
+        return result;
+    }
+
+    private static final class ExpireWithJws implements Expiry<String, Long>
+    {
+        @Override
+        public long expireAfterCreate(String jws, Long expirationInMillis, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, expirationInMillis - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String jws, Long expirationInMillis, long currentTime, long currentDuration) {
+            return expireAfterCreate(jws, expirationInMillis, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String jws, Long expirationInMillis, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static final class UnknownKeyException extends JwtException
+    {
+        UnknownKeyException() {
+            super("Unknown key");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package twoauth.apigateway.securityconfig;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Rate limits {@code POST /login} and {@code POST /registration} per client address, with a {@link TokenBucket}
+ * for each address and path, before the Spring Security filters and before any call to the Backend.
+ * A request without a token is answered with 429 TOO MANY REQUESTS and a Retry-After header.
+ * <br/>
+ * The buckets are kept in a bounded cache: a bucket not used until it would be full again is forgotten.
+ */
+@Component
+class EdgeRateLimitWebFilter implements WebFilter, Ordered
+{
+    // before the WebFilterChainProxy of Spring Security (-100)
+    static final int ORDER = -200;
+
+    private final boolean isEnabled;
+    private final Map<String, Limit> limits;
+    private final Cache<String, TokenBucket> buckets;
+
+    public EdgeRateLimitWebFilter(
+            @Value("${2Auth.edge-rate-limit.enabled:true}") boolean isEnabled,
+            @Value("${2Auth.edge-rate-limit.login.burst:10}") int loginBurst,
+            @Value("${2Auth.edge-rate-limit.login.rate-per-second:1}") double loginRatePerSecond,
+            @Value("${2Auth.edge-rate-limit.registration.burst:3}") int registrationBurst,
+            @Value("${2Auth.edge-rate-limit.registration.rate-per-second:0.1}") double registrationRatePerSecond,
+            @Value("${2Auth.edge-rate-limit.maximum-size:100000}") long maximumSize,
+            final MeterRegistry meterRegistry
+    ) {
+        final Limit loginLimit = Limit.of("/login", loginBurst, loginRatePerSecond, 10, 1, meterRegistry);
+        final Limit registrationLimit = Limit.of("/registration", registrationBurst, registrationRatePerSecond,
+                3, 0.1, meterRegistry);
+
+        this.isEnabled = isEnabled;
+        this.limits = Map.of(loginLimit.path(), loginLimit, registrationLimit.path(), registrationLimit);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize((maximumSize < 1) ? 100_000L : maximumSize)
+                .expireAfterAccess(Duration.ofNanos(Math.max(loginLimit.refillTimeInNanos(), registrationLimit.refillTimeInNanos())))
+                .build();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain)
+    {
+        final ServerHttpRequest request = exchange.getRequest();
+        final Limit limit;
+        if (! isEnabled || ! HttpMethod.POST.equals(request.getMethod())
+                || (limit = limits.get(request.getPath().pathWithinApplication().value())) == null)
+            return chain.filter(exchange);
+
+        final String clientAddress;
+        if ((clientAddress = getClientAddress(request)) == null)
+            return chain.filter(exchange);
+
+        final long nowInNanos = System.nanoTime();
+        final long waitInNanos = buckets.get(limit.path() + ' ' + clientAddress,
+                        __ -> new TokenBucket(limit.burst(), limit.ratePerSecond(), nowInNanos))
+                .tryConsume(nowInNanos);
+        if (waitInNanos == 0)
+            return chain.filter(exchange);
+
+        limit.rejectedCounter().increment();
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                Long.toString((waitInNanos + 999_999_999L) / 1_000_000_000L));
+        return exchange.getResponse().setComplete();
+    }
+
+    @Nullable
+    private static String getClientAddress(final ServerHttpRequest request) {
+        final InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return (remoteAddress == null || remoteAddress.getAddress() == null)
+                ? null
+                : remoteAddress.getAddress().getHostAddress();
+    }
+
+    private record Limit(String path, int burst, double ratePerSecond, Counter rejectedCounter)
+    {
+        static Limit of(
+                final String path,
+                final int burst,
+                final double ratePerSecond,
+                final int defaultBurst,
+                final double defaultRatePerSecond,
+                final MeterRegistry meterRegistry
+        ) {
+            return new Limit(
+                    path,
+                    (burst < 1) ? defaultBurst : burst,
+                    (ratePerSecond <= 0) ? defaultRatePerSecond : ratePerSecond,
+                    Counter.builder("twoauth.edge.rate-limit.rejected")
+                            .description("Requests rejected by the API Gateway before calling the Backend")
+                            .tag("path", path)
+                            .register(meterRegistry)
+            );
+        }
+
+        /**
+         * @return the time an empty bucket takes to be full again.
+         */
+        long refillTimeInNanos() {
+            return TokenBucket.getEmissionIntervalInNanos(ratePerSecond) * burst;
+        }
+    }
+}
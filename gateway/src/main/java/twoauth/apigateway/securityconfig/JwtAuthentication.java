@@ -1,77 +1,215 @@
 package twoauth.apigateway.securityconfig;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.util.Assert;
 
-import java.util.Base64;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
+/**
+ * Authentication saved in the session after the login, it keeps only the JWS (relayed to the Backend),
+ * its subject and its expiration, read once here so that an expired session is recognized without the Backend,
+ * and the refresh token that replaces the JWS before it expires (never relayed).
+ */
 public final class JwtAuthentication implements Authentication
 {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final String SUBJECT_CLAIM = "sub";
+    private static final String EXPIRATION_CLAIM = "exp";
+    // payloads bigger than this are decoded in a new buffer, not kept by the thread
+    private static final int MAX_REUSED_BUFFER_SIZE = 8 * 1024;
+    private static final ThreadLocal<DecodeBuffer> DECODE_BUFFER = ThreadLocal.withInitial(DecodeBuffer::new);
+    private static final byte[] BASE64URL_VALUES = newBase64UrlValues();
+
     private boolean isAuthenticated;
     private final String jwt;
     private final String subject;
+    // 0 if unknown: without "exp", or saved in the session before the expiration was kept
+    private final long expirationInMillis;
+    // null if the Backend did not save it, or saved in the session before the refresh tokens
+    private final String refreshToken;
 
-    public JwtAuthentication(final String jwt, final ObjectMapper objectMapper)
+    public JwtAuthentication(final String jwt, final ObjectMapper objectMapper) {
+        this(jwt, null, objectMapper);
+    }
+
+    public JwtAuthentication(final String jwt, final String refreshToken, final ObjectMapper objectMapper)
     {
         Assert.notNull(jwt, () -> "JWT cannot be null");
         Assert.isTrue(!jwt.isBlank(), () -> "JWT cannot be blank.");
 
-        final String base64Payload = getJwtBase64PayloadSubstring(jwt);
-        final String decodedPayload = new String(Base64.getUrlDecoder().decode(base64Payload));
-        subject = extractSubjectFromPayload(decodedPayload, objectMapper);
+        final PayloadClaims claims = extractClaimsFromJwt(jwt, objectMapper);
+        subject = claims.subject();
+        expirationInMillis = claims.expirationInMillis();
 
         Assert.notNull(subject, () -> "JWT Subject cannot be null");
         Assert.isTrue(!subject.isBlank(), () -> "JWT Subject cannot be blank.");
 
         this.jwt = jwt;
+        this.refreshToken = refreshToken;
         isAuthenticated = true;
     }
 
+    private static byte[] newBase64UrlValues() {
+        final byte[] values = new byte[128];
+        Arrays.fill(values, (byte) -1);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); ++i)
+            values[alphabet.charAt(i)] = (byte) i;
+        return values;
+    }
+
     public static String getJwtBase64PayloadSubstring(final String jwt) {
-        int first = -1, last = -1, len = jwt.length();
-        for (int i = 0; i < len; ++i) {
-            if (jwt.charAt(i) == '.') {
-                if (first == -1)
-                    first = i;
-                else {
-                    last = i;
-                    break;
-                }
-            }
-        }
+        final int first = getPayloadStart(jwt);
+        return jwt.substring(first, getPayloadEnd(jwt, first));
+    }
 
-        Assert.isTrue(first != -1 && last != -1, () -> "Cannot find two dots . in JWT string.");
-        Assert.isTrue(first+1 < last, () -> "Two dots are subsequent in the JWT string.");
+    /**
+     * @return the index of the first character of the payload, after the first dot.
+     */
+    private static int getPayloadStart(final String jwt) {
+        final int first = jwt.indexOf('.');
+        Assert.isTrue(first != -1 && jwt.indexOf('.', first+1) != -1, () -> "Cannot find two dots . in JWT string.");
+        return first+1;
+    }
 
-        return jwt.substring(first+1, last);
+    /**
+     * @return the index of the second dot.
+     */
+    private static int getPayloadEnd(final String jwt, final int payloadStart) {
+        final int last = jwt.indexOf('.', payloadStart);
+        Assert.isTrue(payloadStart < last, () -> "Two dots are subsequent in the JWT string.");
+        return last;
     }
 
     public static String extractSubjectFromPayload(final String payload, final ObjectMapper objectMapper) {
-        try {
-            JsonNode node = objectMapper.readTree(payload);
-            node = node.get("sub");
+        final byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return extractClaimsFromPayload(bytes, bytes.length, objectMapper).subject();
+    }
+
+    /**
+     * Decodes the Base64URL payload in a buffer reused by the thread, then reads it with the JSON token stream.
+     */
+    private static PayloadClaims extractClaimsFromJwt(final String jwt, final ObjectMapper objectMapper) {
+        final int payloadStart = getPayloadStart(jwt);
+        int payloadEnd = getPayloadEnd(jwt, payloadStart);
+        // the padding is optional
+        for (int i = 0; i < 2 && payloadEnd > payloadStart && jwt.charAt(payloadEnd-1) == '='; ++i)
+            --payloadEnd;
+
+        final int encodedLength = payloadEnd - payloadStart;
+        Assert.isTrue(encodedLength % 4 != 1, () -> "JWT payload is not a valid Base64URL string.");
 
-            Assert.notNull(node, () -> "JWT subject not found.");
-            Assert.isTrue(node.isTextual(), () -> "JWT subject incorrect.");
+        // 3 bytes every 4 characters, the last 2 or 3 characters are 1 or 2 bytes
+        final int decodedLength = encodedLength / 4 * 3 + Math.max(0, encodedLength % 4 - 1);
+        final byte[] decoded = (decodedLength <= MAX_REUSED_BUFFER_SIZE)
+                ? DECODE_BUFFER.get().get(decodedLength)
+                : new byte[decodedLength];
 
-            return node.textValue();
+        int bits = 0, bitCount = 0, length = 0;
+        for (int i = payloadStart; i < payloadEnd; ++i) {
+            final char c = jwt.charAt(i);
+            final int value = (c < BASE64URL_VALUES.length) ? BASE64URL_VALUES[c] : -1;
+            Assert.isTrue(value != -1, () -> "JWT payload is not a valid Base64URL string.");
+
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                decoded[length++] = (byte) (bits >> bitCount);
+            }
         }
-        catch (JsonProcessingException e) {
+        return extractClaimsFromPayload(decoded, length, objectMapper);
+    }
+
+    /**
+     * Reads the top level fields of the payload (UTF-8 JSON) until the subject and the expiration,
+     * without building a tree.
+     */
+    private static PayloadClaims extractClaimsFromPayload(
+            final byte[] payload,
+            final int length,
+            final ObjectMapper objectMapper
+    ) {
+        try (final JsonParser parser = objectMapper.getFactory().createParser(payload, 0, length)) {
+            Assert.isTrue(parser.nextToken() == JsonToken.START_OBJECT, () -> "JWT subject not found.");
+
+            String subject = null;
+            long expirationInMillis = 0L;
+            JsonToken token;
+            while ((subject == null || expirationInMillis == 0L) && (token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                token = parser.nextToken();
+                if (SUBJECT_CLAIM.equals(name)) {
+                    Assert.isTrue(token == JsonToken.VALUE_STRING, () -> "JWT subject incorrect.");
+                    subject = parser.getText();
+                }
+                else if (EXPIRATION_CLAIM.equals(name)) {
+                    // NumericDate, seconds since the epoch
+                    Assert.isTrue(token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT,
+                            () -> "JWT expiration incorrect.");
+                    expirationInMillis = (long) (parser.getDoubleValue() * 1000);
+                }
+                else
+                    parser.skipChildren();
+            }
+            Assert.notNull(subject, () -> "JWT subject not found.");
+            return new PayloadClaims(subject, expirationInMillis);
+        }
+        catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    private record PayloadClaims(String subject, long expirationInMillis) {}
+
+    private static final class DecodeBuffer
+    {
+        private byte[] buffer = new byte[512];
+
+        byte[] get(final int length) {
+            if (buffer.length < length)
+                buffer = new byte[length];
+            return buffer;
+        }
+    }
+
     public String getToken() {
         return jwt;
     }
 
+    /**
+     * @return null if unknown.
+     */
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    /**
+     * @return 0 if unknown.
+     */
+    public long getExpirationInMillis() {
+        return expirationInMillis;
+    }
+
+    /**
+     * @return false if the expiration is unknown, the Backend decides.
+     */
+    public boolean isExpired(final long nowInMillis) {
+        return expirationInMillis != 0L && nowInMillis >= expirationInMillis;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return Collections.emptyList();
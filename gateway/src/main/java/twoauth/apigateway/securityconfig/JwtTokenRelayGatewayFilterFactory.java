@@ -1,25 +1,44 @@
 package twoauth.apigateway.securityconfig;
 
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
+/**
+ * Relays the JWS of the session to the Backend. A JWS about to expire, or already expired, is first refreshed
+ * by the {@link BackendJwsRefresher} with the refresh token of the session. An expired JWS that was not refreshed
+ * is answered with 401 UNAUTHORIZED without proxying the request, as a forged one if the {@link BackendJwsVerifier}
+ * is enabled.
+ */
 @Component
 class JwtTokenRelayGatewayFilterFactory extends AbstractGatewayFilterFactory<Object>
 {
+    private final BackendJwsVerifier jwsVerifier;
+    private final BackendJwsRefresher jwsRefresher;
+
+    public JwtTokenRelayGatewayFilterFactory(final BackendJwsVerifier jwsVerifier,
+                                             final BackendJwsRefresher jwsRefresher) {
+        this.jwsVerifier = jwsVerifier;
+        this.jwsRefresher = jwsRefresher;
+    }
+
     @Override
     public GatewayFilter apply(Object config)
     {
         return (exchange, chain) -> exchange.getPrincipal()
                 .filter(JwtAuthentication.class::isInstance)
                 .cast(JwtAuthentication.class)
-                .map(jwtAuth -> withBearerAuth(exchange, jwtAuth))
-                .defaultIfEmpty(exchange)
-                .flatMap(chain::filter);
+                .map(jwtAuth -> relay(exchange, chain, jwtAuth))
+                .defaultIfEmpty(Mono.defer(() -> chain.filter(exchange)))
+                .flatMap(Function.identity());
     }
 
     @Override
@@ -27,6 +46,41 @@ class JwtTokenRelayGatewayFilterFactory extends AbstractGatewayFilterFactory<Obj
         return Collections.emptyList();
     }
 
+    private Mono<Void> relay(ServerWebExchange exchange, GatewayFilterChain chain, JwtAuthentication jwtAuth)
+    {
+        final long nowInMillis = System.currentTimeMillis();
+        if (jwsRefresher.isRefreshable(jwtAuth, nowInMillis))
+            return jwsRefresher.refresh(exchange, jwtAuth)
+                    .flatMap(refreshed -> relayOrReject(exchange, chain, refreshed, nowInMillis));
+        return relayOrReject(exchange, chain, jwtAuth, nowInMillis);
+    }
+
+    private Mono<Void> relayOrReject(ServerWebExchange exchange, GatewayFilterChain chain, JwtAuthentication jwtAuth,
+                                     long nowInMillis)
+    {
+        if (jwtAuth.isExpired(nowInMillis) || isRejected(jwtAuth))
+            return unauthorized(exchange);
+        return chain.filter(withBearerAuth(exchange, jwtAuth));
+    }
+
+    private boolean isRejected(JwtAuthentication jwtAuth)
+    {
+        if (! jwsVerifier.isEnabled())
+            return false;
+
+        final BackendJwsVerifier.Result result = jwsVerifier.verify(jwtAuth.getToken());
+        return result == BackendJwsVerifier.Result.INVALID || result == BackendJwsVerifier.Result.EXPIRED;
+    }
+
+    /**
+     * The empty body is written through the response, so that LogoutIfUnauthorized does the complete logout
+     * as for a 401 of the Backend.
+     */
+    private static Mono<Void> unauthorized(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        return exchange.getResponse().writeWith(Mono.empty());
+    }
+
     private ServerWebExchange withBearerAuth(ServerWebExchange exchange, JwtAuthentication jwtAuth) {
         return exchange.mutate()
                 .request(r -> r.headers(headers -> headers.setBearerAuth(jwtAuth.getToken())))
@@ -7,7 +7,6 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.core.session.InMemoryReactiveSessionRegistry;
 import org.springframework.security.core.session.ReactiveSessionRegistry;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
@@ -30,7 +29,6 @@ import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.session.CookieWebSessionIdResolver;
-import org.springframework.web.server.session.InMemoryWebSessionStore;
 import org.springframework.web.server.session.WebSessionIdResolver;
 import org.springframework.web.server.session.WebSessionStore;
 import reactor.core.publisher.Mono;
@@ -45,11 +43,14 @@ class SecurityConfiguration
 {
     private static final String COMPLETE_LOGOUT_PATH = "/complete-logout";
     private final List<HttpMethod> allowedHttpMethods;
+    private final int managementPort;
 
     public SecurityConfiguration(
-            @Value("${2Auth.allowedHttpMethods:GET,POST,PUT,DELETE}") List<String> allowedHttpMethods
+            @Value("${2Auth.allowedHttpMethods:GET,POST,PUT,DELETE}") List<String> allowedHttpMethods,
+            @Value("${management.server.port:-1}") int managementPort
     ) {
         this.allowedHttpMethods = getHttpMethod(allowedHttpMethods);
+        this.managementPort = managementPort;
     }
 
     private static List<HttpMethod> getHttpMethod(final List<String> initialHttpMethods)
@@ -99,6 +100,9 @@ class SecurityConfiguration
             .authorizeExchange(exchanges -> exchanges
                     .pathMatchers(HttpMethod.POST, "/login").permitAll()
                     .pathMatchers(HttpMethod.POST, "/registration").permitAll()
+                    .matchers(managementEndpointMatcher()).permitAll()
+                    // the refresh tokens and the refreshed JWS stay in the API Gateway, they never reach the client
+                    .pathMatchers("/api" + BackendJwsRefresher.REFRESH_PATH).denyAll()
                     .anyExchange().authenticated()
             )
             .exceptionHandling(exceptionHandling -> exceptionHandling
@@ -174,16 +178,6 @@ class SecurityConfiguration
         return resolver;
     }
 
-    @Bean
-    ReactiveSessionRegistry reactiveSessionRegistry() {
-        return new InMemoryReactiveSessionRegistry();
-    }
-
-    @Bean
-    WebSessionStore webSessionStore() {
-        return new InMemoryWebSessionStore();
-    }
-
     @Bean
     ServerSecurityContextRepository securityContextRepository() {
         return new WebSessionServerSecurityContextRepository();
@@ -226,7 +220,24 @@ class SecurityConfiguration
                 ),
                 new NegatedServerWebExchangeMatcher(
                         ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST, "/registration")
-                )
+                ),
+                new NegatedServerWebExchangeMatcher(managementEndpointMatcher())
+        );
+    }
+
+    /**
+     * Health and Prometheus endpoints, only on the management port: without a management port they need a session.
+     */
+    private ServerWebExchangeMatcher managementEndpointMatcher() {
+        return new AndServerWebExchangeMatcher(
+                exchange -> {
+                    final var localAddress = exchange.getRequest().getLocalAddress();
+                    return (managementPort > 0 && localAddress != null && localAddress.getPort() == managementPort)
+                            ? ServerWebExchangeMatcher.MatchResult.match()
+                            : ServerWebExchangeMatcher.MatchResult.notMatch();
+                },
+                ServerWebExchangeMatchers.pathMatchers(HttpMethod.GET,
+                        "/actuator/health", "/actuator/health/**", "/actuator/prometheus")
         );
     }
 
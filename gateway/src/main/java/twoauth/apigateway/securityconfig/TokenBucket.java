@@ -0,0 +1,43 @@
+package twoauth.apigateway.securityconfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as the Generic Cell Rate Algorithm: the whole state is the
+ * theoretical arrival time of the next request, updated with compare-and-set.
+ * <br/>
+ * A full bucket allows {@code burst} requests at once, then one request every emission interval.
+ */
+final class TokenBucket
+{
+    private final long emissionIntervalInNanos;
+    private final long burstToleranceInNanos;
+    private final AtomicLong theoreticalArrivalTime;
+
+    TokenBucket(final int burst, final double ratePerSecond, final long nowInNanos) {
+        this.emissionIntervalInNanos = getEmissionIntervalInNanos(ratePerSecond);
+        this.burstToleranceInNanos = emissionIntervalInNanos * burst;
+        this.theoreticalArrivalTime = new AtomicLong(nowInNanos);
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds before the next token.
+     */
+    long tryConsume(final long nowInNanos)
+    {
+        long current, next;
+        do {
+            current = theoreticalArrivalTime.get();
+            next = Math.max(current, nowInNanos) + emissionIntervalInNanos;
+            final long waitInNanos = next - nowInNanos - burstToleranceInNanos;
+            if (waitInNanos > 0)
+                return waitInNanos;
+        }
+        while (! theoreticalArrivalTime.compareAndSet(current, next));
+        return 0;
+    }
+
+    static long getEmissionIntervalInNanos(final double ratePerSecond) {
+        return Math.max(1L, (long) (1_000_000_000L / ratePerSecond));
+    }
+}
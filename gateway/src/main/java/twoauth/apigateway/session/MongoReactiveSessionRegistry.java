@@ -0,0 +1,97 @@
+package twoauth.apigateway.session;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.core.session.ReactiveSessionInformation;
+import org.springframework.security.core.session.ReactiveSessionRegistry;
+import org.springframework.web.server.session.WebSessionStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.util.Date;
+
+/**
+ * ReactiveSessionRegistry backed by the same collection of the {@link MongoWebSessionStore}:
+ * the principal is saved with the session, so every node sees the sessions of the others.
+ */
+final class MongoReactiveSessionRegistry implements ReactiveSessionRegistry
+{
+    private final ReactiveMongoOperations mongoOperations;
+    private final WebSessionStore webSessionStore;
+    private final Clock clock;
+
+    MongoReactiveSessionRegistry(
+            final ReactiveMongoOperations mongoOperations,
+            final WebSessionStore webSessionStore,
+            final Clock clock
+    ) {
+        this.mongoOperations = mongoOperations;
+        this.webSessionStore = webSessionStore;
+        this.clock = clock;
+    }
+
+    @Override
+    public Flux<ReactiveSessionInformation> getAllSessions(final Object principal) {
+        final var query = Query.query(Criteria
+                .where(SessionDocument.PRINCIPAL).is(String.valueOf(principal))
+                .and(SessionDocument.EXPIRE_AT).gt(Date.from(clock.instant())));
+        query.fields().include(SessionDocument.ID, SessionDocument.PRINCIPAL, SessionDocument.LAST_ACCESS_TIME);
+
+        return mongoOperations.find(query, Document.class, MongoWebSessionStore.COLLECTION)
+                .map(this::toSessionInformation);
+    }
+
+    /**
+     * The principal is saved by the WebSessionStore together with the session.
+     */
+    @Override
+    public Mono<Void> saveSessionInformation(final ReactiveSessionInformation information) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<ReactiveSessionInformation> getSessionInformation(final String sessionId) {
+        return mongoOperations.findById(sessionId, Document.class, MongoWebSessionStore.COLLECTION)
+                .filter(document -> document.getString(SessionDocument.PRINCIPAL) != null)
+                .map(this::toSessionInformation);
+    }
+
+    /**
+     * The session information lives as long as its session, which is removed by the WebSessionStore.
+     */
+    @Override
+    public Mono<ReactiveSessionInformation> removeSessionInformation(final String sessionId) {
+        return getSessionInformation(sessionId);
+    }
+
+    /**
+     * The last access time is saved by the WebSessionStore together with the session.
+     */
+    @Override
+    public Mono<ReactiveSessionInformation> updateLastAccessTime(final String sessionId) {
+        return getSessionInformation(sessionId);
+    }
+
+    private ReactiveSessionInformation toSessionInformation(final Document document) {
+        return new MongoSessionInformation(
+                document.getString(SessionDocument.PRINCIPAL),
+                document.getString(SessionDocument.ID),
+                document.getDate(SessionDocument.LAST_ACCESS_TIME)
+        );
+    }
+
+    private final class MongoSessionInformation extends ReactiveSessionInformation
+    {
+        MongoSessionInformation(final String principal, final String sessionId, final Date lastAccessTime) {
+            super(principal, sessionId, lastAccessTime.toInstant());
+        }
+
+        @Override
+        public Mono<Void> invalidate() {
+            return super.invalidate().then(webSessionStore.removeSession(getSessionId()));
+        }
+    }
+}
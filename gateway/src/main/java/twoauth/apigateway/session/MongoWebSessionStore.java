@@ -0,0 +1,288 @@
+package twoauth.apigateway.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.WebSessionStore;
+import reactor.core.publisher.Mono;
+
+import java.io.*;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * WebSessionStore shared by every API Gateway node through a MongoDB collection.
+ * <br/>
+ * The sessions read or written by this node are kept in a near-cache for a short time,
+ * so that the next request of the same session does not wait for MongoDB. The time-to-live
+ * of the near-cache bounds how long a session removed by another node can still be used here.
+ * <br/>
+ * A session whose attributes did not change is written again only to move its expiration forward.
+ */
+final class MongoWebSessionStore implements WebSessionStore
+{
+    static final String COLLECTION = "gateway_sessions";
+
+    private static final ObjectInputFilter ATTRIBUTES_FILTER =
+            ObjectInputFilter.Config.createFilter("java.**;org.springframework.**;twoauth.**;!*");
+    private static final Duration MAX_TOUCH_INTERVAL = Duration.ofMinutes(1);
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ReactiveMongoOperations mongoOperations;
+    private final Cache<String, SessionDocument> nearCache;
+    private final Duration maxIdleTime;
+    private final Duration touchInterval;
+    private final Clock clock;
+
+    MongoWebSessionStore(
+            final ReactiveMongoOperations mongoOperations,
+            final Cache<String, SessionDocument> nearCache,
+            final Duration maxIdleTime,
+            final Clock clock
+    ) {
+        this.mongoOperations = mongoOperations;
+        this.nearCache = nearCache;
+        this.maxIdleTime = maxIdleTime;
+        // the stored expiration is at most this much earlier than the real one
+        final Duration tenthOfMaxIdleTime = maxIdleTime.dividedBy(10);
+        this.touchInterval = (tenthOfMaxIdleTime.compareTo(MAX_TOUCH_INTERVAL) < 0) ? tenthOfMaxIdleTime : MAX_TOUCH_INTERVAL;
+        this.clock = clock;
+    }
+
+    Mono<Void> ensureIndexes() {
+        final var indexOperations = mongoOperations.indexOps(COLLECTION);
+        return indexOperations.ensureIndex(new Index().on(SessionDocument.EXPIRE_AT, Sort.Direction.ASC).expire(Duration.ZERO))
+                .then(indexOperations.ensureIndex(new Index().on(SessionDocument.PRINCIPAL, Sort.Direction.ASC).sparse()))
+                .then();
+    }
+
+    @Override
+    public Mono<WebSession> createWebSession() {
+        return Mono.fromSupplier(() -> new MongoWebSession(newSessionId(), clock.instant()));
+    }
+
+    @Override
+    public Mono<WebSession> retrieveSession(final String id)
+    {
+        final SessionDocument cached = nearCache.getIfPresent(id);
+        final Mono<SessionDocument> document = (cached != null)
+                ? Mono.just(cached)
+                : mongoOperations.findById(id, Document.class, COLLECTION)
+                        .map(SessionDocument::of)
+                        .doOnNext(sessionDocument -> nearCache.put(id, sessionDocument));
+
+        return document.flatMap(sessionDocument -> sessionDocument.isExpired(clock.instant())
+                ? removeSession(id).then(Mono.empty())
+                : Mono.just(new MongoWebSession(sessionDocument)));
+    }
+
+    @Override
+    public Mono<Void> removeSession(final String id) {
+        return Mono.defer(() -> {
+            nearCache.invalidate(id);
+            return mongoOperations.remove(Query.query(Criteria.where(SessionDocument.ID).is(id)), COLLECTION);
+        }).then();
+    }
+
+    @Override
+    public Mono<WebSession> updateLastAccessTime(final WebSession webSession) {
+        return Mono.fromSupplier(() -> {
+            ((MongoWebSession) webSession).lastAccessTime = clock.instant();
+            return webSession;
+        });
+    }
+
+    private String newSessionId() {
+        final byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    @Nullable
+    private static String getPrincipal(final Map<String, Object> attributes) {
+        if (attributes.get(WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME)
+                instanceof SecurityContext securityContext)
+        {
+            final Authentication authentication = securityContext.getAuthentication();
+            if (authentication != null && authentication.getPrincipal() != null)
+                return String.valueOf(authentication.getPrincipal());
+        }
+        return null;
+    }
+
+    private static byte[] serialize(final Map<String, Object> attributes) {
+        final var bytes = new ByteArrayOutputStream(512);
+        try (final var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new HashMap<>(attributes));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Session attributes are not serializable.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> deserialize(final byte[] attributes) {
+        try (final var in = new ObjectInputStream(new ByteArrayInputStream(attributes))) {
+            in.setObjectInputFilter(ATTRIBUTES_FILTER);
+            return (Map<String, Object>) in.readObject();
+        }
+        catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Session attributes cannot be deserialized.", e);
+        }
+    }
+
+    private enum State { NEW, STARTED, EXPIRED }
+
+    private final class MongoWebSession implements WebSession
+    {
+        private final AtomicReference<String> id;
+        private final Map<String, Object> attributes;
+        private final Instant creationTime;
+        private final AtomicReference<State> state;
+        private volatile Instant lastAccessTime;
+        private volatile Duration maxIdleTime;
+        // the last version read from or written to MongoDB
+        @Nullable
+        private volatile SessionDocument stored;
+
+        MongoWebSession(final String id, final Instant creationTime) {
+            this.id = new AtomicReference<>(id);
+            this.attributes = new ConcurrentHashMap<>();
+            this.creationTime = creationTime;
+            this.lastAccessTime = creationTime;
+            this.maxIdleTime = MongoWebSessionStore.this.maxIdleTime;
+            this.state = new AtomicReference<>(State.NEW);
+        }
+
+        MongoWebSession(final SessionDocument stored) {
+            this.id = new AtomicReference<>(stored.id());
+            this.attributes = new ConcurrentHashMap<>(deserialize(stored.attributes()));
+            this.creationTime = stored.creationTime();
+            this.lastAccessTime = stored.lastAccessTime();
+            this.maxIdleTime = stored.maxIdleTime();
+            this.state = new AtomicReference<>(State.STARTED);
+            this.stored = stored;
+        }
+
+        @Override
+        public String getId() {
+            return id.get();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public Instant getLastAccessTime() {
+            return lastAccessTime;
+        }
+
+        @Override
+        public void setMaxIdleTime(final Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        @Override
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        @Override
+        public void start() {
+            state.compareAndSet(State.NEW, State.STARTED);
+        }
+
+        @Override
+        public boolean isStarted() {
+            return state.get() == State.STARTED || !attributes.isEmpty();
+        }
+
+        @Override
+        public Mono<Void> changeSessionId() {
+            return Mono.defer(() -> {
+                final String currentId = id.getAndSet(newSessionId());
+                stored = null;
+                return removeSession(currentId);
+            });
+        }
+
+        @Override
+        public Mono<Void> invalidate() {
+            return Mono.defer(() -> {
+                state.set(State.EXPIRED);
+                attributes.clear();
+                return removeSession(id.get());
+            });
+        }
+
+        @Override
+        public Mono<Void> save() {
+            return Mono.defer(() -> {
+                if (!attributes.isEmpty())
+                    state.compareAndSet(State.NEW, State.STARTED);
+
+                if (state.get() == State.EXPIRED)
+                    return Mono.error(new IllegalStateException("Session was invalidated"));
+                if (!isStarted())
+                    return Mono.empty();
+
+                final var next = new SessionDocument(getId(), getPrincipal(attributes), creationTime,
+                        lastAccessTime, maxIdleTime, serialize(attributes));
+                if (isUnchanged(next))
+                    return Mono.empty();
+
+                return mongoOperations.save(next.toDocument(), COLLECTION)
+                        .doOnSuccess(__ -> {
+                            stored = next;
+                            nearCache.put(next.id(), next);
+                        })
+                        .then();
+            });
+        }
+
+        private boolean isUnchanged(final SessionDocument next) {
+            final SessionDocument previous = stored;
+            return previous != null
+                    && previous.id().equals(next.id())
+                    && previous.maxIdleTime().equals(next.maxIdleTime())
+                    && Arrays.equals(previous.attributes(), next.attributes())
+                    && next.lastAccessTime().isBefore(previous.lastAccessTime().plus(touchInterval));
+        }
+
+        @Override
+        public boolean isExpired() {
+            if (state.get() == State.EXPIRED)
+                return true;
+            if (!maxIdleTime.isNegative() && clock.instant().isAfter(lastAccessTime.plus(maxIdleTime))) {
+                state.set(State.EXPIRED);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package twoauth.apigateway.session;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Immutable snapshot of a stored session, as read from or written to MongoDB.
+ * The attributes are kept serialized, so that every request deserializes its own copy.
+ */
+record SessionDocument(
+        String id,
+        @Nullable String principal,
+        Instant creationTime,
+        Instant lastAccessTime,
+        Duration maxIdleTime,
+        byte[] attributes
+) {
+    static final String ID = "_id";
+    static final String PRINCIPAL = "principal";
+    static final String CREATION_TIME = "creationTime";
+    static final String LAST_ACCESS_TIME = "lastAccessTime";
+    static final String MAX_IDLE_TIME_IN_SECONDS = "maxIdleTimeInSeconds";
+    static final String EXPIRE_AT = "expireAt";
+    static final String ATTRIBUTES = "attributes";
+
+    static SessionDocument of(final Document document) {
+        return new SessionDocument(
+                document.getString(ID),
+                document.getString(PRINCIPAL),
+                document.getDate(CREATION_TIME).toInstant(),
+                document.getDate(LAST_ACCESS_TIME).toInstant(),
+                Duration.ofSeconds(document.getLong(MAX_IDLE_TIME_IN_SECONDS)),
+                document.get(ATTRIBUTES, Binary.class).getData()
+        );
+    }
+
+    Document toDocument() {
+        return new Document(ID, id)
+                .append(PRINCIPAL, principal)
+                .append(CREATION_TIME, Date.from(creationTime))
+                .append(LAST_ACCESS_TIME, Date.from(lastAccessTime))
+                .append(MAX_IDLE_TIME_IN_SECONDS, maxIdleTime.toSeconds())
+                // removed by the TTL index when expired
+                .append(EXPIRE_AT, Date.from(expireAt()))
+                .append(ATTRIBUTES, new Binary(attributes));
+    }
+
+    Instant expireAt() {
+        return lastAccessTime.plus(maxIdleTime);
+    }
+
+    boolean isExpired(final Instant now) {
+        return !maxIdleTime.isNegative() && now.isAfter(expireAt());
+    }
+
+    @Override
+    public String toString() {
+        return "SessionDocument{" +
+                "principal='" + principal + '\'' +
+                ", lastAccessTime=" + lastAccessTime +
+                '}';
+    }
+}
@@ -0,0 +1,122 @@
+package twoauth.apigateway.session;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.security.core.session.InMemoryReactiveSessionRegistry;
+import org.springframework.security.core.session.ReactiveSessionRegistry;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import org.springframework.web.server.session.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects where the sessions of the API Gateway are stored, with the property {@code 2Auth.session-store.type}:
+ * <ul>
+ *     <li>IN_MEMORY (default): every node has its own sessions, a client must always reach the same node;</li>
+ *     <li>MONGO: the sessions are shared by every node through MongoDB.</li>
+ * </ul>
+ * The WebSessionManager is declared here so that it uses the selected WebSessionStore.
+ */
+@Configuration
+public class SessionStoreConfiguration
+{
+    static final String PREFIX = "2Auth.session-store";
+
+    @Bean(WebHttpHandlerBuilder.WEB_SESSION_MANAGER_BEAN_NAME)
+    WebSessionManager webSessionManager(
+            final WebSessionStore webSessionStore,
+            final WebSessionIdResolver webSessionIdResolver
+    ) {
+        final var webSessionManager = new DefaultWebSessionManager();
+        webSessionManager.setSessionStore(webSessionStore);
+        webSessionManager.setSessionIdResolver(webSessionIdResolver);
+        return webSessionManager;
+    }
+
+    /**
+     * @return the {@code server.reactive.session.timeout}, used by the default WebSessionManager of Spring Boot.
+     */
+    private static Duration getMaxIdleTime(final ServerProperties serverProperties) {
+        final Duration timeout = serverProperties.getReactive().getSession().getTimeout();
+        return (timeout.isZero() || timeout.isNegative()) ? Duration.ofMinutes(30) : timeout;
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = PREFIX, name = "type", havingValue = "IN_MEMORY", matchIfMissing = true)
+    static class InMemory
+    {
+        @Bean
+        WebSessionStore webSessionStore(
+                final ServerProperties serverProperties
+        ) {
+            final Duration maxIdleTime = getMaxIdleTime(serverProperties);
+            return new InMemoryWebSessionStore() {
+                @Override
+                public Mono<WebSession> createWebSession() {
+                    return super.createWebSession().doOnNext(session -> session.setMaxIdleTime(maxIdleTime));
+                }
+            };
+        }
+
+        @Bean
+        ReactiveSessionRegistry reactiveSessionRegistry() {
+            return new InMemoryReactiveSessionRegistry();
+        }
+    }
+
+    /**
+     * The reactive MongoDB auto-configurations are excluded from the application, so that the IN_MEMORY type
+     * does not open connections to MongoDB. They are imported only here, with a plain {@code @Import}:
+     * the exclusions of the application would remove them from an {@code @ImportAutoConfiguration}.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = PREFIX, name = "type", havingValue = "MONGO")
+    @Import({ MongoReactiveAutoConfiguration.class, MongoReactiveDataAutoConfiguration.class })
+    static class Mongo
+    {
+        @Bean
+        MongoWebSessionStore webSessionStore(
+                final ReactiveMongoOperations mongoOperations,
+                final ServerProperties serverProperties,
+                @Value("${" + PREFIX + ".near-cache-time-to-live-in-millis:1000}") long nearCacheTimeToLiveInMillis,
+                @Value("${" + PREFIX + ".near-cache-maximum-size:10000}") long nearCacheMaximumSize
+        ) {
+            if (nearCacheTimeToLiveInMillis < 0)
+                nearCacheTimeToLiveInMillis = 1000;
+            if (nearCacheMaximumSize < 0)
+                nearCacheMaximumSize = 10000;
+
+            final var store = new MongoWebSessionStore(
+                    mongoOperations,
+                    Caffeine.newBuilder()
+                            .expireAfterWrite(nearCacheTimeToLiveInMillis, TimeUnit.MILLISECONDS)
+                            .maximumSize(nearCacheMaximumSize)
+                            .build(),
+                    getMaxIdleTime(serverProperties),
+                    Clock.systemUTC()
+            );
+            store.ensureIndexes().block(Duration.ofSeconds(30));
+            return store;
+        }
+
+        @Bean
+        ReactiveSessionRegistry reactiveSessionRegistry(
+                final ReactiveMongoOperations mongoOperations,
+                final WebSessionStore webSessionStore
+        ) {
+            return new MongoReactiveSessionRegistry(mongoOperations, webSessionStore, Clock.systemUTC());
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package twoauth.apigateway;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertNull;
 import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
@@ -16,13 +19,19 @@ import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import twoauth.apigateway.model.AuthRequest;
 import twoauth.apigateway.model.User;
 
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.TimeoutException;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -39,7 +48,7 @@ class AuthenticationControllerTests
         WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
         securityContextRepository = mock(ServerSecurityContextRepository.class);
         authController = new AuthenticationController(
-                "localhost", -1, true, securityContextRepository, webClient, objectMapper
+                "localhost", -1, true, securityContextRepository, webClient, objectMapper, new SimpleMeterRegistry()
         );
     }
 
@@ -158,6 +167,46 @@ class AuthenticationControllerTests
         assertNull(mockedUser.getPassword());
     }
 
+    @Test
+    void registration_ReturnsServiceUnavailableWithRetryAfter_WhenBackendReturns503()
+    {
+        // Mocked response
+        when(exchangeFunction.exchange(any(ClientRequest.class)))
+                .thenReturn(Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "2")
+                        .build()));
+
+        User mockedUser = Mockito.mock(User.class);
+        Mono<ResponseEntity<Object>> response = authController.registration(mockedUser);
+
+        StepVerifier.create(response)
+                .expectNextMatches(nextResponse -> nextResponse.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                        && "2".equals(nextResponse.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)))
+                .verifyComplete();
+
+        assertNull(mockedUser.getPassword());
+    }
+
+    @Test
+    void registration_ReturnsServiceUnavailableWithRetryAfter_WhenNoBackendConnectionIsAvailable()
+    {
+        // Mocked pending acquire timeout of the connection pool
+        when(exchangeFunction.exchange(any(ClientRequest.class))).thenReturn(Mono.error(new WebClientRequestException(
+                new TimeoutException("Pool#acquire has been pending for more than the configured timeout"),
+                HttpMethod.POST, URI.create("https://localhost/registration"), HttpHeaders.EMPTY
+        )));
+
+        User mockedUser = Mockito.mock(User.class);
+        Mono<ResponseEntity<Object>> response = authController.registration(mockedUser);
+
+        StepVerifier.create(response)
+                .expectNextMatches(nextResponse -> nextResponse.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                        && "1".equals(nextResponse.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)))
+                .verifyComplete();
+
+        assertNull(mockedUser.getPassword());
+    }
+
     @Test
     void login_ReturnsOk_WhenBackendReturns200WithValidJwt() throws Exception
     {
@@ -329,4 +378,91 @@ class AuthenticationControllerTests
         assertNull(mockedAuthRequest.getPassword());
         assertNull(mockedAuthRequest.getBase64OTActivationToken());
     }
+
+    @Test
+    void login_ReturnsServiceUnavailable_WhenBackendReturns503() throws Exception
+    {
+        AuthRequest mockedAuthRequest = new AuthRequest("test@email.com", "password1234", null);
+
+        // Mocked request
+        MockServerHttpRequest request = MockServerHttpRequest
+                .post("/login")
+                .body(objectMapper.writeValueAsString(mockedAuthRequest));
+
+        // Mocked exchange
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+
+        // Mocked response
+        mockResponse(HttpStatus.SERVICE_UNAVAILABLE, null);
+
+        Mono<ResponseEntity<Object>> response = authController.login(mockedAuthRequest, exchange);
+
+        StepVerifier.create(response)
+                .expectNextMatches(nextResponse -> nextResponse.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verifyComplete();
+
+        assertNull(mockedAuthRequest.getPassword());
+        assertNull(mockedAuthRequest.getBase64OTActivationToken());
+    }
+
+    @Test
+    void login_ReturnsServiceUnavailable_WhenNoBackendConnectionIsAvailable() throws Exception
+    {
+        AuthRequest mockedAuthRequest = new AuthRequest("test@email.com", "password1234", null);
+
+        // Mocked request
+        MockServerHttpRequest request = MockServerHttpRequest
+                .post("/login")
+                .body(objectMapper.writeValueAsString(mockedAuthRequest));
+
+        // Mocked exchange
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+
+        // Mocked pending acquire timeout of the connection pool
+        when(exchangeFunction.exchange(any(ClientRequest.class))).thenReturn(Mono.error(new WebClientRequestException(
+                new TimeoutException("Pool#acquire has been pending for more than the configured timeout"),
+                HttpMethod.POST, URI.create("https://localhost/login"), HttpHeaders.EMPTY
+        )));
+
+        Mono<ResponseEntity<Object>> response = authController.login(mockedAuthRequest, exchange);
+
+        StepVerifier.create(response)
+                .expectNextMatches(nextResponse -> nextResponse.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verifyComplete();
+
+        assertNull(mockedAuthRequest.getPassword());
+        assertNull(mockedAuthRequest.getBase64OTActivationToken());
+    }
+
+    @Test
+    void login_ReturnsTooManyRequestsAndForwardsClientAddress_WhenBackendReturns429() throws Exception
+    {
+        AuthRequest mockedAuthRequest = new AuthRequest("test@email.com", "password1234", null);
+
+        // Mocked request
+        MockServerHttpRequest request = MockServerHttpRequest
+                .post("/login")
+                .remoteAddress(new InetSocketAddress("203.0.113.7", 50000))
+                .body(objectMapper.writeValueAsString(mockedAuthRequest));
+
+        // Mocked exchange
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+
+        // Mocked response
+        when(exchangeFunction.exchange(argThat(clientRequest ->
+                "203.0.113.7".equals(clientRequest.headers().getFirst("X-Forwarded-For")))))
+                .thenReturn(Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "30")
+                        .build()));
+
+        Mono<ResponseEntity<Object>> response = authController.login(mockedAuthRequest, exchange);
+
+        StepVerifier.create(response)
+                .expectNextMatches(nextResponse -> nextResponse.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS
+                        && "30".equals(nextResponse.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)))
+                .verifyComplete();
+
+        assertNull(mockedAuthRequest.getPassword());
+        assertNull(mockedAuthRequest.getBase64OTActivationToken());
+    }
 }
@@ -0,0 +1,118 @@
+package twoauth.apigateway.securityconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class BackendJwsRefresherTests
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExchangeFunction exchangeFunction;
+    private ServerSecurityContextRepository securityContextRepository;
+    private BackendJwsRefresher jwsRefresher;
+
+    @BeforeEach
+    void setup() {
+        exchangeFunction = mock(ExchangeFunction.class);
+        securityContextRepository = mock(ServerSecurityContextRepository.class);
+        when(securityContextRepository.save(any(), any())).thenReturn(Mono.empty());
+        jwsRefresher = new BackendJwsRefresher(true, 60_000L, "localhost", -1, true,
+                WebClient.builder().exchangeFunction(exchangeFunction).build(), objectMapper,
+                securityContextRepository, new SimpleMeterRegistry());
+    }
+
+    private String newJwt(final long expirationInMillis) {
+        final String payload = "{\"sub\": \"test@email.com\", \"exp\": " + expirationInMillis / 1000L + "}";
+        return "eyJhbGciOiJIUzUxMiJ9."
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + ".c2lnbmF0dXJl";
+    }
+
+    private JwtAuthentication newJwtAuthentication(final long expirationInMillis, final String refreshToken) {
+        return new JwtAuthentication(newJwt(expirationInMillis), refreshToken, objectMapper);
+    }
+
+    private void mockResponse(final HttpStatus status, final String body) {
+        final var builder = ClientResponse.create(status).header("Content-Type", "application/json");
+        if (body != null)
+            builder.body(body);
+        when(exchangeFunction.exchange(any(ClientRequest.class))).thenReturn(Mono.just(builder.build()));
+    }
+
+    @Test
+    void isRefreshable_ReturnsTrue_OnlyWhenJwsExpiresWithinWindowAndSessionHasRefreshToken()
+    {
+        final long nowInMillis = System.currentTimeMillis();
+
+        assertTrue(jwsRefresher.isRefreshable(newJwtAuthentication(nowInMillis + 30_000L, "token"), nowInMillis));
+        assertTrue(jwsRefresher.isRefreshable(newJwtAuthentication(nowInMillis - 30_000L, "token"), nowInMillis));
+        assertFalse(jwsRefresher.isRefreshable(newJwtAuthentication(nowInMillis + 120_000L, "token"), nowInMillis));
+        assertFalse(jwsRefresher.isRefreshable(newJwtAuthentication(nowInMillis + 30_000L, null), nowInMillis));
+    }
+
+    @Test
+    void refresh_CallsBackendOnceAndSavesNewJwsAndToken_WhenRequestsHoldSameRefreshToken()
+    {
+        final JwtAuthentication oldJwtAuth = newJwtAuthentication(System.currentTimeMillis() + 30_000L, "oldToken");
+        final JwtAuthentication newJwtAuth = newJwtAuthentication(System.currentTimeMillis() + 3_600_000L, "newToken");
+        mockResponse(HttpStatus.OK, "{\"jwt\": \"" + newJwtAuth.getToken() + "\", \"refreshToken\": \"newToken\"}");
+
+        final var first = jwsRefresher.refresh(MockServerWebExchange.from(MockServerHttpRequest.get("/api/users")), oldJwtAuth).block();
+        final var second = jwsRefresher.refresh(MockServerWebExchange.from(MockServerHttpRequest.get("/api/users")), oldJwtAuth).block();
+
+        assertEquals(newJwtAuth, first);
+        assertEquals(newJwtAuth, second);
+        assertEquals("newToken", first.getRefreshToken());
+        // the refresh token is sent in the body, never as a bearer
+        verify(exchangeFunction, times(1)).exchange(argThat(request ->
+                request.url().getPath().equals("/token/refresh") && ! request.headers().containsKey("Authorization")));
+        verify(securityContextRepository, times(2)).save(any(),
+                argThat((SecurityContext context) -> newJwtAuth.equals(context.getAuthentication())));
+    }
+
+    @Test
+    void refresh_RelaysNewJwsWithoutSavingSession_WhenBackendDoesNotRotateToken()
+    {
+        final JwtAuthentication oldJwtAuth = newJwtAuthentication(System.currentTimeMillis() + 30_000L, "rotatedToken");
+        final JwtAuthentication newJwtAuth = newJwtAuthentication(System.currentTimeMillis() + 3_600_000L, null);
+        // the Backend did not save the new refresh token, the old one can be used again
+        mockResponse(HttpStatus.OK, "{\"jwt\": \"" + newJwtAuth.getToken() + "\", \"refreshToken\": null}");
+
+        final var refreshed = jwsRefresher.refresh(MockServerWebExchange.from(MockServerHttpRequest.get("/api/users")), oldJwtAuth).block();
+
+        assertEquals(newJwtAuth, refreshed);
+        assertNull(refreshed.getRefreshToken());
+        verify(securityContextRepository, never()).save(any(), any());
+    }
+
+    @Test
+    void refresh_ReturnsSameJws_WhenBackendDoesNotRefresh()
+    {
+        final JwtAuthentication jwtAuth = newJwtAuthentication(System.currentTimeMillis() + 30_000L, "usedToken");
+        mockResponse(HttpStatus.UNAUTHORIZED, null);
+
+        final var refreshed = jwsRefresher.refresh(MockServerWebExchange.from(MockServerHttpRequest.get("/api/users")), jwtAuth).block();
+
+        assertSame(jwtAuth, refreshed);
+        verify(securityContextRepository, never()).save(any(), any());
+    }
+}
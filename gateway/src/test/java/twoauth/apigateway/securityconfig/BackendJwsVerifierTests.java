@@ -0,0 +1,82 @@
+package twoauth.apigateway.securityconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class BackendJwsVerifierTests
+{
+    private static final KeyPair KEY_PAIR = Jwks.CRV.Ed25519.keyPair().build();
+
+    private BackendJwsVerifier jwsVerifier;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        // disabled: the keys are never read from the Backend
+        jwsVerifier = new BackendJwsVerifier(false, 60_000L, 100L, "localhost", 8081, true,
+                mock(WebClient.class), new ObjectMapper(), new SimpleMeterRegistry());
+        jwsVerifier.update("{\"keys\":[" + Jwks.json(Jwks.builder().key(KEY_PAIR.getPublic()).id("kid").build()) + "]}");
+    }
+
+    private static String sign(final String keyId, final PrivateKey privateKey, final long expirationInMillis) {
+        return Jwts.builder()
+                .header().keyId(keyId).and()
+                .subject("test@email.com")
+                .expiration(new Date(expirationInMillis))
+                .signWith(privateKey)
+                .compact();
+    }
+
+    @Test
+    void verify_ReturnsValid_WhenSignedWithPublishedKey()
+    {
+        final String jws = sign("kid", KEY_PAIR.getPrivate(), System.currentTimeMillis() + 60_000L);
+
+        assertEquals(BackendJwsVerifier.Result.VALID, jwsVerifier.verify(jws));
+        // remembered
+        assertEquals(BackendJwsVerifier.Result.VALID, jwsVerifier.verify(jws));
+    }
+
+    @Test
+    void verify_ReturnsInvalid_WhenSignedWithAnotherKeyOfSameId()
+    {
+        final PrivateKey forgedKey = Jwks.CRV.Ed25519.keyPair().build().getPrivate();
+        final String jws = sign("kid", forgedKey, System.currentTimeMillis() + 60_000L);
+
+        assertEquals(BackendJwsVerifier.Result.INVALID, jwsVerifier.verify(jws));
+        assertEquals(BackendJwsVerifier.Result.INVALID, jwsVerifier.verify(jws.substring(0, jws.lastIndexOf('.') + 1)));
+    }
+
+    @Test
+    void verify_ReturnsExpired_WhenExpirationIsPast()
+    {
+        final String jws = sign("kid", KEY_PAIR.getPrivate(), System.currentTimeMillis() - 1_000L);
+
+        assertEquals(BackendJwsVerifier.Result.EXPIRED, jwsVerifier.verify(jws));
+    }
+
+    @Test
+    void verify_ReturnsUnknownKey_WhenKeyIdIsNotPublished() throws Exception
+    {
+        final String jws = sign("newKid", KEY_PAIR.getPrivate(), System.currentTimeMillis() + 60_000L);
+
+        assertEquals(BackendJwsVerifier.Result.UNKNOWN_KEY, jwsVerifier.verify(jws));
+
+        // HS512, the keys are secret
+        assertEquals(0, jwsVerifier.update("{\"keys\":[]}"));
+        assertEquals(BackendJwsVerifier.Result.UNKNOWN_KEY,
+                jwsVerifier.verify(sign("kid", KEY_PAIR.getPrivate(), System.currentTimeMillis() + 60_000L)));
+    }
+}
@@ -0,0 +1,65 @@
+package twoauth.apigateway.securityconfig;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EdgeRateLimitWebFilterTests
+{
+    private SimpleMeterRegistry meterRegistry;
+    private EdgeRateLimitWebFilter filter;
+    private WebFilterChain chain;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new EdgeRateLimitWebFilter(true, 2, 0.01, 1, 0.01, 100, meterRegistry);
+        chain = mock(WebFilterChain.class);
+        when(chain.filter(any())).thenReturn(Mono.empty());
+    }
+
+    private MockServerWebExchange post(final String path, final String address) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post(path)
+                .remoteAddress(new InetSocketAddress(address, 50000))
+                .build());
+    }
+
+    @Test
+    void filter_ReturnsTooManyRequests_WhenBurstOfTheAddressIsSpent()
+    {
+        filter.filter(post("/login", "192.0.2.1"), chain).block();
+        filter.filter(post("/login", "192.0.2.1"), chain).block();
+        final MockServerWebExchange rejected = post("/login", "192.0.2.1");
+        filter.filter(rejected, chain).block();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertNotNull(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(chain, times(2)).filter(any());
+        assertEquals(1.0, meterRegistry.get("twoauth.edge.rate-limit.rejected").tag("path", "/login").counter().count());
+    }
+
+    @Test
+    void filter_CallsChain_WhenAddressOrPathHasItsOwnBucket()
+    {
+        filter.filter(post("/registration", "192.0.2.1"), chain).block();
+
+        filter.filter(post("/registration", "192.0.2.2"), chain).block();
+        filter.filter(post("/login", "192.0.2.1"), chain).block();
+        filter.filter(post("/api/users", "192.0.2.1"), chain).block();
+        filter.filter(post("/api/users", "192.0.2.1"), chain).block();
+
+        verify(chain, times(5)).filter(any());
+    }
+}
@@ -3,6 +3,9 @@ package twoauth.apigateway.securityconfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class JwtAuthenticationTests
@@ -117,4 +120,64 @@ class JwtAuthenticationTests
             new JwtAuthentication("cjnrjvni3.c3n4icun3ijnf.ci3jni4", objectMapper);
         });
     }
+
+    private static String newJwt(final String payload, final Base64.Encoder encoder) {
+        return "eyJhbGciOiJIUzUxMiJ9." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+    }
+
+    @Test
+    void newJwtAuthentication_ReturnsSubject_WhenSubjectFollowsNestedClaims()
+    {
+        final String payload = "{\"permissions\": [\"READ\", {\"sub\": \"nested\"}], \"meta\": {\"sub\": 1}, \"sub\": \"test@email.com\"}";
+
+        final String jwt = newJwt(payload, Base64.getUrlEncoder().withoutPadding());
+
+        assertEquals("test@email.com", new JwtAuthentication(jwt, objectMapper).getPrincipal());
+    }
+
+    @Test
+    void newJwtAuthentication_ReturnsUtf8Subject_WhenPayloadIsPaddedOrNot()
+    {
+        final String subject = "tèst@émail.com";
+        final String payload = "{\"sub\": \"" + subject + "\", \"iat\": 1}";
+
+        assertEquals(subject, new JwtAuthentication(newJwt(payload, Base64.getUrlEncoder()), objectMapper).getPrincipal());
+        assertEquals(subject, new JwtAuthentication(
+                newJwt(payload, Base64.getUrlEncoder().withoutPadding()), objectMapper).getPrincipal());
+    }
+
+    @Test
+    void newJwtAuthentication_ReturnsIllegalArgumentException_WhenJwtPayloadIsNotBase64Url()
+    {
+        final String payload = Base64.getEncoder().encodeToString("{\"sub\": \"te>st?\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(payload.contains("+") || payload.contains("/"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            new JwtAuthentication("eyJhbGciOiJIUzUxMiJ9." + payload + ".c2lnbmF0dXJl", objectMapper);
+        });
+    }
+
+    @Test
+    void newJwtAuthentication_ReturnsExpiration_WhenExpFollowsSubject()
+    {
+        final String payload = "{\"sub\": \"test@email.com\", \"iat\": 1700000000, \"exp\": 1700000060, \"permissions\": [\"READ\"]}";
+
+        final var jwtAuth = new JwtAuthentication(newJwt(payload, Base64.getUrlEncoder().withoutPadding()), objectMapper);
+
+        assertEquals(1_700_000_060_000L, jwtAuth.getExpirationInMillis());
+        assertFalse(jwtAuth.isExpired(1_700_000_059_999L));
+        assertTrue(jwtAuth.isExpired(1_700_000_060_000L));
+    }
+
+    @Test
+    void newJwtAuthentication_ReturnsNeverExpired_WhenExpIsMissing()
+    {
+        final var jwtAuth = new JwtAuthentication(newJwt("{\"sub\": \"test@email.com\"}", Base64.getUrlEncoder()), objectMapper);
+
+        assertEquals(0L, jwtAuth.getExpirationInMillis());
+        assertFalse(jwtAuth.isExpired(Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> {
+            new JwtAuthentication(newJwt("{\"sub\": \"test@email.com\", \"exp\": \"1\"}", Base64.getUrlEncoder()), objectMapper);
+        });
+    }
 }
@@ -0,0 +1,34 @@
+package twoauth.apigateway.securityconfig;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTests
+{
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void tryConsume_AllowsBurstThenRejects_WhenBucketIsEmpty()
+    {
+        final var bucket = new TokenBucket(3, 2, 0);
+
+        for (int i = 0; i < 3; ++i)
+            assertEquals(0, bucket.tryConsume(0));
+
+        assertEquals(SECOND / 2, bucket.tryConsume(0));
+    }
+
+    @Test
+    void tryConsume_AllowsAgain_WhenTokensAreReplenished()
+    {
+        final var bucket = new TokenBucket(1, 2, 0);
+        assertEquals(0, bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(SECOND / 4) > 0);
+
+        assertEquals(0, bucket.tryConsume(SECOND / 2));
+        // never more than the burst, however long the bucket was idle
+        assertEquals(0, bucket.tryConsume(100 * SECOND));
+        assertTrue(bucket.tryConsume(100 * SECOND) > 0);
+    }
+}
@@ -0,0 +1,191 @@
+package twoauth.apigateway.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.web.server.WebSession;
+import twoauth.apigateway.securityconfig.JwtAuthentication;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MongoWebSessionStoreTests
+{
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+    private ReactiveMongoOperations mongoOperations;
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        when(mongoOperations.save(any(Document.class), eq(MongoWebSessionStore.COLLECTION)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(mongoOperations.remove(any(Query.class), eq(MongoWebSessionStore.COLLECTION)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+    }
+
+    private MongoWebSessionStore newStore() {
+        return new MongoWebSessionStore(
+                mongoOperations,
+                Caffeine.newBuilder().maximumSize(100).build(),
+                Duration.ofMinutes(30),
+                clock
+        );
+    }
+
+    private static JwtAuthentication newAuthentication(final String subject) {
+        final String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("{\"sub\":\"" + subject + "\"}").getBytes());
+        return new JwtAuthentication("header." + payload + ".signature", new ObjectMapper());
+    }
+
+    private WebSession newSavedSession(final MongoWebSessionStore store) {
+        final WebSession session = store.createWebSession().block();
+        assertNotNull(session);
+        session.getAttributes().put(WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME,
+                new SecurityContextImpl(newAuthentication("test@email.com")));
+        session.save().block();
+        return session;
+    }
+
+    @Test
+    void save_WritesPrincipalAndExpiration_WhenSessionHasAttributes() {
+        newSavedSession(newStore());
+
+        verify(mongoOperations).save(argThat((Document document) ->
+                "test@email.com".equals(document.getString(SessionDocument.PRINCIPAL))
+                        && document.getDate(SessionDocument.EXPIRE_AT).toInstant()
+                                .equals(clock.instant().plus(Duration.ofMinutes(30)))
+        ), eq(MongoWebSessionStore.COLLECTION));
+    }
+
+    @Test
+    void save_DoesNotWrite_WhenSessionIsNotStarted() {
+        final WebSession session = newStore().createWebSession().block();
+        assertNotNull(session);
+
+        session.save().block();
+
+        verify(mongoOperations, never()).save(any(Document.class), any(String.class));
+    }
+
+    @Test
+    void retrieveSession_ReturnsSessionFromNearCache_WhenSavedByThisNode() {
+        final MongoWebSessionStore store = newStore();
+        final WebSession session = newSavedSession(store);
+
+        final WebSession retrieved = store.retrieveSession(session.getId()).block();
+
+        assertNotNull(retrieved);
+        assertEquals(session.getId(), retrieved.getId());
+        assertInstanceOf(SecurityContextImpl.class, retrieved.getAttributes()
+                .get(WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME));
+        verify(mongoOperations, never()).findById(any(), any(), any(String.class));
+    }
+
+    @Test
+    void retrieveSession_ReadsMongo_WhenSessionWasSavedByAnotherNode() {
+        final WebSession session = newSavedSession(newStore());
+        final ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        verify(mongoOperations).save(saved.capture(), eq(MongoWebSessionStore.COLLECTION));
+        when(mongoOperations.findById(session.getId(), Document.class, MongoWebSessionStore.COLLECTION))
+                .thenReturn(Mono.just(saved.getValue()));
+
+        final WebSession retrieved = newStore().retrieveSession(session.getId()).block();
+
+        assertNotNull(retrieved);
+        assertEquals(session.getAttributes().keySet(), retrieved.getAttributes().keySet());
+    }
+
+    @Test
+    void retrieveSession_ReturnsEmptyAndRemovesSession_WhenSessionIsExpired() {
+        final WebSession session = newSavedSession(newStore());
+        final ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        verify(mongoOperations).save(saved.capture(), eq(MongoWebSessionStore.COLLECTION));
+        when(mongoOperations.findById(session.getId(), Document.class, MongoWebSessionStore.COLLECTION))
+                .thenReturn(Mono.just(saved.getValue()));
+
+        clock.add(Duration.ofMinutes(31));
+        final WebSession retrieved = newStore().retrieveSession(session.getId()).block();
+
+        assertNull(retrieved);
+        verify(mongoOperations).remove(any(Query.class), eq(MongoWebSessionStore.COLLECTION));
+    }
+
+    @Test
+    void save_SkipsWrite_WhenSessionIsUnchangedAndRecentlyTouched() {
+        final MongoWebSessionStore store = newStore();
+        final WebSession session = newSavedSession(store);
+
+        clock.add(Duration.ofSeconds(30));
+        final WebSession retrieved = store.retrieveSession(session.getId()).block();
+        assertNotNull(retrieved);
+        store.updateLastAccessTime(retrieved).block();
+        retrieved.save().block();
+        verify(mongoOperations, times(1)).save(any(Document.class), any(String.class));
+
+        clock.add(Duration.ofMinutes(2));
+        store.updateLastAccessTime(retrieved).block();
+        retrieved.save().block();
+        verify(mongoOperations, times(2)).save(any(Document.class), any(String.class));
+    }
+
+    @Test
+    void changeSessionId_RemovesOldSession_WhenSessionIsSaved() {
+        final MongoWebSessionStore store = newStore();
+        final WebSession session = newSavedSession(store);
+        final String oldId = session.getId();
+
+        session.changeSessionId().block();
+        session.save().block();
+
+        assertNotEquals(oldId, session.getId());
+        verify(mongoOperations).remove(any(Query.class), eq(MongoWebSessionStore.COLLECTION));
+        verify(mongoOperations, times(2)).save(any(Document.class), any(String.class));
+    }
+
+    private static final class MutableClock extends Clock
+    {
+        private Instant instant;
+
+        MutableClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        void add(final Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}